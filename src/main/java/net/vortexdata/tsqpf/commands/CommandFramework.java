@@ -29,6 +29,14 @@ import net.vortexdata.tsqpf.authenticator.UserGroup;
 import net.vortexdata.tsqpf.configs.ConfigProject;
 import net.vortexdata.tsqpf.console.IShell;
 import net.vortexdata.tsqpf.framework.*;
+import net.vortexdata.tsqpf.listeners.ChatCommandExecutor;
+import net.vortexdata.tsqpf.listeners.EventCoalescer;
+import net.vortexdata.tsqpf.modules.flood.AdaptiveFloodController;
+import net.vortexdata.tsqpf.modules.journal.EventJournal;
+import net.vortexdata.tsqpf.modules.messaging.OutboundMessageQueue;
+import net.vortexdata.tsqpf.modules.mirror.ServerStateMirror;
+import net.vortexdata.tsqpf.modules.querypool.PooledQueryConnection;
+import net.vortexdata.tsqpf.modules.singleflight.SingleFlightApi;
 
 import java.text.*;
 
@@ -93,6 +101,50 @@ public class CommandFramework extends CommandInterface {
                 shell.getPrinter().println("Framework version: \t\t\t" + frameworkContainer.getConfig(new ConfigProject(frameworkContainer.getFrameworkLogger()).getPath()).getProperty("version"));
                 shell.getPrinter().println("Framework vendor: \t\t\t" + frameworkContainer.getConfig(new ConfigProject(frameworkContainer.getFrameworkLogger()).getPath()).getProperty("vendor"));
                 shell.getPrinter().println("Framework status: \t\t\t" + frameworkContainer.getFrameworkStatus());
+                OutboundMessageQueue outbound = frameworkContainer.getFrameworkOutboundMessageQueue();
+                shell.getPrinter().println("Outbound messages: \t\t\t" + outbound.getDepth() + " queued, " + outbound.getSent() + " sent, "
+                        + outbound.getMerged() + " merged, " + outbound.getDropped() + " dropped, p99 "
+                        + String.format("%.1fms", outbound.getSendLatency().getPercentile(99) / 1_000_000.0));
+                if (frameworkContainer.getFrameworkChatCommandListener() != null && frameworkContainer.getFrameworkChatCommandListener().getExecutor() != null) {
+                    ChatCommandExecutor executor = frameworkContainer.getFrameworkChatCommandListener().getExecutor();
+                    shell.getPrinter().println("Chat commands: \t\t\t" + executor.getActiveCount() + " running, " + executor.getQueueDepth() + " queued, "
+                            + executor.getRateLimited() + " rate limited, " + executor.getRejected() + " rejected");
+                }
+                if (frameworkContainer.getFrameworkEventJournal() != null) {
+                    EventJournal journal = frameworkContainer.getFrameworkEventJournal();
+                    shell.getPrinter().println("Events journaled: \t\t\t" + journal.getWritten() + " (" + journal.getDropped() + " dropped)");
+                }
+                for (VirtualServer virtualServer : frameworkContainer.getVirtualServers()) {
+                    FrameworkContainer context = virtualServer.getFrameworkContainer();
+                    shell.getPrinter().println("Virtual server " + virtualServer.getId() + ": \t\t\t" + context.getFrameworkStatus() + ", "
+                            + context.getFrameworkPluginManager().getPlugins().size() + " plugins loaded");
+                }
+                if (frameworkContainer.getFrameworkFloodController() != null) {
+                    AdaptiveFloodController floodController = frameworkContainer.getFrameworkFloodController();
+                    shell.getPrinter().println("Flood rate: \t\t\t\t" + String.format("%.1f", floodController.getRate()) + " of " + String.format("%.1f", floodController.getMaxRate())
+                            + " commands/s (" + floodController.getFloodSignals() + " flood errors, " + floodController.getLatencySignals() + " latency backoffs)");
+                }
+                if (frameworkContainer.getFrameworkSingleFlightApi() != null) {
+                    SingleFlightApi singleFlightApi = frameworkContainer.getFrameworkSingleFlightApi();
+                    shell.getPrinter().println("Queries deduplicated: \t\t" + singleFlightApi.getShared() + " of " + (singleFlightApi.getSent() + singleFlightApi.getShared())
+                            + " (" + singleFlightApi.getMemoHits() + " answered from event memo)");
+                }
+                if (frameworkContainer.getFrameworkQueryConnectionPool() != null) {
+                    for (PooledQueryConnection connection : frameworkContainer.getFrameworkQueryConnectionPool().getConnections()) {
+                        shell.getPrinter().println("Query connection #" + connection.getIndex() + ": \t\t" + (connection.isReady() ? "ready" : "down") + ", "
+                                + connection.getLatency().getCount() + " queries, " + connection.getInFlight() + " in flight, p50 "
+                                + String.format("%.1fms", connection.getLatency().getPercentile(50) / 1_000_000.0) + ", p99 "
+                                + String.format("%.1fms", connection.getLatency().getPercentile(99) / 1_000_000.0));
+                    }
+                }
+                if (frameworkContainer.getFrameworkServerStateMirror() != null) {
+                    ServerStateMirror mirror = frameworkContainer.getFrameworkServerStateMirror();
+                    shell.getPrinter().println("Server state mirror: \t\t\t" + mirror.getState().getClients().size() + " clients, " + mirror.getState().getChannels().size() + " channels (" + mirror.getApplied() + " events applied, " + mirror.getReconciled() + " reconciliations, " + mirror.getDrift() + " drifted)");
+                }
+                if (frameworkContainer.getFrameworkEventCoalescer() != null) {
+                    EventCoalescer coalescer = frameworkContainer.getFrameworkEventCoalescer();
+                    shell.getPrinter().println("Events coalesced: \t\t\t" + coalescer.getAbsorbed() + " of " + coalescer.getReceived());
+                }
                 shell.getPrinter().println("========================================================================");
             }
             else {
@@ -28,8 +28,16 @@ package net.vortexdata.tsqpf.commands;
 import net.vortexdata.tsqpf.authenticator.*;
 import net.vortexdata.tsqpf.console.*;
 import net.vortexdata.tsqpf.framework.*;
+import net.vortexdata.tsqpf.modules.eventhandler.EventType;
+import net.vortexdata.tsqpf.modules.metrics.LatencyHistogram;
+import net.vortexdata.tsqpf.plugins.ClassLoaderLeakDetector;
 import net.vortexdata.tsqpf.plugins.PluginContainer;
-import net.vortexdata.tsqpf.plugins.PluginManager;
+import net.vortexdata.tsqpf.plugins.PluginDescriptor;
+import net.vortexdata.tsqpf.plugins.PluginEventQueue;
+import org.json.simple.JSONObject;
+
+import java.io.File;
+import java.util.List;
 
 /**
  * <p>CommandPlugins class.</p>
@@ -49,26 +57,173 @@ public class CommandPlugins extends CommandInterface {
      */
     public CommandPlugins(FrameworkContainer frameworkContainer) {
         super(frameworkContainer.getFrameworkLogger());
+        this.frameworkContainer = frameworkContainer;
         groups.add(UserGroup.ROOT);
-        setDescription("Lists all loaded plugins.");
+        addAvailableArg("list", "Lists all loaded plugins.");
+        addAvailableArg("queues", "Shows the event queue depth of all plugins.");
+        addAvailableArg("timings", "Shows how long each plugin took to load and enable.");
+        addAvailableArg("stats", "Shows event handler latency of all plugins, append 'json' for a machine-readable dump.");
+        addAvailableArg("reload", "Reloads a plugin from its jar without reconnecting, e.g. 'plugins reload <name>'.");
+        addAvailableArg("load", "Loads and enables a new plugin jar, e.g. 'plugins load <file>'.");
+        addAvailableArg("leaks", "Lists class loaders of reloaded plugins that were not garbage collected.");
+        setDescription("Lists and inspects loaded plugins.");
     }
 
     /** {@inheritDoc} */
     @Override
     public void execute(String[] args, IShell shell) {
 
-        if (PluginManager.getLoadedPlugins().isEmpty()) {
+        if (args.length > 0 && args[0].equalsIgnoreCase("load")) {
+            loadPlugin(args, shell);
+            return;
+        } else if (args.length > 0 && args[0].equalsIgnoreCase("leaks")) {
+            printLeaks(shell);
+            return;
+        }
+
+        if (frameworkContainer.getFrameworkPluginManager().getPlugins().isEmpty()) {
             shell.getPrinter().println("There are no plugins to show.");
             return;
         }
 
-        shell.getPrinter().println("Loaded plugins: ");
-        for (PluginContainer pc : PluginManager.getLoadedPlugins()) {
-            shell.getPrinter().println(pc.getPluginName());
+        if (args.length == 0 || args[0].equalsIgnoreCase("list")) {
+            shell.getPrinter().println("Loaded plugins: ");
+            for (PluginContainer pc : frameworkContainer.getFrameworkPluginManager().getPlugins()) {
+                shell.getPrinter().println(pc.getPluginName());
+            }
+        } else if (args[0].equalsIgnoreCase("queues")) {
+            printQueues(shell);
+        } else if (args[0].equalsIgnoreCase("reload")) {
+            if (args.length < 2) {
+                shell.getPrinter().println("Usage: plugins reload <name>");
+                return;
+            }
+            if (frameworkContainer.getFrameworkPluginManager().reloadPlugin(args[1]))
+                shell.getPrinter().println("Plugin " + args[1] + " reloaded.");
+            else
+                shell.getPrinter().println("Plugin " + args[1] + " could not be reloaded, see the log for details.");
+        } else if (args[0].equalsIgnoreCase("timings")) {
+            printTimings(shell);
+        } else if (args[0].equalsIgnoreCase("stats")) {
+            if (args.length > 1 && args[1].equalsIgnoreCase("json"))
+                shell.getPrinter().println(collectStats().toJSONString());
+            else
+                printStats(shell);
+        } else {
+            shell.getPrinter().println("plugins " + args[0] + ": unknown parameters");
+            shell.getPrinter().println("Try 'plugins " + generateArgsString() + "'");
         }
 
     }
 
+    private void loadPlugin(String[] args, IShell shell) {
+        if (args.length < 2) {
+            shell.getPrinter().println("Usage: plugins load <file>");
+            return;
+        }
+        File file = new File("plugins", args[1]);
+        if (!file.isFile())
+            file = new File(args[1]);
+        if (!file.isFile()) {
+            shell.getPrinter().println("Plugin jar " + args[1] + " does not exist.");
+            return;
+        }
+        if (frameworkContainer.getFrameworkPluginManager().loadAndEnablePlugin(file))
+            shell.getPrinter().println("Plugin " + file.getName() + " loaded.");
+        else
+            shell.getPrinter().println("Plugin " + file.getName() + " could not be loaded, see the log for details.");
+    }
+
+    private void printLeaks(IShell shell) {
+        ClassLoaderLeakDetector detector = frameworkContainer.getPluginLeakDetector();
+        List<String> leaks = detector.check();
+        if (leaks.isEmpty()) {
+            shell.getPrinter().println("No leaked plugin class loaders, " + detector.getPendingCount() + " closed loaders are waiting to be collected.");
+            return;
+        }
+        for (String leak : leaks)
+            shell.getPrinter().println(leak);
+    }
+
+    private void printQueues(IShell shell) {
+        shell.getPrinter().println("========================================================================");
+        for (PluginContainer pc : frameworkContainer.getFrameworkPluginManager().getPlugins()) {
+            PluginEventQueue queue = pc.getEventQueue();
+            if (queue == null) {
+                shell.getPrinter().println(pc.getPluginName() + ": \t\t\tsync (no queue)");
+                continue;
+            }
+            shell.getPrinter().println(pc.getPluginName() + ": \t\t\t" + queue.getDepth() + "/" + queue.getCapacity()
+                    + " queued, peak " + queue.getHighWaterMark()
+                    + ", delivered " + queue.getDelivered()
+                    + ", dropped " + queue.getDropped()
+                    + " (" + queue.getOverflowPolicy() + ")");
+        }
+        shell.getPrinter().println("========================================================================");
+    }
+
+    private void printTimings(IShell shell) {
+        shell.getPrinter().println("========================================================================");
+        for (PluginContainer pc : frameworkContainer.getFrameworkPluginManager().getPlugins()) {
+            PluginDescriptor descriptor = pc.getDescriptor();
+            if (descriptor == null) {
+                shell.getPrinter().println(pc.getPluginName() + ": \t\t\tno timings recorded");
+                continue;
+            }
+            shell.getPrinter().println(pc.getPluginName() + ": \t\t\t" + formatNanos(descriptor.getTotalNanos())
+                    + " (read " + formatNanos(descriptor.getReadNanos())
+                    + ", class load " + formatNanos(descriptor.getClassLoadNanos())
+                    + ", enable " + formatNanos(descriptor.getEnableNanos())
+                    + ", wave " + descriptor.getWave() + ")");
+        }
+        shell.getPrinter().println("========================================================================");
+    }
+
+    private void printStats(IShell shell) {
+        shell.getPrinter().println("========================================================================");
+        for (PluginContainer pc : frameworkContainer.getFrameworkPluginManager().getPlugins()) {
+            double uptimeSeconds = Math.max(1, System.currentTimeMillis() - pc.getLoadedAt()) / 1000.0;
+            shell.getPrinter().println(pc.getPluginName() + ":");
+            for (EventType type : EventType.values()) {
+                LatencyHistogram histogram = pc.getEventLatency(type);
+                if (histogram.getCount() == 0)
+                    continue;
+                shell.getPrinter().println("  " + type.getHandlerName() + ": \t\t" + histogram.getCount() + " events ("
+                        + String.format("%.2f", histogram.getCount() / uptimeSeconds) + "/s)"
+                        + ", p50 " + formatNanos(histogram.getPercentile(50))
+                        + ", p99 " + formatNanos(histogram.getPercentile(99))
+                        + ", max " + formatNanos(histogram.getMax()));
+            }
+        }
+        shell.getPrinter().println("========================================================================");
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject collectStats() {
+        JSONObject stats = new JSONObject();
+        for (PluginContainer pc : frameworkContainer.getFrameworkPluginManager().getPlugins()) {
+            JSONObject pluginStats = new JSONObject();
+            for (EventType type : EventType.values()) {
+                LatencyHistogram histogram = pc.getEventLatency(type);
+                if (histogram.getCount() == 0)
+                    continue;
+                JSONObject typeStats = new JSONObject();
+                typeStats.put("count", histogram.getCount());
+                typeStats.put("meanNanos", histogram.getMean());
+                typeStats.put("p50Nanos", histogram.getPercentile(50));
+                typeStats.put("p99Nanos", histogram.getPercentile(99));
+                typeStats.put("maxNanos", histogram.getMax());
+                pluginStats.put(type.getHandlerName(), typeStats);
+            }
+            stats.put(pc.getPluginName(), pluginStats);
+        }
+        return stats;
+    }
+
+    private String formatNanos(long nanos) {
+        return String.format("%.3fms", nanos / 1_000_000.0);
+    }
+
     /** {@inheritDoc} */
     @Override
     public String getName() {
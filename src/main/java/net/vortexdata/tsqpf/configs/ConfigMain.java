@@ -48,7 +48,7 @@ public class ConfigMain extends Config {
         setDefaultValue("queryPort", "10011", CheckType.INTEGER);
         setDefaultValue("queryUser", "serveradmin", CheckType.STRING);
         setDefaultValue("queryPassword", "password", CheckType.STRING);
-        setDefaultValue("virtualServerId", "1", CheckType.INTEGER);
+        setDefaultValue("virtualServerId", "1", CheckType.STRING);
         setDefaultValue("clientNickname", "TSQP Framework", CheckType.STRING);
         setDefaultValue("reconnectStrategy", "exponentialBackoff", CheckType.STRING);
         setDefaultValue("remoteShellPort", "12342", CheckType.INTEGER);
@@ -58,6 +58,43 @@ public class ConfigMain extends Config {
         setDefaultValue("acceptEula", "false", CheckType.BOOLEAN);
         setDefaultValue("enableExceptionReporting", "true", CheckType.BOOLEAN);
         setDefaultValue("floodRate", "default", CheckType.STRING);
+        setDefaultValue("pluginEventDispatch", "sync", CheckType.STRING);
+        setDefaultValue("pluginEventQueueCapacity", "1024", CheckType.INTEGER);
+        setDefaultValue("pluginEventQueueOverflow", "block", CheckType.STRING);
+        setDefaultValue("eventDispatchMode", "serial", CheckType.STRING);
+        setDefaultValue("eventDispatchLanes", "0", CheckType.INTEGER);
+        setDefaultValue("eventCoalescing", "false", CheckType.BOOLEAN);
+        setDefaultValue("eventCoalescingWindow", "50", CheckType.INTEGER);
+        setDefaultValue("pluginWatchdogPolicy", "log", CheckType.STRING);
+        setDefaultValue("pluginWatchdogDeadline", "500", CheckType.INTEGER);
+        setDefaultValue("pluginWatchdogStrikes", "3", CheckType.INTEGER);
+        setDefaultValue("eventJournal", "false", CheckType.BOOLEAN);
+        setDefaultValue("eventJournalSegmentSize", "16777216", CheckType.INTEGER);
+        setDefaultValue("eventJournalSegments", "8", CheckType.INTEGER);
+        setDefaultValue("simulatorEventRate", "100", CheckType.INTEGER);
+        setDefaultValue("simulatorClients", "50", CheckType.INTEGER);
+        setDefaultValue("simulatorChannels", "10", CheckType.INTEGER);
+        setDefaultValue("chatCommandThreads", "1", CheckType.INTEGER);
+        setDefaultValue("chatCommandQueueCapacity", "64", CheckType.INTEGER);
+        setDefaultValue("chatCommandRateBurst", "5", CheckType.INTEGER);
+        setDefaultValue("chatCommandRatePerMinute", "20", CheckType.INTEGER);
+        setDefaultValue("chatCommandSigils", "", CheckType.STRING);
+        setDefaultValue("chatCommandUnknownReply", "true", CheckType.BOOLEAN);
+        setDefaultValue("chatCommandUnknownReplyWindow", "60", CheckType.INTEGER);
+        setDefaultValue("serverMirror", "true", CheckType.BOOLEAN);
+        setDefaultValue("serverMirrorReconcileInterval", "300", CheckType.INTEGER);
+        setDefaultValue("queryPoolSize", "0", CheckType.INTEGER);
+        setDefaultValue("queryPoolBalancing", "leastLoaded", CheckType.STRING);
+        setDefaultValue("asyncQueryThreads", "2", CheckType.INTEGER);
+        setDefaultValue("queryDeduplication", "true", CheckType.BOOLEAN);
+        setDefaultValue("queryMemoization", "true", CheckType.BOOLEAN);
+        setDefaultValue("floodRateAdaptiveMax", "50", CheckType.INTEGER);
+        setDefaultValue("virtualServerPlugins", "", CheckType.STRING);
+        setDefaultValue("pluginLoadThreads", "4", CheckType.INTEGER);
+        setDefaultValue("pluginMetadataCache", "true", CheckType.BOOLEAN);
+        setDefaultValue("pluginSuspendOnHibernate", "true", CheckType.BOOLEAN);
+        setDefaultValue("pluginLeakCheckDelay", "30", CheckType.INTEGER);
+        setDefaultValue("outboundQueueCapacity", "1024", CheckType.INTEGER);
     }
 
 }
@@ -47,6 +47,8 @@ public class ConfigMessages extends Config {
         super("configs//messages.properties", logger);
         // Setting Default Values
         setDefaultValue("chatCommandUnknown", "Command not found.", CheckType.STRING);
+        setDefaultValue("chatCommandRateLimited", "You are sending commands too fast, please slow down.", CheckType.STRING);
+        setDefaultValue("chatCommandBusy", "The server is busy, please try again in a moment.", CheckType.STRING);
         setDefaultValue("shellMotd", "You are connected to the TSQPF remote shell. UNAUTHORIZED ACCESS IS PROHIBITED!", CheckType.STRING);
     }
 
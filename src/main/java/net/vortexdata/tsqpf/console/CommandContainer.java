@@ -27,18 +27,21 @@ package net.vortexdata.tsqpf.console;
 
 import net.vortexdata.tsqpf.commands.CommandInterface;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Contains all commands.
  *
+ * There is only one console per process, so the commands are shared by all virtual servers. A name belongs to the
+ * first command registering it, later registrations of the same name are rejected.
+ *
  * @author Michael Wiesinger
  * @since 2.0.0
  * @version $Id: $Id
  */
 public class CommandContainer {
-	private static Map<String, CommandInterface> commands = new HashMap<>();
+	private static final Map<String, CommandInterface> commands = new ConcurrentHashMap<>();
 
 	/**
 	 * Registers command to command container.
@@ -47,11 +50,17 @@ public class CommandContainer {
 	 * @return true if command has not been assigned yet.
 	 */
 	public static boolean registerCommand(CommandInterface command) {
-		if(commands.containsKey(command.getName()))
-			return false;
+		return commands.putIfAbsent(command.getName(), command) == null;
+	}
 
-		commands.put(command.getName(), command);
-		return true;
+	/**
+	 * Removes a command from the command container.
+	 *
+	 * @param command The command to remove.
+	 * @return true if the command was registered.
+	 */
+	public static boolean unregisterCommand(CommandInterface command) {
+		return commands.remove(command.getName(), command);
 	}
 
 	/**
@@ -117,6 +117,10 @@ public class Framework {
         frameworkContainer.getFrameworkLogger().printDebug("Initializing plugin controller...");
         //TODO: Implement reuseable PluginManager
         frameworkContainer.setFrameworkPluginManager(frameworkContainer.getPluginManager());
+        if (frameworkContainer.getFrameworkPluginWatchdog() != null) {
+            frameworkContainer.getFrameworkLogger().printDebug("Starting up plugin watchdog...");
+            frameworkContainer.getFrameworkPluginWatchdog().start();
+        }
 
 
 
@@ -134,8 +138,14 @@ public class Framework {
 
         frameworkContainer.getFrameworkLogger().printDebug("Trying to register global events...");
         frameworkContainer.getTs3Api().registerAllEvents();
-        frameworkContainer.getTs3Api().addTS3Listeners(frameworkContainer.getGlobalEventHandler());
+        frameworkContainer.registerEventListeners(frameworkContainer.getTs3Api());
         frameworkContainer.getFrameworkLogger().printDebug("Successfully registered global events.");
+        frameworkContainer.getFrameworkOutboundMessageQueue().start();
+
+        for (VirtualServer virtualServer : frameworkContainer.getVirtualServers()) {
+            frameworkContainer.getFrameworkLogger().printDebug("Connecting to virtual server " + virtualServer.getId() + "...");
+            virtualServer.connect();
+        }
 
         frameworkContainer.getFrameworkLogger().printDebug("Console handler and console commands successfully initialized and registered.");
         frameworkContainer.getBootHandler().setBootEndTime();
@@ -179,7 +189,15 @@ public class Framework {
         }
 
 
-        if (frameworkContainer.getFrameworkPluginManager() != null && PluginManager.getLoadedPlugins().size() > 0) {
+        for (VirtualServer virtualServer : frameworkContainer.getVirtualServers()) {
+            frameworkContainer.getFrameworkLogger().printDebug("Shutting down virtual server " + virtualServer.getId() + "...");
+            virtualServer.shutdown();
+        }
+
+        frameworkContainer.getFrameworkLogger().printDebug("Stopping event dispatch...");
+        frameworkContainer.shutdownEventPipeline();
+
+        if (frameworkContainer.getFrameworkPluginManager() != null && !frameworkContainer.getFrameworkPluginManager().getPlugins().isEmpty()) {
             frameworkContainer.getFrameworkLogger().printInfo("Unloading plugins...");
             try {
                 frameworkContainer.getFrameworkPluginManager().disableAll();
@@ -189,6 +207,39 @@ public class Framework {
             }
         }
 
+        if (frameworkContainer.getFrameworkOutboundMessageQueue() != null) {
+            frameworkContainer.getFrameworkLogger().printDebug("Sending queued messages...");
+            frameworkContainer.getFrameworkOutboundMessageQueue().stop();
+        }
+
+        frameworkContainer.getFrameworkLogger().printDebug("Stopping plugin class loader leak detection...");
+        frameworkContainer.shutdownPluginLeakDetector();
+
+        if (frameworkContainer.getFrameworkChatCommandListener() != null && frameworkContainer.getFrameworkChatCommandListener().getExecutor() != null) {
+            frameworkContainer.getFrameworkLogger().printDebug("Waiting for running chat commands...");
+            frameworkContainer.getFrameworkChatCommandListener().getExecutor().shutdown();
+        }
+
+        if (frameworkContainer.getFrameworkAsyncQueryApi() != null) {
+            frameworkContainer.getFrameworkLogger().printDebug("Waiting for async query continuations...");
+            frameworkContainer.getFrameworkAsyncQueryApi().shutdown();
+        }
+
+        if (frameworkContainer.getFrameworkQueryConnectionPool() != null) {
+            frameworkContainer.getFrameworkLogger().printDebug("Closing pooled query connections...");
+            frameworkContainer.getFrameworkQueryConnectionPool().stop();
+        }
+
+        if (frameworkContainer.getQuerySimulator() != null) {
+            frameworkContainer.getFrameworkLogger().printDebug("Stopping query simulator...");
+            frameworkContainer.getQuerySimulator().stop();
+        }
+
+        if (frameworkContainer.getFrameworkEventJournal() != null) {
+            frameworkContainer.getFrameworkLogger().printDebug("Closing event journal...");
+            frameworkContainer.getFrameworkEventJournal().stop();
+        }
+
         frameworkContainer.getFrameworkLogger().printInfo("Ending framework logging...");
         System.exit(0);
     }
@@ -206,6 +257,7 @@ public class Framework {
         frameworkContainer.setFrameworkStatus(FrameworkStatus.WAKING);
         frameworkContainer.getFrameworkLogger().printDebug("Wakeup initiated...");
         frameworkContainer.setTs3Api(ts3Query.getApi());
+        frameworkContainer.bindQueryApis(ts3Query);
         frameworkContainer.getFrameworkLogger().printDebug("Trying to sign into query...");
         try {
             frameworkContainer.getTs3Api().login(
@@ -221,7 +273,7 @@ public class Framework {
         // Select virtual host
         frameworkContainer.getFrameworkLogger().printDebug("Trying to select virtual server...");
         try {
-            frameworkContainer.getTs3Api().selectVirtualServerById(Integer.parseInt(frameworkContainer.getConfig("configs//main.properties").getProperty("virtualServerId")));
+            frameworkContainer.getTs3Api().selectVirtualServerById(frameworkContainer.getVirtualServerId());
             frameworkContainer.getFrameworkLogger().printInfo("Successfully selected virtual server.");
         } catch (Exception e) {
             frameworkContainer.getFrameworkLogger().printError("Failed to select virtual server, dumping error details: ", e);
@@ -230,17 +282,37 @@ public class Framework {
 
         try {
             frameworkContainer.getFrameworkLogger().printDebug("Trying to assign nickname...");
-            frameworkContainer.getTs3Api().setNickname(frameworkContainer.getConfig("configs//main.properties").getProperty("clientNickname"));
+            frameworkContainer.getFrameworkIdentityManager().setNickname(frameworkContainer.getTs3Api(), frameworkContainer.getConfig("configs//main.properties").getProperty("clientNickname"));
             frameworkContainer.getFrameworkLogger().printDebug("Successfully set nickname.");
         } catch (Exception e) {
             frameworkContainer.getFrameworkLogger().printError("Failed to set nickname, dumping error details: ", e);
             shutdown();
         }
 
+        if (frameworkContainer.getFrameworkServerStateMirror() != null) {
+            frameworkContainer.getFrameworkLogger().printDebug("Seeding server state mirror...");
+            try {
+                frameworkContainer.getFrameworkServerStateMirror().seed(frameworkContainer.getTs3Api());
+            } catch (Exception e) {
+                frameworkContainer.getFrameworkLogger().printError("Failed to seed server state mirror, plugins will see an empty server state: " + e.getMessage());
+            }
+        }
 
-        frameworkContainer.getFrameworkLogger().printDebug("Loading and enabling plugins...");
-        frameworkContainer.getFrameworkPluginManager().enableAll();
-        frameworkContainer.getFrameworkLogger().printDebug("Successfully loaded plugins.");
+        if (frameworkContainer.getFrameworkQueryConnectionPool() != null) {
+            frameworkContainer.getFrameworkLogger().printDebug("Opening pooled query connections...");
+            frameworkContainer.startQueryConnectionPool();
+        }
+
+
+        if (frameworkContainer.getFrameworkPluginManager().isSuspended()) {
+            frameworkContainer.getFrameworkLogger().printDebug("Resuming plugins...");
+            frameworkContainer.getFrameworkPluginManager().resumeAll();
+            frameworkContainer.getFrameworkLogger().printDebug("Successfully resumed plugins.");
+        } else {
+            frameworkContainer.getFrameworkLogger().printDebug("Loading and enabling plugins...");
+            frameworkContainer.getFrameworkPluginManager().enableAll();
+            frameworkContainer.getFrameworkLogger().printDebug("Successfully loaded plugins.");
+        }
 
         frameworkContainer.getTs3Api().registerAllEvents();
         frameworkContainer.setFrameworkStatus(FrameworkStatus.RUNNING);
@@ -248,9 +320,13 @@ public class Framework {
     }
 
     /**
-     * Disconnects from Teamspeak server and unloads all plugins.
+     * Disconnects from Teamspeak server and suspends all plugins, or unloads them if suspending is disabled.
      */
     public void hibernate() {
+        hibernate(!frameworkContainer.getFrameworkPluginManager().isSuspendOnHibernate());
+    }
+
+    private void hibernate(boolean unloadPlugins) {
         frameworkContainer.getFrameworkStatusReporter().logEvent(StatusEvents.HIBERNATION);
 
         frameworkContainer.setFrameworkStatus(FrameworkStatus.HIBERNATING);
@@ -262,6 +338,14 @@ public class Framework {
 
 
         frameworkContainer.getFrameworkLogger().printDebug("Hibernation initiated.");
+        frameworkContainer.getFrameworkIdentityManager().invalidate();
+        if (frameworkContainer.getFrameworkServerStateMirror() != null)
+            frameworkContainer.getFrameworkServerStateMirror().clear();
+        if (!unloadPlugins) {
+            frameworkContainer.getFrameworkLogger().printDebug("Suspending all plugins...");
+            frameworkContainer.getFrameworkPluginManager().suspendAll();
+            return;
+        }
         frameworkContainer.getFrameworkLogger().printDebug("Disabling all plugins...");
         frameworkContainer.getFrameworkPluginManager().disableAll();
         frameworkContainer.getFrameworkLogger().printDebug("All plugins disabled.");
@@ -283,7 +367,7 @@ public class Framework {
      */
     public void reload() {
         frameworkContainer.getFrameworkStatusReporter().logEvent(StatusEvents.RELOAD);
-        hibernate();
+        hibernate(true);
         wakeup(frameworkContainer.getTs3Query());
     }
 
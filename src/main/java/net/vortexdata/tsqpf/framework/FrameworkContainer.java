@@ -26,6 +26,7 @@
 package net.vortexdata.tsqpf.framework;
 
 import com.github.theholywaffle.teamspeak3.*;
+import com.github.theholywaffle.teamspeak3.api.event.TS3Listener;
 import com.github.theholywaffle.teamspeak3.api.reconnect.*;
 import net.vortexdata.tsqpf.authenticator.*;
 import net.vortexdata.tsqpf.configs.*;
@@ -34,15 +35,29 @@ import net.vortexdata.tsqpf.exceptions.*;
 import net.vortexdata.tsqpf.listeners.*;
 import net.vortexdata.tsqpf.modules.boothandler.*;
 import net.vortexdata.tsqpf.modules.eula.*;
+import net.vortexdata.tsqpf.modules.identity.IdentityManager;
+import net.vortexdata.tsqpf.modules.async.AsyncQueryApi;
+import net.vortexdata.tsqpf.modules.flood.AdaptiveFloodController;
+import net.vortexdata.tsqpf.modules.flood.PacedApi;
+import net.vortexdata.tsqpf.modules.journal.EventJournal;
+import net.vortexdata.tsqpf.modules.mirror.ServerStateMirror;
+import net.vortexdata.tsqpf.modules.querypool.QueryConnectionPool;
+import net.vortexdata.tsqpf.modules.singleflight.SingleFlightApi;
+import net.vortexdata.tsqpf.modules.messaging.OutboundMessageQueue;
 import net.vortexdata.tsqpf.modules.statusreporter.*;
 import net.vortexdata.tsqpf.modules.uuid.UuidManager;
+import net.vortexdata.tsqpf.modules.watchdog.*;
 import net.vortexdata.tsqpf.plugins.*;
+import net.vortexdata.tsqpf.simulator.QuerySimulator;
 import net.vortexdata.tsqpf.utils.ResourceLoader;
 import org.apache.log4j.*;
 import org.apache.log4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.URLClassLoader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Contains all framework variables for easy use.
@@ -80,11 +95,32 @@ public class FrameworkContainer {
     private String[] frameworkStartParameters;
     private StatusReporter frameworkStatusReporter;
     private UuidManager frameworkUuidManager;
+    private IdentityManager frameworkIdentityManager;
     private GlobalEventHandler globalEventHandler;
+    private TS3Listener frameworkEventListener;
+    private EventCoalescer frameworkEventCoalescer;
+    private KeyedEventExecutor frameworkKeyedEventExecutor;
+    private PluginWatchdog frameworkPluginWatchdog;
+    private EventJournal frameworkEventJournal;
+    private ServerStateMirror frameworkServerStateMirror;
+    private QueryConnectionPool frameworkQueryConnectionPool;
+    private AsyncQueryApi frameworkAsyncQueryApi;
+    private SingleFlightApi frameworkSingleFlightApi;
+    private AdaptiveFloodController frameworkFloodController;
+    private QuerySimulator querySimulator;
+    private OutboundMessageQueue frameworkOutboundMessageQueue;
     private ChatCommandListener chatCommandListener;
     private PluginManager pluginManager;
     private CommandContainer frameworkCommandContainer;
 
+    // Virtual Servers
+    private FrameworkContainer parent;
+    private int virtualServerId;
+    private final ArrayList<VirtualServer> virtualServers = new ArrayList<>();
+    private final ConcurrentHashMap<String, URLClassLoader> pluginClassLoaders;
+    private final PluginMetadataCache pluginMetadataCache;
+    private ClassLoaderLeakDetector pluginLeakDetector;
+
     // Framework Utils
     private ResourceLoader frameworkResourceLoader;
 
@@ -105,7 +141,58 @@ public class FrameworkContainer {
         frameworkStatus = FrameworkStatus.STARTING;
         bootHandler = new BootHandler();
         bootHandler.setBootStartTime();
+        pluginClassLoaders = new ConcurrentHashMap<>();
+        pluginMetadataCache = new PluginMetadataCache(this);
+
+    }
 
+    /**
+     * Creates the context of an additional virtual server.
+     *
+     * Configs, logging, the console, the flood controller and the async api threads are shared with the primary
+     * context. The connection, identity, server state, event dispatch, chat commands, plugin class loaders and
+     * plugin instances belong to the virtual server, so static state of a plugin is never shared between virtual
+     * servers.
+     *
+     * The flood controller is shared on purpose: the servers anti-flood protection counts the commands of all query
+     * connections coming from the same address, so pacing them separately would let every virtual server send at
+     * the full rate and get the process banned. Console commands are shared as there is only one console, the
+     * first plugin registering a name owns it on all virtual servers.
+     *
+     * @param parent          The primary context.
+     * @param virtualServerId Id of the virtual server.
+     */
+    FrameworkContainer(FrameworkContainer parent, int virtualServerId) {
+        this.parent = parent;
+        this.virtualServerId = virtualServerId;
+        this.framework = parent.framework;
+        this.frameworkStartParameters = parent.frameworkStartParameters;
+        this.rootLogger = parent.rootLogger;
+        this.booleanParameters = parent.booleanParameters;
+        this.frameworkConfigs = parent.frameworkConfigs;
+        this.frameworkLogger = parent.frameworkLogger;
+        this.frameworkLocalShell = parent.frameworkLocalShell;
+        this.frameworkReconnectStrategy = parent.frameworkReconnectStrategy;
+        this.frameworkStatusReporter = parent.frameworkStatusReporter;
+        this.frameworkUuidManager = parent.frameworkUuidManager;
+        this.frameworkPluginWatchdog = parent.frameworkPluginWatchdog;
+        this.frameworkFloodController = parent.frameworkFloodController;
+        this.querySimulator = parent.querySimulator;
+        this.bootHandler = parent.bootHandler;
+        this.pluginClassLoaders = new ConcurrentHashMap<>();
+        this.pluginMetadataCache = parent.pluginMetadataCache;
+        this.frameworkStatus = FrameworkStatus.STARTING;
+
+        frameworkIdentityManager = new IdentityManager(this);
+        frameworkServerStateMirror = createServerStateMirror();
+        frameworkAsyncQueryApi = new AsyncQueryApi(this, parent.frameworkAsyncQueryApi);
+        frameworkOutboundMessageQueue = new OutboundMessageQueue(this, Integer.parseInt(getConfig(new ConfigMain(getFrameworkLogger()).getPath()).getProperty("outboundQueueCapacity")));
+        globalEventHandler = new GlobalEventHandler(this);
+        frameworkEventListener = createEventPipeline();
+        chatCommandListener = new ChatCommandListener(this);
+        frameworkChatCommandListener = chatCommandListener;
+        pluginManager = new PluginManager(this);
+        frameworkPluginManager = pluginManager;
     }
 
 
@@ -148,14 +235,276 @@ public class FrameworkContainer {
         this.frameworkStatusReporter = new StatusReporter(this);
         frameworkStatusReporter.logEvent(StatusEvents.STARTUP);
 
+        frameworkIdentityManager = new IdentityManager(this);
+        frameworkEventJournal = createEventJournal();
+        frameworkServerStateMirror = createServerStateMirror();
+        frameworkQueryConnectionPool = createQueryConnectionPool();
+        frameworkAsyncQueryApi = new AsyncQueryApi(this, Integer.parseInt(getConfig(new ConfigMain(getFrameworkLogger()).getPath()).getProperty("asyncQueryThreads")));
+        frameworkFloodController = createFloodController();
+        frameworkOutboundMessageQueue = new OutboundMessageQueue(this, Integer.parseInt(getConfig(new ConfigMain(getFrameworkLogger()).getPath()).getProperty("outboundQueueCapacity")));
         globalEventHandler = new GlobalEventHandler(this);
+        frameworkEventListener = createEventPipeline();
         chatCommandListener = new ChatCommandListener(this);
         pluginManager = new PluginManager(this);
+        frameworkPluginWatchdog = createPluginWatchdog();
+        createVirtualServers();
+
+
+
+
+
+    }
+
+    /**
+     * Builds the chain of listeners events pass before reaching the {@link GlobalEventHandler}.
+     *
+     * @return The listener that should be registered at the Teamspeak api.
+     */
+    private TS3Listener createEventPipeline() {
+        Config mainConfig = getConfig(new ConfigMain(getFrameworkLogger()).getPath());
+        String dispatchMode = mainConfig.getProperty("eventDispatchMode");
+        TS3Listener head = globalEventHandler;
+
+        if (dispatchMode.equalsIgnoreCase("keyed")) {
+            frameworkKeyedEventExecutor = new KeyedEventExecutor(globalEventHandler, Integer.parseInt(mainConfig.getProperty("eventDispatchLanes")), getFrameworkLogger());
+            frameworkLogger.printInfo("Event dispatch set to keyed-parallel on " + frameworkKeyedEventExecutor.getLaneCount() + " lanes.");
+            head = frameworkKeyedEventExecutor;
+        } else {
+            if (!dispatchMode.equalsIgnoreCase("serial") && !dispatchMode.isEmpty())
+                frameworkLogger.printWarn("Config value for key eventDispatchMode could not be parsed, falling back to serial.");
+            frameworkLogger.printDebug("Event dispatch set to serial.");
+        }
+
+        if (Boolean.parseBoolean(mainConfig.getProperty("eventCoalescing"))) {
+            int window = Integer.parseInt(mainConfig.getProperty("eventCoalescingWindow"));
+            frameworkEventCoalescer = new EventCoalescer(head, window, getFrameworkLogger());
+            frameworkLogger.printInfo("Coalescing client move and channel edit events within " + window + " milliseconds.");
+            head = frameworkEventCoalescer;
+        }
+
+        return head;
+    }
+
+    /**
+     * Registers the event pipeline at the Teamspeak api. The server state mirror is registered as a listener of its
+     * own, so it receives events in the order the server sent them, no matter how the pipeline dispatches them.
+     *
+     * @param api The api of the query connection.
+     */
+    public void registerEventListeners(TS3Api api) {
+        if (frameworkServerStateMirror != null)
+            api.addTS3Listeners(frameworkServerStateMirror);
+        api.addTS3Listeners(frameworkEventListener);
+    }
+
+    /**
+     * Stops the threads of the event pipeline, events arriving afterwards are dropped.
+     */
+    public void shutdownEventPipeline() {
+        if (frameworkEventCoalescer != null)
+            frameworkEventCoalescer.shutdown();
+        if (frameworkKeyedEventExecutor != null)
+            frameworkKeyedEventExecutor.shutdown();
+        if (frameworkServerStateMirror != null)
+            frameworkServerStateMirror.shutdown();
+    }
+
+    /**
+     * Creates and starts the event journal if it is enabled.
+     *
+     * @return The event journal or null if it is disabled or could not be opened.
+     */
+    private EventJournal createEventJournal() {
+        Config mainConfig = getConfig(new ConfigMain(getFrameworkLogger()).getPath());
+        if (!Boolean.parseBoolean(mainConfig.getProperty("eventJournal")))
+            return null;
+        EventJournal eventJournal = new EventJournal(this, Integer.parseInt(mainConfig.getProperty("eventJournalSegmentSize")), Integer.parseInt(mainConfig.getProperty("eventJournalSegments")));
+        try {
+            eventJournal.start();
+        } catch (IOException e) {
+            frameworkLogger.printError("Failed to open event journal, continuing without it: " + e.getMessage());
+            return null;
+        }
+        frameworkLogger.printDebug("Event journal opened.");
+        return eventJournal;
+    }
+
+    /**
+     * Parses the configured virtual server ids. The first one is served by this context, every further one
+     * gets its own {@link VirtualServer}.
+     */
+    private void createVirtualServers() {
+        String[] ids = getConfig(new ConfigMain(getFrameworkLogger()).getPath()).getProperty("virtualServerId").split(",");
+        for (int i = 0; i < ids.length; i++) {
+            int id;
+            try {
+                id = Integer.parseInt(ids[i].trim());
+            } catch (NumberFormatException e) {
+                frameworkLogger.printWarn("Config value for key virtualServerId contains an invalid id (" + ids[i].trim() + "), ignoring it.");
+                continue;
+            }
+            if (virtualServerId == 0)
+                virtualServerId = id;
+            else if (id != virtualServerId && getVirtualServer(id) == null)
+                virtualServers.add(new VirtualServer(new FrameworkContainer(this, id)));
+        }
+        if (virtualServerId == 0) {
+            frameworkLogger.printWarn("Config value for key virtualServerId could not be parsed, falling back to 1.");
+            virtualServerId = 1;
+        }
+        if (!virtualServers.isEmpty())
+            frameworkLogger.printInfo("Managing " + (virtualServers.size() + 1) + " virtual servers in this process.");
+    }
+
+    /**
+     * Checks whether a plugin may be loaded on this contexts virtual server.
+     *
+     * The config value <code>virtualServerPlugins</code> lists the plugins per virtual server, e.g.
+     * <code>1:Welcome,AfkMover;2:Welcome</code>. Virtual servers without an entry load every plugin.
+     *
+     * @param pluginName Name of the plugin.
+     * @return True if the plugin is enabled on this virtual server.
+     */
+    public boolean isPluginEnabled(String pluginName) {
+        String assignments = getConfig(new ConfigMain(getFrameworkLogger()).getPath()).getProperty("virtualServerPlugins");
+        for (String assignment : assignments.split(";")) {
+            int separator = assignment.indexOf(':');
+            if (separator < 0)
+                continue;
+            if (!assignment.substring(0, separator).trim().equals(String.valueOf(virtualServerId)))
+                continue;
+            for (String plugin : assignment.substring(separator + 1).split(",")) {
+                String name = plugin.trim();
+                if (name.equals("*") || name.equalsIgnoreCase(pluginName))
+                    return true;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates the server state mirror if it is enabled.
+     *
+     * @return The mirror or null if it is disabled.
+     */
+    private ServerStateMirror createServerStateMirror() {
+        Config mainConfig = getConfig(new ConfigMain(getFrameworkLogger()).getPath());
+        if (!Boolean.parseBoolean(mainConfig.getProperty("serverMirror")))
+            return null;
+        return new ServerStateMirror(this, Long.parseLong(mainConfig.getProperty("serverMirrorReconcileInterval")));
+    }
+
+    /**
+     * Creates the query connection pool if it is enabled.
+     *
+     * @return The pool or null if no pooled connections are configured.
+     */
+    private QueryConnectionPool createQueryConnectionPool() {
+        Config mainConfig = getConfig(new ConfigMain(getFrameworkLogger()).getPath());
+        int size = Integer.parseInt(mainConfig.getProperty("queryPoolSize"));
+        if (size <= 0)
+            return null;
+        QueryConnectionPool.Balancing balancing = QueryConnectionPool.Balancing.parse(mainConfig.getProperty("queryPoolBalancing"));
+        if (balancing == null) {
+            frameworkLogger.printWarn("Config value for key queryPoolBalancing could not be parsed, falling back to leastLoaded.");
+            balancing = QueryConnectionPool.Balancing.LEAST_LOADED;
+        }
+        return new QueryConnectionPool(this, size, balancing);
+    }
 
+    /**
+     * Opens the pooled query connections to the same server as the primary connection.
+     */
+    public void startQueryConnectionPool() {
+        if (frameworkQueryConnectionPool == null)
+            return;
+        frameworkQueryConnectionPool.start(getQueryHost(), getQueryPort(), resolveFloodRate());
+    }
+
+    /**
+     * <p>getQueryHost.</p>
+     *
+     * @return Address of the Teamspeak server, or of the query simulator if it is running.
+     */
+    public String getQueryHost() {
+        if (parent != null)
+            return parent.getQueryHost();
+        if (querySimulator != null)
+            return "127.0.0.1";
+        return getConfig("configs//main.properties").getProperty("serverAddress");
+    }
 
+    /**
+     * <p>getQueryPort.</p>
+     *
+     * @return Query port of the Teamspeak server, or of the query simulator if it is running.
+     */
+    public int getQueryPort() {
+        if (parent != null)
+            return parent.getQueryPort();
+        if (querySimulator != null)
+            return querySimulator.getPort();
+        return Integer.parseInt(getConfig("configs//main.properties").getProperty("queryPort"));
+    }
+
+    /**
+     * Binds the apis of a query connection, after a reconnect to the new connection. With an adaptive flood rate
+     * the framework api sends every command through the flood controller. Plugins get the deduplicating api unless
+     * deduplication is disabled, which is paced the same way.
+     *
+     * @param ts3Query The primary query connection.
+     */
+    public void bindQueryApis(TS3Query ts3Query) {
+        if (frameworkFloodController != null)
+            ts3Api = new PacedApi(ts3Query.getAsyncApi(), frameworkFloodController);
+        Config mainConfig = getConfig(new ConfigMain(getFrameworkLogger()).getPath());
+        if (!Boolean.parseBoolean(mainConfig.getProperty("queryDeduplication")))
+            return;
+        if (frameworkSingleFlightApi == null || !frameworkSingleFlightApi.isBoundTo(ts3Query.getAsyncApi()))
+            frameworkSingleFlightApi = new SingleFlightApi(ts3Query.getAsyncApi(), Boolean.parseBoolean(mainConfig.getProperty("queryMemoization")), frameworkFloodController);
+    }
 
+    /**
+     * Returns the api handed to plugins, which deduplicates concurrent identical read queries if enabled and is
+     * paced by the adaptive flood controller if the flood rate is adaptive.
+     *
+     * @return The plugin api.
+     */
+    public TS3Api getPluginApi() {
+        return frameworkSingleFlightApi != null ? frameworkSingleFlightApi : ts3Api;
+    }
 
+    /**
+     * Creates the adaptive flood controller if the flood rate is set to adaptive.
+     *
+     * @return The controller or null if a fixed flood rate is used.
+     */
+    private AdaptiveFloodController createFloodController() {
+        Config mainConfig = getConfig(new ConfigMain(getFrameworkLogger()).getPath());
+        if (!mainConfig.getProperty("floodRate").equalsIgnoreCase("ADAPTIVE"))
+            return null;
+        double minRate = 1000.0 / TS3Query.FloodRate.DEFAULT.getMs();
+        AdaptiveFloodController controller = new AdaptiveFloodController(minRate, Integer.parseInt(mainConfig.getProperty("floodRateAdaptiveMax")));
+        frameworkLogger.printInfo("Adaptive flood rate enabled, pacing between " + String.format("%.1f", minRate) + " and " + controller.getMaxRate() + " commands per second.");
+        return controller;
+    }
 
+    /**
+     * Creates the plugin watchdog as configured, unless it is turned off.
+     *
+     * @return The watchdog or null if it is turned off.
+     */
+    private PluginWatchdog createPluginWatchdog() {
+        Config mainConfig = getConfig(new ConfigMain(getFrameworkLogger()).getPath());
+        WatchdogPolicy policy = WatchdogPolicy.parse(mainConfig.getProperty("pluginWatchdogPolicy"));
+        if (policy == null) {
+            frameworkLogger.printWarn("Config value for key pluginWatchdogPolicy could not be parsed, falling back to log.");
+            policy = WatchdogPolicy.LOG;
+        }
+        if (policy == WatchdogPolicy.OFF)
+            return null;
+        return new PluginWatchdog(this, policy, Long.parseLong(mainConfig.getProperty("pluginWatchdogDeadline")), Integer.parseInt(mainConfig.getProperty("pluginWatchdogStrikes")));
     }
 
     /**
@@ -168,18 +517,31 @@ public class FrameworkContainer {
         TS3Config localTs3config = new TS3Config();
 
         frameworkLogger.printDebug("Trying to assign server address...");
-        localTs3config.setHost(getConfig("configs//main.properties").getProperty("serverAddress"));
-        frameworkLogger.printDebug("Server address assigned.");
-
-        String cfloodRate = getConfig(new ConfigMain(getFrameworkLogger()).getPath()).getProperty("floodRate");
-        if (cfloodRate.equalsIgnoreCase("UNLIMITED")) {
-            localTs3config.setFloodRate(TS3Query.FloodRate.UNLIMITED);
-            frameworkLogger.printDebug("Set flood rate to unlimited.");
-        } else if (cfloodRate.equalsIgnoreCase("DEFAULT")) {
-            frameworkLogger.printDebug("Set flood rate to default.");
+        int queryPort = Integer.parseInt(getConfig("configs//main.properties").getProperty("queryPort"));
+        if (getBooleanParameter("-simulator")) {
+            Config mainConfig = getConfig(new ConfigMain(getFrameworkLogger()).getPath());
+            querySimulator = new QuerySimulator(queryPort, Integer.parseInt(mainConfig.getProperty("simulatorEventRate")), Integer.parseInt(mainConfig.getProperty("simulatorClients")), Integer.parseInt(mainConfig.getProperty("simulatorChannels")), frameworkLogger);
+            try {
+                querySimulator.start();
+            } catch (IOException e) {
+                frameworkLogger.printError("Failed to start query simulator on port " + queryPort + ", appending error details: " + e.getMessage());
+                framework.shutdown();
+            }
+            frameworkLogger.printWarn("Connecting to the built-in query simulator on port " + querySimulator.getPort() + " instead of a Teamspeak server.");
+            localTs3config.setHost("127.0.0.1");
+            localTs3config.setQueryPort(querySimulator.getPort());
         } else {
-            frameworkLogger.printWarn("Config value for key floodRate could not be parsed, falling back to default.");
+            localTs3config.setHost(getConfig("configs//main.properties").getProperty("serverAddress"));
+            localTs3config.setQueryPort(queryPort);
         }
+        frameworkLogger.printDebug("Server address assigned.");
+
+        TS3Query.FloodRate floodRate = resolveFloodRate();
+        localTs3config.setFloodRate(floodRate);
+        if (frameworkFloodController != null)
+            frameworkLogger.printDebug("Set flood rate to unlimited, commands are paced by the adaptive flood controller.");
+        else
+            frameworkLogger.printDebug("Set flood rate to " + (floodRate == TS3Query.FloodRate.UNLIMITED ? "unlimited." : "default."));
 
         frameworkLogger.printDebug("Trying to assign reconnect strategy...");
         String reconnectStrategy = getConfig(new ConfigMain(getFrameworkLogger()).getPath()).getProperty("reconnectStrategy");
@@ -232,6 +594,23 @@ public class FrameworkContainer {
 
     }
 
+    /**
+     * Reads the configured flood rate.
+     *
+     * With an adaptive flood rate the library does not pace at all, every command the framework and its plugins
+     * send goes through the adaptive flood controller instead.
+     *
+     * @return The flood rate, default if the config value could not be parsed.
+     */
+    TS3Query.FloodRate resolveFloodRate() {
+        String cfloodRate = getConfig(new ConfigMain(getFrameworkLogger()).getPath()).getProperty("floodRate");
+        if (cfloodRate.equalsIgnoreCase("UNLIMITED") || cfloodRate.equalsIgnoreCase("ADAPTIVE"))
+            return TS3Query.FloodRate.UNLIMITED;
+        if (!cfloodRate.equalsIgnoreCase("DEFAULT"))
+            frameworkLogger.printWarn("Config value for key floodRate could not be parsed, falling back to default.");
+        return TS3Query.FloodRate.DEFAULT;
+    }
+
     /**
      * <p>loadConfigs.</p>
      */
@@ -632,6 +1011,10 @@ public class FrameworkContainer {
                 booleanParameters.put("-skip-configcheck", true);
             }
 
+            else if (args[i].contains("-simulator")) {
+                booleanParameters.put("-simulator", true);
+            }
+
         }
 
     }
@@ -699,6 +1082,15 @@ public class FrameworkContainer {
         return frameworkUuidManager;
     }
 
+    /**
+     * <p>Getter for the field <code>frameworkIdentityManager</code>.</p>
+     *
+     * @return a {@link net.vortexdata.tsqpf.modules.identity.IdentityManager} object.
+     */
+    public IdentityManager getFrameworkIdentityManager() {
+        return frameworkIdentityManager;
+    }
+
     /**
      * <p>Getter for the field <code>globalEventHandler</code>.</p>
      *
@@ -708,6 +1100,195 @@ public class FrameworkContainer {
         return globalEventHandler;
     }
 
+    /**
+     * <p>Getter for the field <code>frameworkEventListener</code>.</p>
+     *
+     * @return The first listener of the event pipeline, registered at the Teamspeak api.
+     */
+    public TS3Listener getFrameworkEventListener() {
+        return frameworkEventListener;
+    }
+
+    /**
+     * <p>Getter for the field <code>frameworkOutboundMessageQueue</code>.</p>
+     *
+     * @return The queue all outgoing text messages should be sent through.
+     */
+    public OutboundMessageQueue getFrameworkOutboundMessageQueue() {
+        return frameworkOutboundMessageQueue;
+    }
+
+    /**
+     * <p>Getter for the field <code>querySimulator</code>.</p>
+     *
+     * @return The built-in query simulator or null if the framework connects to a real server.
+     */
+    public QuerySimulator getQuerySimulator() {
+        return querySimulator;
+    }
+
+    /**
+     * <p>Getter for the field <code>frameworkEventJournal</code>.</p>
+     *
+     * @return The event journal or null if it is disabled.
+     */
+    public EventJournal getFrameworkEventJournal() {
+        return frameworkEventJournal;
+    }
+
+    /**
+     * <p>Getter for the field <code>frameworkServerStateMirror</code>.</p>
+     *
+     * @return The server state mirror or null if it is disabled.
+     */
+    public ServerStateMirror getFrameworkServerStateMirror() {
+        return frameworkServerStateMirror;
+    }
+
+    /**
+     * <p>Getter for the field <code>frameworkQueryConnectionPool</code>.</p>
+     *
+     * @return The query connection pool or null if it is disabled.
+     */
+    public QueryConnectionPool getFrameworkQueryConnectionPool() {
+        return frameworkQueryConnectionPool;
+    }
+
+    /**
+     * <p>Getter for the field <code>frameworkAsyncQueryApi</code>.</p>
+     *
+     * @return The non-blocking api handed to plugins.
+     */
+    public AsyncQueryApi getFrameworkAsyncQueryApi() {
+        return frameworkAsyncQueryApi;
+    }
+
+    /**
+     * <p>Getter for the field <code>frameworkSingleFlightApi</code>.</p>
+     *
+     * @return The deduplicating plugin api or null if deduplication is disabled.
+     */
+    public SingleFlightApi getFrameworkSingleFlightApi() {
+        return frameworkSingleFlightApi;
+    }
+
+    /**
+     * <p>Getter for the field <code>virtualServerId</code>.</p>
+     *
+     * @return Id of the virtual server served by this context.
+     */
+    public int getVirtualServerId() {
+        return virtualServerId;
+    }
+
+    /**
+     * <p>Getter for the field <code>parent</code>.</p>
+     *
+     * @return The primary context or null if this is the primary context.
+     */
+    public FrameworkContainer getParent() {
+        return parent;
+    }
+
+    /**
+     * <p>Getter for the field <code>virtualServers</code>.</p>
+     *
+     * @return The additional virtual servers managed by this process, empty for additional contexts.
+     */
+    public List<VirtualServer> getVirtualServers() {
+        return Collections.unmodifiableList(virtualServers);
+    }
+
+    /**
+     * Returns an additional virtual server by its id.
+     *
+     * @param id Id of the virtual server.
+     * @return The virtual server or null if it is not managed as additional virtual server.
+     */
+    public VirtualServer getVirtualServer(int id) {
+        for (VirtualServer virtualServer : virtualServers) {
+            if (virtualServer.getFrameworkContainer().getVirtualServerId() == id)
+                return virtualServer;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the class loaders of all plugin jars loaded on this virtual server. Every virtual server loads its
+     * plugins with loaders of its own.
+     *
+     * @return Plugin class loaders by jar path.
+     */
+    public ConcurrentHashMap<String, URLClassLoader> getPluginClassLoaders() {
+        return pluginClassLoaders;
+    }
+
+    /**
+     * <p>Getter for the field <code>pluginMetadataCache</code>.</p>
+     *
+     * @return Metadata cache of all plugin jars, shared by all virtual servers.
+     */
+    public PluginMetadataCache getPluginMetadataCache() {
+        return pluginMetadataCache;
+    }
+
+    /**
+     * Returns the detector closing the class loaders of reloaded plugins, shared by all virtual servers.
+     *
+     * @return The plugin class loader leak detector.
+     */
+    public synchronized ClassLoaderLeakDetector getPluginLeakDetector() {
+        if (parent != null)
+            return parent.getPluginLeakDetector();
+        if (pluginLeakDetector == null)
+            pluginLeakDetector = new ClassLoaderLeakDetector(this, Integer.parseInt(getConfig(new ConfigMain(getFrameworkLogger()).getPath()).getProperty("pluginLeakCheckDelay")));
+        return pluginLeakDetector;
+    }
+
+    /**
+     * Stops the plugin class loader leak detector if it was started.
+     */
+    public synchronized void shutdownPluginLeakDetector() {
+        if (pluginLeakDetector != null)
+            pluginLeakDetector.shutdown();
+    }
+
+    /**
+     * <p>Getter for the field <code>frameworkFloodController</code>.</p>
+     *
+     * @return The adaptive flood controller or null if a fixed flood rate is used.
+     */
+    public AdaptiveFloodController getFrameworkFloodController() {
+        return frameworkFloodController;
+    }
+
+    /**
+     * <p>Getter for the field <code>frameworkPluginWatchdog</code>.</p>
+     *
+     * @return The plugin watchdog or null if it is turned off.
+     */
+    public PluginWatchdog getFrameworkPluginWatchdog() {
+        return frameworkPluginWatchdog;
+    }
+
+    /**
+     * <p>Getter for the field <code>frameworkEventCoalescer</code>.</p>
+     *
+     * @return The event coalescer or null if coalescing is disabled.
+     */
+    public EventCoalescer getFrameworkEventCoalescer() {
+        return frameworkEventCoalescer;
+    }
+
+    /**
+     * <p>Getter for the field <code>frameworkKeyedEventExecutor</code>.</p>
+     *
+     * @return The keyed event executor or null if events are dispatched serially.
+     */
+    public KeyedEventExecutor getFrameworkKeyedEventExecutor() {
+        return frameworkKeyedEventExecutor;
+    }
+
     /**
      * <p>Getter for the field <code>chatCommandListener</code>.</p>
      *
@@ -0,0 +1,182 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.framework;
+
+import com.github.theholywaffle.teamspeak3.TS3Config;
+import com.github.theholywaffle.teamspeak3.TS3Query;
+import com.github.theholywaffle.teamspeak3.api.reconnect.ConnectionHandler;
+import com.github.theholywaffle.teamspeak3.api.reconnect.ReconnectStrategy;
+import net.vortexdata.tsqpf.configs.Config;
+import net.vortexdata.tsqpf.configs.ConfigMain;
+
+/**
+ * Connection and lifecycle of an additional virtual server managed by the framework.
+ *
+ * Each additional virtual server has its own query connection and {@link FrameworkContainer} context, and
+ * goes through the same wakeup and hibernation steps as the primary one. A lost connection only hibernates
+ * the affected virtual server, all other servers keep running.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class VirtualServer {
+
+    private final FrameworkContainer frameworkContainer;
+
+    VirtualServer(FrameworkContainer frameworkContainer) {
+        this.frameworkContainer = frameworkContainer;
+    }
+
+    /**
+     * Connects to the virtual server. Wakeup runs once the connection is established.
+     *
+     * @return True if the connection could be established.
+     */
+    public boolean connect() {
+        FrameworkContainer parent = frameworkContainer.getParent();
+        ReconnectStrategy reconnectStrategy = parent.getFrameworkReconnectStrategy() != null ? parent.getFrameworkReconnectStrategy() : ReconnectStrategy.exponentialBackoff();
+        TS3Config ts3Config = new TS3Config();
+        ts3Config.setHost(frameworkContainer.getQueryHost());
+        ts3Config.setQueryPort(frameworkContainer.getQueryPort());
+        ts3Config.setFloodRate(frameworkContainer.resolveFloodRate());
+        ts3Config.setReconnectStrategy(reconnectStrategy);
+        ts3Config.setConnectionHandler(new ConnectionHandler() {
+            @Override
+            public void onConnect(TS3Query ts3Query) {
+                wakeup(ts3Query);
+            }
+
+            @Override
+            public void onDisconnect(TS3Query ts3Query) {
+                hibernate();
+            }
+        });
+        frameworkContainer.setTs3Config(ts3Config);
+        frameworkContainer.setTs3Query(new TS3Query(ts3Config));
+
+        log("Trying to connect...");
+        try {
+            frameworkContainer.getTs3Query().connect();
+        } catch (Exception e) {
+            frameworkContainer.getFrameworkLogger().printError("Virtual server " + getId() + ": Connection failed, appending error details: " + e.getMessage());
+            return false;
+        }
+        frameworkContainer.registerEventListeners(frameworkContainer.getTs3Query().getApi());
+        frameworkContainer.getFrameworkOutboundMessageQueue().start();
+        return true;
+    }
+
+    /**
+     * Signs in, selects the virtual server and enables its plugins.
+     *
+     * @param ts3Query The connected query.
+     */
+    private void wakeup(TS3Query ts3Query) {
+        frameworkContainer.setFrameworkStatus(FrameworkStatus.WAKING);
+        frameworkContainer.setTs3Api(ts3Query.getApi());
+        frameworkContainer.bindQueryApis(ts3Query);
+        Config mainConfig = frameworkContainer.getConfig(new ConfigMain(frameworkContainer.getFrameworkLogger()).getPath());
+        try {
+            frameworkContainer.getTs3Api().login(mainConfig.getProperty("queryUser"), mainConfig.getProperty("queryPassword"));
+            frameworkContainer.getTs3Api().selectVirtualServerById(getId());
+            frameworkContainer.getFrameworkIdentityManager().setNickname(frameworkContainer.getTs3Api(), mainConfig.getProperty("clientNickname"));
+        } catch (Exception e) {
+            frameworkContainer.getFrameworkLogger().printError("Virtual server " + getId() + ": Failed to sign in or select the virtual server, it stays offline: ", e);
+            frameworkContainer.setFrameworkStatus(FrameworkStatus.HIBERNATING);
+            return;
+        }
+
+        if (frameworkContainer.getFrameworkServerStateMirror() != null) {
+            try {
+                frameworkContainer.getFrameworkServerStateMirror().seed(frameworkContainer.getTs3Api());
+            } catch (Exception e) {
+                frameworkContainer.getFrameworkLogger().printError("Virtual server " + getId() + ": Failed to seed server state mirror, plugins will see an empty server state: " + e.getMessage());
+            }
+        }
+
+        log(frameworkContainer.getFrameworkPluginManager().isSuspended() ? "Resuming plugins..." : "Loading and enabling plugins...");
+        frameworkContainer.getFrameworkPluginManager().resumeAll();
+        frameworkContainer.getTs3Api().registerAllEvents();
+        frameworkContainer.setFrameworkStatus(FrameworkStatus.RUNNING);
+        frameworkContainer.getFrameworkLogger().printInfo("Virtual server " + getId() + ": Wakeup procedure completed.");
+    }
+
+    /**
+     * Suspends or disables the plugins of the virtual server after its connection was lost.
+     */
+    private void hibernate() {
+        frameworkContainer.setFrameworkStatus(FrameworkStatus.HIBERNATING);
+        log("Hibernation initiated.");
+        frameworkContainer.getFrameworkIdentityManager().invalidate();
+        if (frameworkContainer.getFrameworkServerStateMirror() != null)
+            frameworkContainer.getFrameworkServerStateMirror().clear();
+        if (frameworkContainer.getFrameworkPluginManager().isSuspendOnHibernate()) {
+            frameworkContainer.getFrameworkPluginManager().suspendAll();
+            return;
+        }
+        frameworkContainer.getFrameworkPluginManager().disableAll();
+        frameworkContainer.getFrameworkChatCommandListener().reset();
+    }
+
+    /**
+     * Disables all plugins of the virtual server and closes its connection.
+     */
+    public void shutdown() {
+        frameworkContainer.setFrameworkStatus(FrameworkStatus.STOPPING);
+        frameworkContainer.shutdownEventPipeline();
+        if (!frameworkContainer.getFrameworkPluginManager().getPlugins().isEmpty())
+            frameworkContainer.getFrameworkPluginManager().disableAll();
+        if (frameworkContainer.getFrameworkChatCommandListener().getExecutor() != null)
+            frameworkContainer.getFrameworkChatCommandListener().getExecutor().shutdown();
+        frameworkContainer.getFrameworkOutboundMessageQueue().stop();
+        if (frameworkContainer.getTs3Query() != null)
+            frameworkContainer.getTs3Query().exit();
+    }
+
+    private void log(String message) {
+        frameworkContainer.getFrameworkLogger().printDebug("Virtual server " + getId() + ": " + message);
+    }
+
+    /**
+     * <p>getId.</p>
+     *
+     * @return Id of the virtual server.
+     */
+    public int getId() {
+        return frameworkContainer.getVirtualServerId();
+    }
+
+    /**
+     * <p>Getter for the field <code>frameworkContainer</code>.</p>
+     *
+     * @return The virtual servers context.
+     */
+    public FrameworkContainer getFrameworkContainer() {
+        return frameworkContainer;
+    }
+
+}
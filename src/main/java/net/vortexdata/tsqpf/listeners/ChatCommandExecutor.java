@@ -0,0 +1,198 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.listeners;
+
+import com.github.theholywaffle.teamspeak3.api.event.TextMessageEvent;
+import net.vortexdata.tsqpf.configs.*;
+import net.vortexdata.tsqpf.framework.*;
+import net.vortexdata.tsqpf.utils.TokenBucket;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs chat commands on a bounded thread pool, so slow commands do not block event processing.
+ *
+ * Each invoker, identified by the client unique id, is rate limited with a token bucket. Commands are rejected
+ * with a message from the messages config if the invoker is rate limited or the pool and its queue are full.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class ChatCommandExecutor {
+
+    private static final int BUCKET_PRUNE_THRESHOLD = 10000;
+
+    private final FrameworkContainer frameworkContainer;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, InvokerLimit> invokerLimits = new ConcurrentHashMap<>();
+    private final int rateBurst;
+    private final double ratePerSecond;
+    private final String messageRateLimited;
+    private final String messageBusy;
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * <p>Constructor for ChatCommandExecutor.</p>
+     *
+     * @param frameworkContainer a {@link net.vortexdata.tsqpf.framework.FrameworkContainer} object.
+     * @param threads            Maximum amount of commands running at the same time.
+     * @param queueCapacity      Maximum amount of commands waiting for a thread.
+     * @param rateBurst          Amount of commands an invoker may send at once.
+     * @param ratePerMinute      Amount of commands an invoker may send per minute.
+     */
+    public ChatCommandExecutor(FrameworkContainer frameworkContainer, int threads, int queueCapacity, int rateBurst, int ratePerMinute) {
+        this.frameworkContainer = frameworkContainer;
+        this.rateBurst = rateBurst;
+        this.ratePerSecond = ratePerMinute / 60.0;
+
+        Config messages = frameworkContainer.getConfig(new ConfigMessages(frameworkContainer.getFrameworkLogger()).getPath());
+        this.messageRateLimited = messages.getProperty("chatCommandRateLimited");
+        this.messageBusy = messages.getProperty("chatCommandBusy");
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+            Thread thread = new Thread(r, "ChatCommand-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedules the commands matched by a message, or replies with a rejection message.
+     *
+     * @param msg      The message invoking the commands.
+     * @param commands The matched commands.
+     */
+    public void submit(TextMessageEvent msg, ChatCommandInterface[] commands) {
+        if (rateBurst > 0 && !acquire(msg)) {
+            rateLimited.incrementAndGet();
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                for (ChatCommandInterface cmd : commands) {
+                    try {
+                        cmd.gotCalled(msg);
+                    } catch (Exception e) {
+                        frameworkContainer.getFrameworkLogger().printError("Chat command " + msg.getMessage() + " failed, appending error details: " + e.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            reply(msg, messageBusy);
+        }
+    }
+
+    private boolean acquire(TextMessageEvent msg) {
+        if (invokerLimits.size() > BUCKET_PRUNE_THRESHOLD)
+            invokerLimits.values().removeIf(limit -> limit.bucket.isFull());
+        InvokerLimit limit = invokerLimits.computeIfAbsent(msg.getInvokerUniqueId(), uid -> new InvokerLimit(new TokenBucket(rateBurst, ratePerSecond)));
+        if (limit.bucket.tryAcquire()) {
+            limit.notified = false;
+            return true;
+        }
+        // Only tell the invoker once per limited burst, replying to every message would amplify the spam.
+        if (!limit.notified) {
+            limit.notified = true;
+            reply(msg, messageRateLimited);
+        }
+        return false;
+    }
+
+    private void reply(TextMessageEvent msg, String message) {
+        frameworkContainer.getFrameworkOutboundMessageQueue().sendPrivateMessage(msg.getInvokerId(), message);
+    }
+
+    /**
+     * Stops accepting commands and waits shortly for running ones.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * <p>getActiveCount.</p>
+     *
+     * @return Amount of commands currently running.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * <p>getQueueDepth.</p>
+     *
+     * @return Amount of commands waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * <p>getRateLimited.</p>
+     *
+     * @return Amount of messages dropped because the invoker was rate limited.
+     */
+    public long getRateLimited() {
+        return rateLimited.get();
+    }
+
+    /**
+     * <p>getRejected.</p>
+     *
+     * @return Amount of messages rejected because the pool was saturated.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private static class InvokerLimit {
+
+        private final TokenBucket bucket;
+        private volatile boolean notified = false;
+
+        private InvokerLimit(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+
+    }
+
+}
@@ -25,13 +25,17 @@
 
 package net.vortexdata.tsqpf.listeners;
 
-import com.github.theholywaffle.teamspeak3.TS3Api;
+import com.github.theholywaffle.teamspeak3.api.TextMessageTargetMode;
 import com.github.theholywaffle.teamspeak3.api.event.TextMessageEvent;
-import net.vortexdata.tsqpf.configs.ConfigMessages;
+import net.vortexdata.tsqpf.configs.*;
 import net.vortexdata.tsqpf.framework.*;
+import net.vortexdata.tsqpf.modules.messaging.OutboundMessageQueue;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Trigger and manager for Teamspeak chat commands.
@@ -43,8 +47,18 @@ import java.util.HashMap;
  */
 public class ChatCommandListener {
 
+    private static final String INFO_PREFIX = "!info";
+    private static final int SUPPRESSION_PRUNE_THRESHOLD = 10000;
+
     private String messageCommandNotFound;
-    private HashMap<String, ArrayList<ChatCommandInterface>> commandList = new HashMap<>();
+    private final LinkedHashMap<String, ArrayList<ChatCommandInterface>> commandList = new LinkedHashMap<>();
+    private final ChatCommandInterface infoCommand = this::sendFrameworkInfo;
+    private volatile ChatCommandRouter router;
+    private ChatCommandExecutor executor;
+    private final String sigils;
+    private final boolean replyUnknown;
+    private final long unknownReplyWindowNanos;
+    private final ConcurrentHashMap<String, Long> lastUnknownReply = new ConcurrentHashMap<>();
     private FrameworkContainer frameworkContainer;
 
     /**
@@ -55,47 +69,75 @@ public class ChatCommandListener {
     public ChatCommandListener(FrameworkContainer frameworkContainer) {
         this.messageCommandNotFound = frameworkContainer.getConfig(new ConfigMessages(frameworkContainer.getFrameworkLogger()).getPath()).getProperty("chatCommandUnknown");
         this.frameworkContainer = frameworkContainer;
+        Config mainConfig = frameworkContainer.getConfig(new ConfigMain(frameworkContainer.getFrameworkLogger()).getPath());
+        int threads = Integer.parseInt(mainConfig.getProperty("chatCommandThreads"));
+        if (threads > 0)
+            executor = new ChatCommandExecutor(frameworkContainer, threads, Integer.parseInt(mainConfig.getProperty("chatCommandQueueCapacity")), Integer.parseInt(mainConfig.getProperty("chatCommandRateBurst")), Integer.parseInt(mainConfig.getProperty("chatCommandRatePerMinute")));
+        this.sigils = mainConfig.getProperty("chatCommandSigils").trim();
+        this.replyUnknown = Boolean.parseBoolean(mainConfig.getProperty("chatCommandUnknownReply"));
+        this.unknownReplyWindowNanos = TimeUnit.SECONDS.toNanos(Integer.parseInt(mainConfig.getProperty("chatCommandUnknownReplyWindow")));
+        reset();
     }
 
     /**
      * Activated when the Framework receives a new private message.
      *
+     * Only the commands registered for the longest matching prefix are called. Unless disabled, they run on
+     * the {@link ChatCommandExecutor} and this method returns right after routing.
+     *
+     * If command sigils are configured, messages not starting with one of them are ignored without any further
+     * work. Unknown commands are only answered in private chat and at most once per suppression window per user.
+     *
      * @param msg The events object
      */
     public void newMessage(TextMessageEvent msg) {
-        TS3Api ts3Api = frameworkContainer.getTs3Api();
-        // Send TSQPF Info
-        if (msg.getMessage().startsWith("!info")) {
-            ts3Api.sendPrivateMessage(msg.getInvokerId(), "This server is running the VortexdataNET Teamspeak Query Plugin Framework");
-            ts3Api.sendPrivateMessage(msg.getInvokerId(), "More info: https://projects.vortexdata.net/tsq-plugin-framework");
+        String message = msg.getMessage();
+        if (!sigils.isEmpty() && (message.isEmpty() || sigils.indexOf(message.charAt(0)) < 0))
             return;
-        }
 
-
-        if (commandList.size() == 0) {
-            ts3Api.sendPrivateMessage(msg.getInvokerId(), messageCommandNotFound);
+        ChatCommandInterface[] commands = router.route(message);
+        if (commands.length == 0) {
+            replyUnknownCommand(msg);
+            return;
+        }
+        if (executor != null) {
+            executor.submit(msg, commands);
             return;
         }
+        for (ChatCommandInterface cmd : commands)
+            cmd.gotCalled(msg);
+    }
 
-        boolean commandFound = false;
-        for (String prefix : commandList.keySet()) {
-            if (msg.getMessage().startsWith(prefix)) {
-                commandFound = true;
-                for (ChatCommandInterface cmd : commandList.get(prefix)) {
-                    cmd.gotCalled(msg);
-                }
-            }
+    private void replyUnknownCommand(TextMessageEvent msg) {
+        if (!replyUnknown || msg.getTargetMode() != TextMessageTargetMode.CLIENT)
+            return;
+        if (unknownReplyWindowNanos > 0) {
+            long now = System.nanoTime();
+            if (lastUnknownReply.size() > SUPPRESSION_PRUNE_THRESHOLD)
+                lastUnknownReply.values().removeIf(sent -> now - sent >= unknownReplyWindowNanos);
+            Long lastReply = lastUnknownReply.get(msg.getInvokerUniqueId());
+            if (lastReply != null && now - lastReply < unknownReplyWindowNanos)
+                return;
+            lastUnknownReply.put(msg.getInvokerUniqueId(), now);
         }
+        frameworkContainer.getFrameworkOutboundMessageQueue().sendPrivateMessage(msg.getInvokerId(), messageCommandNotFound);
+    }
 
-        if (!commandFound)
-            ts3Api.sendPrivateMessage(msg.getInvokerId(), messageCommandNotFound);
+    private void sendFrameworkInfo(TextMessageEvent msg) {
+        OutboundMessageQueue outbound = frameworkContainer.getFrameworkOutboundMessageQueue();
+        outbound.sendPrivateMessage(msg.getInvokerId(), "This server is running the VortexdataNET Teamspeak Query Plugin Framework");
+        outbound.sendPrivateMessage(msg.getInvokerId(), "More info: https://projects.vortexdata.net/tsq-plugin-framework");
     }
 
     /**
-     * Registers and enables a new command.
+     * Removes all registered commands, only the built-in !info command is kept.
      */
-    public void reset() {
+    public synchronized void reset() {
         commandList.clear();
+        ArrayList<ChatCommandInterface> info = new ArrayList<>();
+        info.add(infoCommand);
+        commandList.put(INFO_PREFIX, info);
+        rebuildRouter();
     }
 
     /**
@@ -104,17 +146,50 @@ public class ChatCommandListener {
      * @param cmd a {@link net.vortexdata.tsqpf.listeners.ChatCommandInterface} object.
      * @param prefix a {@link java.lang.String} object.
      */
-    public void registerNewCommand(ChatCommandInterface cmd, String prefix) {
-        ArrayList<ChatCommandInterface> cmds;
-
-        if ((cmds = commandList.get(prefix)) != null) {
-            cmds.add(cmd);
-        } else {
-            cmds = new ArrayList<>();
-            commandList.put(prefix, cmds);
-            cmds.add(cmd);
+    public synchronized void registerNewCommand(ChatCommandInterface cmd, String prefix) {
+        commandList.computeIfAbsent(prefix, p -> new ArrayList<>()).add(cmd);
+        rebuildRouter();
+    }
+
+    /**
+     * Removes a command from all prefixes it was registered for.
+     *
+     * @param cmd Command to remove.
+     * @return True if the command was registered.
+     */
+    public synchronized boolean unregisterCommand(ChatCommandInterface cmd) {
+        boolean removed = false;
+        Iterator<ArrayList<ChatCommandInterface>> iterator = commandList.values().iterator();
+        while (iterator.hasNext()) {
+            ArrayList<ChatCommandInterface> cmds = iterator.next();
+            removed |= cmds.removeIf(registered -> registered == cmd);
+            if (cmds.isEmpty())
+                iterator.remove();
         }
+        if (removed)
+            rebuildRouter();
+        return removed;
+    }
+
+    /**
+     * <p>Getter for the field <code>router</code>.</p>
+     *
+     * @return The currently active command router.
+     */
+    public ChatCommandRouter getRouter() {
+        return router;
+    }
 
+    /**
+     * <p>Getter for the field <code>executor</code>.</p>
+     *
+     * @return The chat command executor or null if commands run on the event thread.
+     */
+    public ChatCommandExecutor getExecutor() {
+        return executor;
+    }
 
+    private void rebuildRouter() {
+        router = new ChatCommandRouter(commandList);
     }
 }
@@ -0,0 +1,139 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.listeners;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable prefix trie routing chat messages to the commands registered for their longest matching prefix.
+ *
+ * Routing walks the message once, so it costs O(message length) regardless of how many prefixes are
+ * registered. Instances are never modified, a new router is compiled whenever commands change.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class ChatCommandRouter {
+
+    private static final ChatCommandInterface[] NO_COMMANDS = new ChatCommandInterface[0];
+
+    private final Node root;
+    private final int prefixCount;
+
+    /**
+     * Compiles a router from registered commands.
+     *
+     * @param commands Commands by prefix, in the order they should be called.
+     */
+    public ChatCommandRouter(Map<String, ? extends List<ChatCommandInterface>> commands) {
+        MutableNode mutableRoot = new MutableNode();
+        int prefixes = 0;
+        for (Map.Entry<String, ? extends List<ChatCommandInterface>> entry : commands.entrySet()) {
+            if (entry.getValue().isEmpty())
+                continue;
+            MutableNode node = mutableRoot;
+            for (int i = 0; i < entry.getKey().length(); i++)
+                node = node.children.computeIfAbsent(entry.getKey().charAt(i), c -> new MutableNode());
+            node.commands.addAll(entry.getValue());
+            prefixes++;
+        }
+        this.root = mutableRoot.freeze();
+        this.prefixCount = prefixes;
+    }
+
+    /**
+     * Returns the commands registered for the longest prefix of a message.
+     *
+     * The returned array is shared and must not be modified.
+     *
+     * @param message The chat message.
+     * @return Matching commands, empty if no prefix matches.
+     */
+    public ChatCommandInterface[] route(String message) {
+        Node node = root;
+        ChatCommandInterface[] match = root.commands;
+        for (int i = 0; i < message.length(); i++) {
+            node = node.child(message.charAt(i));
+            if (node == null)
+                break;
+            if (node.commands.length > 0)
+                match = node.commands;
+        }
+        return match;
+    }
+
+    /**
+     * <p>Getter for the field <code>prefixCount</code>.</p>
+     *
+     * @return Amount of registered prefixes.
+     */
+    public int getPrefixCount() {
+        return prefixCount;
+    }
+
+    private static class Node {
+
+        private final char[] keys;
+        private final Node[] children;
+        private final ChatCommandInterface[] commands;
+
+        private Node(char[] keys, Node[] children, ChatCommandInterface[] commands) {
+            this.keys = keys;
+            this.children = children;
+            this.commands = commands;
+        }
+
+        private Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index < 0 ? null : children[index];
+        }
+
+    }
+
+    private static class MutableNode {
+
+        private final TreeMap<Character, MutableNode> children = new TreeMap<>();
+        private final ArrayList<ChatCommandInterface> commands = new ArrayList<>();
+
+        private Node freeze() {
+            char[] keys = new char[children.size()];
+            Node[] frozen = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, MutableNode> child : children.entrySet()) {
+                keys[i] = child.getKey();
+                frozen[i++] = child.getValue().freeze();
+            }
+            return new Node(keys, frozen, commands.isEmpty() ? NO_COMMANDS : commands.toArray(NO_COMMANDS));
+        }
+
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.listeners;
+
+import com.github.theholywaffle.teamspeak3.api.event.*;
+import net.vortexdata.tsqpf.console.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges bursts of superseded events before they are dispatched.
+ *
+ * Within the configured window only the last {@link ClientMovedEvent} per client is delivered and all
+ * {@link ChannelEditedEvent}s of a channel are merged into one. Events are only merged if the same client
+ * invoked them, so the framework filtering its own events never drops the change of someone else. Any other
+ * event flushes the pending events first, so the order relative to other events is kept.
+ *
+ * All events, including the ones passed through unmerged, are delivered in arrival order by the coalescers own
+ * thread. A slow listener therefore delays delivery, but never the thread handing events to the coalescer.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class EventCoalescer implements TS3Listener {
+
+    private static final long CLIENT_MOVED_KEY = 1L << 32;
+    private static final long CHANNEL_EDIT_KEY = 2L << 32;
+
+    private final TS3Listener downstream;
+    private final Logger logger;
+    private final long windowMillis;
+    private ArrayList<Slot> pending = new ArrayList<>();
+    private final HashMap<Long, Slot> mergeable = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong absorbed = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private boolean flushScheduled = false;
+
+    /**
+     * <p>Constructor for EventCoalescer.</p>
+     *
+     * @param downstream   Listener the coalesced events are fired at.
+     * @param windowMillis Time in milliseconds events are held back to be merged.
+     * @param logger       a {@link net.vortexdata.tsqpf.console.Logger} object.
+     */
+    public EventCoalescer(TS3Listener downstream, long windowMillis, Logger logger) {
+        this.downstream = downstream;
+        this.logger = logger;
+        this.windowMillis = Math.max(1, windowMillis);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "EventCoalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private synchronized void hold(long key, BaseEvent event) {
+        received.incrementAndGet();
+        Slot superseded = mergeable.get(key);
+        // The earlier change of another invoker keeps its place and is delivered before this one.
+        if (superseded != null && ((BaseEvent) superseded.event).getInvokerId() == event.getInvokerId()) {
+            absorbed.incrementAndGet();
+            if (event instanceof ChannelEditedEvent)
+                event = merge((ChannelEditedEvent) superseded.event, (ChannelEditedEvent) event);
+            superseded.event = null;
+        }
+        Slot slot = new Slot(event, true);
+        pending.add(slot);
+        mergeable.put(key, slot);
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            schedule(windowMillis);
+        }
+    }
+
+    private synchronized void pass(TS3Event event) {
+        pending.add(new Slot(event, false));
+        // Held events must not be merged with ones arriving after this event.
+        mergeable.clear();
+        schedule(0);
+    }
+
+    private synchronized ArrayList<Slot> drain() {
+        flushScheduled = false;
+        ArrayList<Slot> events = pending;
+        pending = new ArrayList<>();
+        mergeable.clear();
+        return events;
+    }
+
+    private void schedule(long delayMillis) {
+        try {
+            scheduler.schedule(this::deliver, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shut down, the event is dropped.
+        }
+    }
+
+    /**
+     * Delivers all pending events right away on the coalescers thread.
+     */
+    public void flush() {
+        schedule(0);
+    }
+
+    /**
+     * Stops the delivery thread, events not delivered yet are dropped.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void deliver() {
+        for (Slot slot : drain()) {
+            if (slot.event == null)
+                continue;
+            if (slot.held)
+                delivered.incrementAndGet();
+            fire(slot.event);
+        }
+    }
+
+    private void fire(TS3Event event) {
+        try {
+            event.fire(downstream);
+        } catch (Exception e) {
+            logger.printError("Failed to dispatch coalesced " + event.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Position of an event in the delivery order. The event is cleared if a later one of the same invoker replaced it.
+     */
+    private static final class Slot {
+        private TS3Event event;
+        private final boolean held;
+
+        private Slot(TS3Event event, boolean held) {
+            this.event = event;
+            this.held = held;
+        }
+    }
+
+    private static ChannelEditedEvent merge(ChannelEditedEvent older, ChannelEditedEvent newer) {
+        HashMap<String, String> properties = new HashMap<>(older.getMap());
+        properties.putAll(newer.getMap());
+        return new ChannelEditedEvent(properties);
+    }
+
+    /**
+     * <p>getReceived.</p>
+     *
+     * @return Amount of coalescable events received.
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * <p>getAbsorbed.</p>
+     *
+     * @return Amount of events that were merged into a later one.
+     */
+    public long getAbsorbed() {
+        return absorbed.get();
+    }
+
+    /**
+     * <p>getDelivered.</p>
+     *
+     * @return Amount of coalesced events delivered.
+     */
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onClientMoved(ClientMovedEvent e) {
+        hold(CLIENT_MOVED_KEY | (e.getClientId() & 0xFFFFFFFFL), e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelEdit(ChannelEditedEvent e) {
+        hold(CHANNEL_EDIT_KEY | (e.getChannelId() & 0xFFFFFFFFL), e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onTextMessage(TextMessageEvent e) {
+        pass(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onClientJoin(ClientJoinEvent e) {
+        pass(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onClientLeave(ClientLeaveEvent e) {
+        pass(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onServerEdit(ServerEditedEvent e) {
+        pass(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelDescriptionChanged(ChannelDescriptionEditedEvent e) {
+        pass(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelCreate(ChannelCreateEvent e) {
+        pass(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelDeleted(ChannelDeletedEvent e) {
+        pass(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelMoved(ChannelMovedEvent e) {
+        pass(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelPasswordChanged(ChannelPasswordChangedEvent e) {
+        pass(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onPrivilegeKeyUsed(PrivilegeKeyUsedEvent e) {
+        pass(e);
+    }
+
+}
@@ -26,9 +26,13 @@
 package net.vortexdata.tsqpf.listeners;
 
 import com.github.theholywaffle.teamspeak3.api.event.*;
+import net.vortexdata.tsqpf.configs.Config;
+import net.vortexdata.tsqpf.configs.ConfigMain;
 import net.vortexdata.tsqpf.framework.*;
+import net.vortexdata.tsqpf.modules.eventhandler.EventType;
+import net.vortexdata.tsqpf.modules.journal.EventJournal;
+import net.vortexdata.tsqpf.modules.singleflight.DispatchContext;
 import net.vortexdata.tsqpf.plugins.PluginContainer;
-import net.vortexdata.tsqpf.plugins.PluginManager;
 
 /**
  * Listens for all global Teamspeak events.
@@ -40,6 +44,8 @@ import net.vortexdata.tsqpf.plugins.PluginManager;
 public class GlobalEventHandler implements TS3Listener {
 
     private FrameworkContainer frameworkContainer;
+    private EventJournal eventJournal;
+    private final boolean memoization;
 
     /**
      * <p>Constructor for GlobalEventHandler.</p>
@@ -48,7 +54,41 @@ public class GlobalEventHandler implements TS3Listener {
      */
     public GlobalEventHandler(FrameworkContainer frameworkContainer) {
         this.frameworkContainer = frameworkContainer;
+        this.eventJournal = frameworkContainer.getFrameworkEventJournal();
+        Config mainConfig = frameworkContainer.getConfig(new ConfigMain(frameworkContainer.getFrameworkLogger()).getPath());
+        this.memoization = Boolean.parseBoolean(mainConfig.getProperty("queryDeduplication")) && Boolean.parseBoolean(mainConfig.getProperty("queryMemoization"));
+    }
+
+    /**
+     * Passes an event to the framework internal consumers, before the own clients events are filtered.
+     *
+     * @param event The received event.
+     */
+    private void observe(TS3Event event) {
+        if (eventJournal != null)
+            eventJournal.record(event);
+    }
 
+    /**
+     * Hands an event to all subscribed plugins, sharing one dispatch context among them if query
+     * memoization is enabled.
+     *
+     * @param type  Type of the event.
+     * @param event The event.
+     */
+    private void dispatch(EventType type, TS3Event event) {
+        if (!memoization) {
+            for (PluginContainer pl : frameworkContainer.getFrameworkPluginManager().getSubscribers(type))
+                pl.deliver(event);
+            return;
+        }
+        DispatchContext context = DispatchContext.open();
+        try {
+            for (PluginContainer pl : frameworkContainer.getFrameworkPluginManager().getSubscribers(type))
+                pl.deliver(event, context.retain());
+        } finally {
+            context.release();
+        }
     }
 
     /**
@@ -57,10 +97,9 @@ public class GlobalEventHandler implements TS3Listener {
      * Fires when the framework receives a new text message.
      */
     public void onTextMessage(TextMessageEvent textMessageEvent) {
-        if (textMessageEvent.getInvokerId() == frameworkContainer.getTs3Api().whoAmI().getId()) return;
-        for (PluginContainer pl : PluginManager.getLoadedPlugins()) {
-            pl.getTeamspeakPlugin().onTextMessage(textMessageEvent);
-        }
+        observe(textMessageEvent);
+        if (frameworkContainer.getFrameworkIdentityManager().isSelf(textMessageEvent.getInvokerId())) return;
+        dispatch(EventType.TEXT_MESSAGE, textMessageEvent);
         frameworkContainer.getFrameworkChatCommandListener().newMessage(textMessageEvent);
     }
 
@@ -70,10 +109,9 @@ public class GlobalEventHandler implements TS3Listener {
      * Fires when a client connects to the Teamspeak server.
      */
     public void onClientJoin(ClientJoinEvent clientJoinEvent) {
-        if (clientJoinEvent.getInvokerId() == frameworkContainer.getTs3Api().whoAmI().getId()) return;
-        for (PluginContainer pl : PluginManager.getLoadedPlugins()) {
-            pl.getTeamspeakPlugin().onClientJoin(clientJoinEvent);
-        }
+        observe(clientJoinEvent);
+        if (frameworkContainer.getFrameworkIdentityManager().isSelf(clientJoinEvent.getInvokerId())) return;
+        dispatch(EventType.CLIENT_JOIN, clientJoinEvent);
     }
 
     /**
@@ -82,10 +120,9 @@ public class GlobalEventHandler implements TS3Listener {
      * Fires when a client disconnects from the Teamspeak server.
      */
     public void onClientLeave(ClientLeaveEvent clientLeaveEvent) {
-        if (clientLeaveEvent.getInvokerId() == frameworkContainer.getTs3Api().whoAmI().getId()) return;
-        for (PluginContainer pl : PluginManager.getLoadedPlugins()) {
-            pl.getTeamspeakPlugin().onClientLeave(clientLeaveEvent);
-        }
+        observe(clientLeaveEvent);
+        if (frameworkContainer.getFrameworkIdentityManager().isSelf(clientLeaveEvent.getInvokerId())) return;
+        dispatch(EventType.CLIENT_LEAVE, clientLeaveEvent);
     }
 
     /**
@@ -94,10 +131,9 @@ public class GlobalEventHandler implements TS3Listener {
      * Fires when the Teamspeak server is edited.
      */
     public void onServerEdit(ServerEditedEvent serverEditedEvent) {
-        if (serverEditedEvent.getInvokerId() == frameworkContainer.getTs3Api().whoAmI().getId()) return;
-        for (PluginContainer pl : PluginManager.getLoadedPlugins()) {
-            pl.getTeamspeakPlugin().onServerEdit(serverEditedEvent);
-        }
+        observe(serverEditedEvent);
+        if (frameworkContainer.getFrameworkIdentityManager().isSelf(serverEditedEvent.getInvokerId())) return;
+        dispatch(EventType.SERVER_EDIT, serverEditedEvent);
     }
 
     /**
@@ -106,10 +142,9 @@ public class GlobalEventHandler implements TS3Listener {
      * Fires when a channel of the Teamspeak server is edited.
      */
     public void onChannelEdit(ChannelEditedEvent channelEditedEvent) {
-        if (channelEditedEvent.getInvokerId() == frameworkContainer.getTs3Api().whoAmI().getId()) return;
-        for (PluginContainer pl : PluginManager.getLoadedPlugins()) {
-            pl.getTeamspeakPlugin().onChannelEdit(channelEditedEvent);
-        }
+        observe(channelEditedEvent);
+        if (frameworkContainer.getFrameworkIdentityManager().isSelf(channelEditedEvent.getInvokerId())) return;
+        dispatch(EventType.CHANNEL_EDIT, channelEditedEvent);
     }
 
     /**
@@ -118,10 +153,9 @@ public class GlobalEventHandler implements TS3Listener {
      * Fires when the channel description of any channel on the Teamspeak server is changed.
      */
     public void onChannelDescriptionChanged(ChannelDescriptionEditedEvent channelDescriptionEditedEvent) {
-        if (channelDescriptionEditedEvent.getInvokerId() == frameworkContainer.getTs3Api().whoAmI().getId()) return;
-        for (PluginContainer pl : PluginManager.getLoadedPlugins()) {
-            pl.getTeamspeakPlugin().onChannelDescriptionChanged(channelDescriptionEditedEvent);
-        }
+        observe(channelDescriptionEditedEvent);
+        if (frameworkContainer.getFrameworkIdentityManager().isSelf(channelDescriptionEditedEvent.getInvokerId())) return;
+        dispatch(EventType.CHANNEL_DESCRIPTION_CHANGED, channelDescriptionEditedEvent);
     }
 
     /**
@@ -130,10 +164,9 @@ public class GlobalEventHandler implements TS3Listener {
      * Fires when a client is moved on the Teamspeak server.
      */
     public void onClientMoved(ClientMovedEvent clientMovedEvent) {
-        if (clientMovedEvent.getInvokerId() == frameworkContainer.getTs3Api().whoAmI().getId()) return;
-        for (PluginContainer pl : PluginManager.getLoadedPlugins()) {
-            pl.getTeamspeakPlugin().onClientMoved(clientMovedEvent);
-        }
+        observe(clientMovedEvent);
+        if (frameworkContainer.getFrameworkIdentityManager().isSelf(clientMovedEvent.getInvokerId())) return;
+        dispatch(EventType.CLIENT_MOVED, clientMovedEvent);
     }
 
     /**
@@ -142,10 +175,9 @@ public class GlobalEventHandler implements TS3Listener {
      * Fires when a new channel is created on the Teamspeak server.
      */
     public void onChannelCreate(ChannelCreateEvent channelCreateEvent) {
-        if (channelCreateEvent.getInvokerId() == frameworkContainer.getTs3Api().whoAmI().getId()) return;
-        for (PluginContainer pl : PluginManager.getLoadedPlugins()) {
-            pl.getTeamspeakPlugin().onChannelCreate(channelCreateEvent);
-        }
+        observe(channelCreateEvent);
+        if (frameworkContainer.getFrameworkIdentityManager().isSelf(channelCreateEvent.getInvokerId())) return;
+        dispatch(EventType.CHANNEL_CREATE, channelCreateEvent);
     }
 
     /**
@@ -154,10 +186,9 @@ public class GlobalEventHandler implements TS3Listener {
      * Fires when a channel is deleted on the Teamspeak server.
      */
     public void onChannelDeleted(ChannelDeletedEvent channelDeletedEvent) {
-        if (channelDeletedEvent.getInvokerId() == frameworkContainer.getTs3Api().whoAmI().getId()) return;
-        for (PluginContainer pl : PluginManager.getLoadedPlugins()) {
-            pl.getTeamspeakPlugin().onChannelDeleted(channelDeletedEvent);
-        }
+        observe(channelDeletedEvent);
+        if (frameworkContainer.getFrameworkIdentityManager().isSelf(channelDeletedEvent.getInvokerId())) return;
+        dispatch(EventType.CHANNEL_DELETED, channelDeletedEvent);
     }
 
     /**
@@ -166,10 +197,9 @@ public class GlobalEventHandler implements TS3Listener {
      * Fires when a channel is moved on the Teamspeak server.
      */
     public void onChannelMoved(ChannelMovedEvent channelMovedEvent) {
-        if (channelMovedEvent.getInvokerId() == frameworkContainer.getTs3Api().whoAmI().getId()) return;
-        for (PluginContainer pl : PluginManager.getLoadedPlugins()) {
-            pl.getTeamspeakPlugin().onChannelMoved(channelMovedEvent);
-        }
+        observe(channelMovedEvent);
+        if (frameworkContainer.getFrameworkIdentityManager().isSelf(channelMovedEvent.getInvokerId())) return;
+        dispatch(EventType.CHANNEL_MOVED, channelMovedEvent);
     }
 
     /**
@@ -178,10 +208,9 @@ public class GlobalEventHandler implements TS3Listener {
      * Fires when the password of any channel is changed.
      */
     public void onChannelPasswordChanged(ChannelPasswordChangedEvent channelPasswordChangedEvent) {
-        if (channelPasswordChangedEvent.getInvokerId() == frameworkContainer.getTs3Api().whoAmI().getId()) return;
-        for (PluginContainer pl : PluginManager.getLoadedPlugins()) {
-            pl.getTeamspeakPlugin().onChannelPasswordChanged(channelPasswordChangedEvent);
-        }
+        observe(channelPasswordChangedEvent);
+        if (frameworkContainer.getFrameworkIdentityManager().isSelf(channelPasswordChangedEvent.getInvokerId())) return;
+        dispatch(EventType.CHANNEL_PASSWORD_CHANGED, channelPasswordChangedEvent);
     }
 
     /**
@@ -190,9 +219,8 @@ public class GlobalEventHandler implements TS3Listener {
      * Fires when any privilege key is used.
      */
     public void onPrivilegeKeyUsed(PrivilegeKeyUsedEvent privilegeKeyUsedEvent) {
-        if (privilegeKeyUsedEvent.getInvokerId() == frameworkContainer.getTs3Api().whoAmI().getId()) return;
-        for (PluginContainer pl : PluginManager.getLoadedPlugins()) {
-            pl.getTeamspeakPlugin().onPrivilegeKeyUsed(privilegeKeyUsedEvent);
-        }
+        observe(privilegeKeyUsedEvent);
+        if (frameworkContainer.getFrameworkIdentityManager().isSelf(privilegeKeyUsedEvent.getInvokerId())) return;
+        dispatch(EventType.PRIVILEGE_KEY_USED, privilegeKeyUsedEvent);
     }
 }
@@ -0,0 +1,304 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.listeners;
+
+import com.github.theholywaffle.teamspeak3.api.event.*;
+import net.vortexdata.tsqpf.console.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor stage in front of the {@link GlobalEventHandler}.
+ *
+ * Client events are hashed by client id onto a fixed number of lanes. Every lane is processed by its own
+ * thread, so events of different clients are handled concurrently while events of the same client keep
+ * their order.
+ *
+ * Channel events change the channel tree every client lives in, so they are ordered against all other events:
+ * a channel event waits until every lane handled the events submitted before it, runs alone, and only then do
+ * the lanes continue with later events. A client moving into a channel and the channel being deleted are
+ * therefore always handled in the order the server sent them.
+ *
+ * Everything behind this stage, the {@link GlobalEventHandler}, the {@link ChatCommandListener} and plugin event
+ * handlers, is called from several lane threads at the same time.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class KeyedEventExecutor implements TS3Listener {
+
+    private static final int LANE_CAPACITY = 4096;
+    private static final int SERVER_KEY = 0;
+
+    private final TS3Listener downstream;
+    private final Logger logger;
+    private final Lane[] lanes;
+    private volatile boolean running = true;
+
+    /**
+     * <p>Constructor for KeyedEventExecutor.</p>
+     *
+     * @param downstream Listener the events are fired at, usually the {@link GlobalEventHandler}.
+     * @param laneCount  Amount of lanes, values below one use the amount of available cores.
+     * @param logger     a {@link net.vortexdata.tsqpf.console.Logger} object.
+     */
+    public KeyedEventExecutor(TS3Listener downstream, int laneCount, Logger logger) {
+        this.downstream = downstream;
+        this.logger = logger;
+        if (laneCount < 1)
+            laneCount = Runtime.getRuntime().availableProcessors();
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i);
+            lanes[i].start();
+        }
+    }
+
+    private void submit(int key, TS3Event event) {
+        if (!running) return;
+        int hash = key * 0x9E3779B9;
+        lanes[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % lanes.length].enqueue(event);
+    }
+
+    /**
+     * Submits an event that is ordered against the events of all lanes.
+     *
+     * @param event Event to fire once all lanes reached it.
+     */
+    private synchronized void submitOrdered(TS3Event event) {
+        if (!running) return;
+        if (lanes.length == 1) {
+            lanes[0].enqueue(event);
+            return;
+        }
+        Barrier barrier = new Barrier(event, lanes.length);
+        for (Lane lane : lanes)
+            lane.enqueue(barrier);
+    }
+
+    /**
+     * Stops all lane threads and discards pending events.
+     */
+    public void shutdown() {
+        running = false;
+        for (Lane lane : lanes)
+            lane.stop();
+    }
+
+    /**
+     * <p>getLaneCount.</p>
+     *
+     * @return Amount of lanes.
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * <p>getLaneDepth.</p>
+     *
+     * @param lane Index of the lane.
+     * @return Amount of events waiting on the lane.
+     */
+    public int getLaneDepth(int lane) {
+        return lanes[lane].queue.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onTextMessage(TextMessageEvent e) {
+        submit(e.getInvokerId(), e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onClientJoin(ClientJoinEvent e) {
+        submit(e.getClientId(), e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onClientLeave(ClientLeaveEvent e) {
+        submit(e.getClientId(), e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onServerEdit(ServerEditedEvent e) {
+        submit(SERVER_KEY, e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelEdit(ChannelEditedEvent e) {
+        submitOrdered(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelDescriptionChanged(ChannelDescriptionEditedEvent e) {
+        submitOrdered(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onClientMoved(ClientMovedEvent e) {
+        submit(e.getClientId(), e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelCreate(ChannelCreateEvent e) {
+        submitOrdered(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelDeleted(ChannelDeletedEvent e) {
+        submitOrdered(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelMoved(ChannelMovedEvent e) {
+        submitOrdered(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelPasswordChanged(ChannelPasswordChangedEvent e) {
+        submitOrdered(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onPrivilegeKeyUsed(PrivilegeKeyUsedEvent e) {
+        submit(e.getClientId(), e);
+    }
+
+    /**
+     * Single threaded lane processing its events in order.
+     */
+    private class Lane implements Runnable {
+
+        private final ArrayBlockingQueue<TS3Event> queue = new ArrayBlockingQueue<>(LANE_CAPACITY);
+        private final Thread thread;
+
+        private Lane(int index) {
+            thread = new Thread(this, "KeyedEventExecutor-" + index);
+            thread.setDaemon(true);
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        private void stop() {
+            thread.interrupt();
+            queue.clear();
+        }
+
+        private void enqueue(TS3Event event) {
+            try {
+                queue.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                TS3Event event;
+                try {
+                    event = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (event instanceof Barrier) {
+                    if (!((Barrier) event).arrive()) return;
+                } else {
+                    dispatch(event);
+                }
+            }
+        }
+    }
+
+    private void dispatch(TS3Event event) {
+        try {
+            event.fire(downstream);
+        } catch (Exception e) {
+            logger.printError("Failed to dispatch " + event.getClass().getSimpleName() + " on " + Thread.currentThread().getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Placeholder queued on every lane for an ordered event. The last lane to reach it fires the event, all other
+     * lanes wait until the event was handled.
+     */
+    private class Barrier implements TS3Event {
+
+        private final TS3Event event;
+        private final AtomicInteger pending;
+        private final CountDownLatch handled = new CountDownLatch(1);
+
+        private Barrier(TS3Event event, int lanes) {
+            this.event = event;
+            this.pending = new AtomicInteger(lanes);
+        }
+
+        /**
+         * Called by every lane reaching the barrier.
+         *
+         * @return false if the lane was interrupted while waiting.
+         */
+        private boolean arrive() {
+            if (pending.decrementAndGet() == 0) {
+                try {
+                    dispatch(event);
+                } finally {
+                    handled.countDown();
+                }
+                return true;
+            }
+            try {
+                handled.await();
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void fire(TS3Listener listener) {
+            event.fire(listener);
+        }
+    }
+
+}
@@ -0,0 +1,296 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.async;
+
+import com.github.theholywaffle.teamspeak3.TS3ApiAsync;
+import com.github.theholywaffle.teamspeak3.TS3Query;
+import com.github.theholywaffle.teamspeak3.api.CommandFuture;
+import com.github.theholywaffle.teamspeak3.api.wrapper.Channel;
+import com.github.theholywaffle.teamspeak3.api.wrapper.Client;
+import com.github.theholywaffle.teamspeak3.api.wrapper.ClientInfo;
+import com.github.theholywaffle.teamspeak3.api.wrapper.VirtualServerInfo;
+import net.vortexdata.tsqpf.framework.FrameworkContainer;
+import net.vortexdata.tsqpf.modules.flood.AdaptiveFloodController;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Non-blocking query api for plugins, built on the libraries {@link TS3ApiAsync}.
+ *
+ * All returned futures are completed on a framework owned executor instead of the libraries socket reader, so
+ * continuations attached to them can safely block or issue further queries without stalling the connection.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class AsyncQueryApi {
+
+    private final FrameworkContainer frameworkContainer;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor pacer;
+
+    /**
+     * <p>Constructor for AsyncQueryApi.</p>
+     *
+     * @param frameworkContainer a {@link net.vortexdata.tsqpf.framework.FrameworkContainer} object.
+     * @param threads            Amount of threads completing futures.
+     */
+    public AsyncQueryApi(FrameworkContainer frameworkContainer, int threads) {
+        this.frameworkContainer = frameworkContainer;
+        AtomicInteger threadCounter = new AtomicInteger();
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "AsyncQuery-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.pacer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "AsyncQueryPacer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates an api for another virtual server that completes its futures on the executor of an existing one.
+     *
+     * @param frameworkContainer a {@link net.vortexdata.tsqpf.framework.FrameworkContainer} object.
+     * @param shared             Api whose executor is used.
+     */
+    public AsyncQueryApi(FrameworkContainer frameworkContainer, AsyncQueryApi shared) {
+        this.frameworkContainer = frameworkContainer;
+        this.executor = shared.executor;
+        this.pacer = shared.pacer;
+    }
+
+    /**
+     * Sends a query and returns a future completed with its result.
+     *
+     * @param query Function issuing the query on the async api.
+     * @param <T>   Type of the result.
+     * @return Future completed on the framework executor, it fails with the libraries exception if the query failed.
+     */
+    public <T> CompletableFuture<T> call(Function<TS3ApiAsync, CommandFuture<T>> query) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        TS3Query ts3Query = frameworkContainer.getTs3Query();
+        if (ts3Query == null) {
+            future.completeExceptionally(new IllegalStateException("The framework is not connected to a Teamspeak server."));
+            return future;
+        }
+        AdaptiveFloodController floodController = frameworkContainer.getFrameworkFloodController();
+        if (floodController == null) {
+            send(ts3Query, query, future, null);
+            return future;
+        }
+        // Wait for the paced slot on the pacer thread, so callers and fanOut never block.
+        try {
+            pacer.schedule(() -> send(ts3Query, query, future, floodController), Math.max(0, floodController.reserve()), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new IllegalStateException("The async query api has been shut down."));
+        }
+        return future;
+    }
+
+    private <T> void send(TS3Query ts3Query, Function<TS3ApiAsync, CommandFuture<T>> query, CompletableFuture<T> future, AdaptiveFloodController floodController) {
+        try {
+            long start = System.nanoTime();
+            query.apply(ts3Query.getAsyncApi())
+                    .onSuccess(result -> {
+                        if (floodController != null)
+                            floodController.onSuccess(System.nanoTime() - start);
+                        dispatch(() -> future.complete(result));
+                    })
+                    .onFailure(e -> {
+                        if (floodController != null)
+                            floodController.onFailure(e);
+                        dispatch(() -> future.completeExceptionally(e));
+                    });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private void dispatch(Runnable completion) {
+        try {
+            executor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            // Executor already shut down, complete on the calling thread so no caller waits forever
+            completion.run();
+        }
+    }
+
+    /**
+     * Sends one query per input without waiting for the previous ones and joins their results.
+     *
+     * @param inputs Values the queries are built from, e.g. client ids.
+     * @param query  Function issuing the query for a single input.
+     * @param <I>    Type of the inputs.
+     * @param <T>    Type of the results.
+     * @return Future completed with all results in the order of the inputs, it fails as soon as one query fails.
+     */
+    public <I, T> CompletableFuture<List<T>> fanOut(Collection<I> inputs, BiFunction<TS3ApiAsync, I, CommandFuture<T>> query) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(inputs.size());
+        for (I input : inputs)
+            futures.add(call(api -> query.apply(api, input)));
+        return joinAll(futures);
+    }
+
+    /**
+     * Joins futures into one future of all their results.
+     *
+     * @param futures Futures to join.
+     * @param <T>     Type of the results.
+     * @return Future completed with all results in the given order, it fails as soon as one future fails.
+     */
+    public static <T> CompletableFuture<List<T>> joinAll(List<CompletableFuture<T>> futures) {
+        CompletableFuture<?>[] array = futures.toArray(new CompletableFuture<?>[0]);
+        CompletableFuture<List<T>> joined = new CompletableFuture<>();
+        for (CompletableFuture<?> future : array) {
+            future.whenComplete((result, e) -> {
+                if (e != null)
+                    joined.completeExceptionally(e);
+            });
+        }
+        CompletableFuture.allOf(array).thenRun(() -> {
+            List<T> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures)
+                results.add(future.join());
+            joined.complete(results);
+        });
+        return joined;
+    }
+
+    /**
+     * <p>getClients.</p>
+     *
+     * @return Future of all online clients.
+     */
+    public CompletableFuture<List<Client>> getClients() {
+        return call(TS3ApiAsync::getClients);
+    }
+
+    /**
+     * <p>getChannels.</p>
+     *
+     * @return Future of all channels.
+     */
+    public CompletableFuture<List<Channel>> getChannels() {
+        return call(TS3ApiAsync::getChannels);
+    }
+
+    /**
+     * <p>getServerInfo.</p>
+     *
+     * @return Future of the virtual server info.
+     */
+    public CompletableFuture<VirtualServerInfo> getServerInfo() {
+        return call(TS3ApiAsync::getServerInfo);
+    }
+
+    /**
+     * <p>getClientInfo.</p>
+     *
+     * @param clientId Id of the client.
+     * @return Future of the clients detailed info.
+     */
+    public CompletableFuture<ClientInfo> getClientInfo(int clientId) {
+        return call(api -> api.getClientInfo(clientId));
+    }
+
+    /**
+     * Fetches the detailed info of several clients at once.
+     *
+     * @param clientIds Ids of the clients.
+     * @return Future of the clients infos in the order of the given ids.
+     */
+    public CompletableFuture<List<ClientInfo>> getClientInfos(Integer... clientIds) {
+        return fanOut(Arrays.asList(clientIds), TS3ApiAsync::getClientInfo);
+    }
+
+    /**
+     * Fetches the detailed info of all clients currently in a channel.
+     *
+     * @param channelId Id of the channel.
+     * @return Future of the clients infos.
+     */
+    public CompletableFuture<List<ClientInfo>> getClientInfosInChannel(int channelId) {
+        return getClients().thenCompose(clients -> {
+            List<Integer> clientIds = new ArrayList<>();
+            for (Client client : clients) {
+                if (client.getChannelId() == channelId)
+                    clientIds.add(client.getId());
+            }
+            return fanOut(clientIds, TS3ApiAsync::getClientInfo);
+        });
+    }
+
+    /**
+     * <p>Getter for the field <code>executor</code>.</p>
+     *
+     * @return The executor futures are completed on, e.g. for use with <code>thenApplyAsync</code>.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * <p>getPendingCompletions.</p>
+     *
+     * @return Amount of completed queries whose futures are waiting for a free executor thread.
+     */
+    public int getPendingCompletions() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops the executor, waiting shortly for running continuations to finish.
+     */
+    public void shutdown() {
+        pacer.shutdown();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
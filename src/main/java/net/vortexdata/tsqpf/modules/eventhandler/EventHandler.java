@@ -30,11 +30,14 @@ import com.github.theholywaffle.teamspeak3.api.event.*;
 /**
  * <p>Abstract EventHandler class.</p>
  *
+ * Implements {@link com.github.theholywaffle.teamspeak3.api.event.TS3Listener} so events can be
+ * fired at a handler directly via {@link com.github.theholywaffle.teamspeak3.api.event.TS3Event#fire(TS3Listener)}.
+ *
  * @author Michael Wiesinger
  * @since 1.0.0
  * @version $Id: $Id
  */
-public abstract class EventHandler {
+public abstract class EventHandler implements TS3Listener {
 
     /**
      * <p>onTextMessage.</p>
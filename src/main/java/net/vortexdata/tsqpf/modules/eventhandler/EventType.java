@@ -0,0 +1,134 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.eventhandler;
+
+import com.github.theholywaffle.teamspeak3.api.event.*;
+
+import java.util.EnumSet;
+
+/**
+ * All events an {@link EventHandler} can handle, together with the handler method they are fired at.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public enum EventType {
+
+    TEXT_MESSAGE("onTextMessage", TextMessageEvent.class),
+    CLIENT_JOIN("onClientJoin", ClientJoinEvent.class),
+    CLIENT_LEAVE("onClientLeave", ClientLeaveEvent.class),
+    SERVER_EDIT("onServerEdit", ServerEditedEvent.class),
+    CHANNEL_EDIT("onChannelEdit", ChannelEditedEvent.class),
+    CHANNEL_DESCRIPTION_CHANGED("onChannelDescriptionChanged", ChannelDescriptionEditedEvent.class),
+    CLIENT_MOVED("onClientMoved", ClientMovedEvent.class),
+    CHANNEL_CREATE("onChannelCreate", ChannelCreateEvent.class),
+    CHANNEL_DELETED("onChannelDeleted", ChannelDeletedEvent.class),
+    CHANNEL_MOVED("onChannelMoved", ChannelMovedEvent.class),
+    CHANNEL_PASSWORD_CHANGED("onChannelPasswordChanged", ChannelPasswordChangedEvent.class),
+    PRIVILEGE_KEY_USED("onPrivilegeKeyUsed", PrivilegeKeyUsedEvent.class);
+
+    private static final EventType[] VALUES = values();
+
+    private final String handlerName;
+    private final Class<? extends TS3Event> eventClass;
+
+    EventType(String handlerName, Class<? extends TS3Event> eventClass) {
+        this.handlerName = handlerName;
+        this.eventClass = eventClass;
+    }
+
+    /**
+     * <p>Getter for the field <code>handlerName</code>.</p>
+     *
+     * @return Name of the {@link EventHandler} method handling this event.
+     */
+    public String getHandlerName() {
+        return handlerName;
+    }
+
+    /**
+     * <p>Getter for the field <code>eventClass</code>.</p>
+     *
+     * @return Class of the event.
+     */
+    public Class<? extends TS3Event> getEventClass() {
+        return eventClass;
+    }
+
+    /**
+     * Returns the type of an event.
+     *
+     * @param event Event to look up.
+     * @return The events type or null if it is not handled by {@link EventHandler}.
+     */
+    public static EventType of(TS3Event event) {
+        for (EventType type : VALUES) {
+            if (type.eventClass == event.getClass())
+                return type;
+        }
+        return null;
+    }
+
+    /**
+     * Parses a subscription name like <code>onClientMoved</code>, <code>clientMoved</code> or <code>CLIENT_MOVED</code>.
+     *
+     * @param name Name to parse.
+     * @return The matching type or null if it could not be parsed.
+     */
+    public static EventType parse(String name) {
+        if (name == null)
+            return null;
+        String normalized = name.trim().replace("_", "");
+        for (EventType type : values()) {
+            if (type.name().replace("_", "").equalsIgnoreCase(normalized)
+                    || type.handlerName.equalsIgnoreCase(normalized)
+                    || type.handlerName.substring(2).equalsIgnoreCase(normalized))
+                return type;
+        }
+        return null;
+    }
+
+    /**
+     * Works out which handler methods a class overrides.
+     *
+     * @param handlerClass Class extending {@link EventHandler}.
+     * @return All event types the class actually handles.
+     */
+    public static EnumSet<EventType> overriddenBy(Class<?> handlerClass) {
+        EnumSet<EventType> types = EnumSet.noneOf(EventType.class);
+        for (EventType type : values()) {
+            try {
+                if (handlerClass.getMethod(type.handlerName, type.eventClass).getDeclaringClass() != EventHandler.class)
+                    types.add(type);
+            } catch (NoSuchMethodException e) {
+                // Not an event handler, nothing to subscribe
+            }
+        }
+        return types;
+    }
+
+}
@@ -0,0 +1,255 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.flood;
+
+import com.github.theholywaffle.teamspeak3.api.exception.TS3CommandFailedException;
+import net.vortexdata.tsqpf.modules.metrics.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Paces commands at a rate adjusted at runtime with additive increase and multiplicative decrease.
+ *
+ * Every successful command raises the rate a little, so a whitelisted query user quickly ends up at the
+ * configured maximum. A flood error from the server halves it, and a round trip time far above the fastest one
+ * observed, which is how a server starts throttling us, lowers it slightly. Decreases are applied at most once
+ * per second, so a burst of errors caused by the same overload does not collapse the rate to the minimum. Flood
+ * errors take priority: they are only held back by an earlier flood error, never by a latency decrease, and always
+ * pause sending for a second.
+ *
+ * With an adaptive flood rate the query connections run without the libraries pacing and rely on the controller
+ * alone. Blocking commands go through {@link PacedApi}, the async api and the outbound message queue reserve their
+ * slots themselves.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class AdaptiveFloodController {
+
+    /** Error id returned by the server if the query client is flooding. */
+    public static final int ERROR_FLOODING = 524;
+    /** Error id returned by the server if the query client got banned, e.g. for flooding. */
+    public static final int ERROR_BANNED = 3329;
+
+    private static final double INCREASE_STEP = 2.0;
+    private static final double FLOOD_DECREASE = 0.5;
+    private static final double LATENCY_DECREASE = 0.8;
+    private static final double LATENCY_FACTOR = 4.0;
+    private static final long LATENCY_FLOOR_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final double EWMA_WEIGHT = 0.1;
+    private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long FLOOD_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double minRate;
+    private final double maxRate;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong floodSignals = new AtomicLong();
+    private final AtomicLong latencySignals = new AtomicLong();
+    private double rate;
+    private long nextSlot;
+    private long lastDecrease;
+    private long lastFloodDecrease;
+    private double averageLatency = -1;
+    private long fastestLatency = Long.MAX_VALUE;
+
+    /**
+     * <p>Constructor for AdaptiveFloodController.</p>
+     *
+     * @param minRate Lowest rate in commands per second, also used as starting rate.
+     * @param maxRate Highest rate in commands per second.
+     */
+    public AdaptiveFloodController(double minRate, double maxRate) {
+        this.minRate = minRate;
+        this.maxRate = Math.max(minRate, maxRate);
+        this.rate = minRate;
+        this.nextSlot = System.nanoTime();
+        this.lastDecrease = nextSlot - DECREASE_INTERVAL_NANOS;
+        this.lastFloodDecrease = lastDecrease;
+    }
+
+    /**
+     * Blocks until the next command may be sent at the current rate.
+     */
+    public void acquire() {
+        long wait = reserve();
+        long deadline = System.nanoTime() + wait;
+        while ((wait = deadline - System.nanoTime()) > 0)
+            LockSupport.parkNanos(wait);
+    }
+
+    /**
+     * Reserves the next slot at the current rate without blocking. The command has to be sent once the returned
+     * time passed.
+     *
+     * @return Nanoseconds until the reserved slot, zero or less if the command may be sent right away.
+     */
+    public long reserve() {
+        long now;
+        long slot;
+        synchronized (this) {
+            now = System.nanoTime();
+            slot = Math.max(now, nextSlot);
+            nextSlot = slot + (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        }
+        commands.incrementAndGet();
+        return slot - now;
+    }
+
+    /**
+     * Reports a successful command.
+     *
+     * @param latencyNanos Round trip time of the command.
+     */
+    public synchronized void onSuccess(long latencyNanos) {
+        latency.record(latencyNanos);
+        fastestLatency = Math.min(fastestLatency, latencyNanos);
+        averageLatency = averageLatency < 0 ? latencyNanos : averageLatency + EWMA_WEIGHT * (latencyNanos - averageLatency);
+        if (averageLatency > Math.max(fastestLatency * LATENCY_FACTOR, LATENCY_FLOOR_NANOS) && latencyNanos > averageLatency) {
+            long now = System.nanoTime();
+            if (now - lastDecrease >= DECREASE_INTERVAL_NANOS) {
+                decrease(LATENCY_DECREASE, now);
+                latencySignals.incrementAndGet();
+            }
+            return;
+        }
+        rate = Math.min(maxRate, rate + INCREASE_STEP / rate);
+    }
+
+    /**
+     * Reports a failed command, lowering the rate if the server signalled flooding.
+     *
+     * @param error The exception the command failed with.
+     */
+    public synchronized void onFailure(Throwable error) {
+        if (!isFloodSignal(error))
+            return;
+        floodSignals.incrementAndGet();
+        long now = System.nanoTime();
+        if (now - lastFloodDecrease >= DECREASE_INTERVAL_NANOS) {
+            lastFloodDecrease = now;
+            decrease(FLOOD_DECREASE, now);
+        }
+        nextSlot = Math.max(nextSlot, now + FLOOD_COOLDOWN_NANOS);
+    }
+
+    private void decrease(double factor, long now) {
+        lastDecrease = now;
+        rate = Math.max(minRate, rate * factor);
+    }
+
+    /**
+     * Checks whether an exception was caused by the servers anti-flood protection.
+     *
+     * @param error The exception.
+     * @return True if it carries one of the flood error ids.
+     */
+    public static boolean isFloodSignal(Throwable error) {
+        if (!(error instanceof TS3CommandFailedException))
+            return false;
+        int id = ((TS3CommandFailedException) error).getError().getId();
+        return id == ERROR_FLOODING || id == ERROR_BANNED;
+    }
+
+    /**
+     * Runs a blocking command paced by this controller and reports its outcome.
+     *
+     * @param command The command.
+     * @param <T>     Type of the result.
+     * @return The result of the command.
+     */
+    public <T> T execute(Supplier<T> command) {
+        acquire();
+        long start = System.nanoTime();
+        try {
+            T result = command.get();
+            onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            onFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * <p>Getter for the field <code>rate</code>.</p>
+     *
+     * @return Current rate in commands per second.
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * <p>Getter for the field <code>maxRate</code>.</p>
+     *
+     * @return Highest rate in commands per second.
+     */
+    public double getMaxRate() {
+        return maxRate;
+    }
+
+    /**
+     * <p>Getter for the field <code>latency</code>.</p>
+     *
+     * @return Round trip times of successful commands in nanoseconds.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * <p>getCommands.</p>
+     *
+     * @return Amount of commands paced.
+     */
+    public long getCommands() {
+        return commands.get();
+    }
+
+    /**
+     * <p>getFloodSignals.</p>
+     *
+     * @return Amount of flood errors received.
+     */
+    public long getFloodSignals() {
+        return floodSignals.get();
+    }
+
+    /**
+     * <p>getLatencySignals.</p>
+     *
+     * @return Amount of rate decreases caused by rising round trip times.
+     */
+    public long getLatencySignals() {
+        return latencySignals.get();
+    }
+
+}
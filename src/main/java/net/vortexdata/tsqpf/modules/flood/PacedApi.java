@@ -0,0 +1,1454 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package net.vortexdata.tsqpf.modules.flood;
+
+import com.github.theholywaffle.teamspeak3.TS3Api;
+import com.github.theholywaffle.teamspeak3.TS3ApiAsync;
+import com.github.theholywaffle.teamspeak3.api.*;
+import com.github.theholywaffle.teamspeak3.api.event.TS3EventType;
+import com.github.theholywaffle.teamspeak3.api.wrapper.*;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Api that sends every command through the adaptive flood controller, so the connection underneath can run
+ * without the libraries own pacing.
+ *
+ * Each method is paced as one command, including the few convenience methods the library implements with more
+ * than one query. File and icon transfers are paced as well, but their duration is not reported as latency, as
+ * it depends on the size of the file rather than on the load of the server. Registering listeners does not
+ * send a command and is passed through unpaced.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class PacedApi extends TS3Api {
+
+    private final TS3ApiAsync asyncApi;
+    private final AdaptiveFloodController floodController;
+
+    /**
+     * <p>Constructor for PacedApi.</p>
+     *
+     * @param asyncApi        The async api of the connection commands are sent on.
+     * @param floodController Controller pacing the commands, commands are sent right away if null.
+     */
+    public PacedApi(TS3ApiAsync asyncApi, AdaptiveFloodController floodController) {
+        super(asyncApi);
+        this.asyncApi = asyncApi;
+        this.floodController = floodController;
+    }
+
+    /**
+     * Checks whether commands are sent through an async api. The query library creates a new one on every
+     * reconnect, so an api bound to the previous connection has to be replaced.
+     *
+     * @param asyncApi Async api of the current connection.
+     * @return True if this api sends its commands through it.
+     */
+    public boolean isBoundTo(TS3ApiAsync asyncApi) {
+        return this.asyncApi == asyncApi;
+    }
+
+    private <T> T pace(Supplier<T> command) {
+        return floodController != null ? floodController.execute(command) : command.get();
+    }
+
+    private void paceVoid(Runnable command) {
+        pace(() -> {
+            command.run();
+            return null;
+        });
+    }
+
+    private <T> T transfer(Supplier<T> command) {
+        if (floodController == null)
+            return command.get();
+        floodController.acquire();
+        try {
+            return command.get();
+        } catch (RuntimeException e) {
+            floodController.onFailure(e);
+            throw e;
+        }
+    }
+
+    private void transferVoid(Runnable command) {
+        transfer(() -> {
+            command.run();
+            return null;
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int addBan(String ip, String name, String uid, long timeInSeconds, String reason) {
+        return pace(() -> super.addBan(ip, name, uid, timeInSeconds, reason));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int addBan(String ip, String name, String uid, String myTSId, long timeInSeconds, String reason) {
+        return pace(() -> super.addBan(ip, name, uid, myTSId, timeInSeconds, reason));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addChannelClientPermission(int channelId, int clientDBId, String permName, int permValue) {
+        paceVoid(() -> super.addChannelClientPermission(channelId, clientDBId, permName, permValue));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int addChannelGroup(String name) {
+        return pace(() -> super.addChannelGroup(name));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int addChannelGroup(String name, PermissionGroupDatabaseType type) {
+        return pace(() -> super.addChannelGroup(name, type));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addChannelGroupPermission(int groupId, String permName, int permValue) {
+        paceVoid(() -> super.addChannelGroupPermission(groupId, permName, permValue));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addChannelPermission(int channelId, String permName, int permValue) {
+        paceVoid(() -> super.addChannelPermission(channelId, permName, permValue));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addClientPermission(int clientDBId, String permName, int value, boolean skipped) {
+        paceVoid(() -> super.addClientPermission(clientDBId, permName, value, skipped));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addClientToServerGroup(int groupId, int clientDatabaseId) {
+        paceVoid(() -> super.addClientToServerGroup(groupId, clientDatabaseId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addComplaint(int clientDBId, String message) {
+        paceVoid(() -> super.addComplaint(clientDBId, message));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addPermissionToAllServerGroups(ServerGroupType type, String permName, int value, boolean negated, boolean skipped) {
+        paceVoid(() -> super.addPermissionToAllServerGroups(type, permName, value, negated, skipped));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String addPrivilegeKey(PrivilegeKeyType type, int groupId, int channelId, String description) {
+        return pace(() -> super.addPrivilegeKey(type, groupId, channelId, description));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String addPrivilegeKeyChannelGroup(int channelGroupId, int channelId, String description) {
+        return pace(() -> super.addPrivilegeKeyChannelGroup(channelGroupId, channelId, description));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String addPrivilegeKeyServerGroup(int serverGroupId, String description) {
+        return pace(() -> super.addPrivilegeKeyServerGroup(serverGroupId, description));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int addServerGroup(String name) {
+        return pace(() -> super.addServerGroup(name));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int addServerGroup(String name, PermissionGroupDatabaseType type) {
+        return pace(() -> super.addServerGroup(name, type));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addServerGroupPermission(int groupId, String permName, int value, boolean negated, boolean skipped) {
+        paceVoid(() -> super.addServerGroupPermission(groupId, permName, value, negated, skipped));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int[] banClient(int clientId, long timeInSeconds) {
+        return pace(() -> super.banClient(clientId, timeInSeconds));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int[] banClient(int clientId, long timeInSeconds, String reason) {
+        return pace(() -> super.banClient(clientId, timeInSeconds, reason));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int[] banClient(int clientId, String reason) {
+        return pace(() -> super.banClient(clientId, reason));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void broadcast(String message) {
+        paceVoid(() -> super.broadcast(message));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void copyChannelGroup(int sourceGroupId, int targetGroupId, PermissionGroupDatabaseType type) {
+        paceVoid(() -> super.copyChannelGroup(sourceGroupId, targetGroupId, type));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int copyChannelGroup(int sourceGroupId, String targetName, PermissionGroupDatabaseType type) {
+        return pace(() -> super.copyChannelGroup(sourceGroupId, targetName, type));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int copyServerGroup(int sourceGroupId, int targetGroupId, PermissionGroupDatabaseType type) {
+        return pace(() -> super.copyServerGroup(sourceGroupId, targetGroupId, type));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int copyServerGroup(int sourceGroupId, String targetName, PermissionGroupDatabaseType type) {
+        return pace(() -> super.copyServerGroup(sourceGroupId, targetName, type));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int createChannel(String name, Map<ChannelProperty, String> options) {
+        return pace(() -> super.createChannel(name, options));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void createFileDirectory(String directoryPath, int channelId) {
+        paceVoid(() -> super.createFileDirectory(directoryPath, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void createFileDirectory(String directoryPath, int channelId, String channelPassword) {
+        paceVoid(() -> super.createFileDirectory(directoryPath, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CreatedVirtualServer createServer(String name, Map<VirtualServerProperty, String> options) {
+        return pace(() -> super.createServer(name, options));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Snapshot createServerSnapshot() {
+        return pace(() -> super.createServerSnapshot());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteAllBans() {
+        paceVoid(() -> super.deleteAllBans());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteAllComplaints(int clientDBId) {
+        paceVoid(() -> super.deleteAllComplaints(clientDBId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteBan(int banId) {
+        paceVoid(() -> super.deleteBan(banId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteChannel(int channelId) {
+        paceVoid(() -> super.deleteChannel(channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteChannel(int channelId, boolean force) {
+        paceVoid(() -> super.deleteChannel(channelId, force));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteChannelClientPermission(int channelId, int clientDBId, String permName) {
+        paceVoid(() -> super.deleteChannelClientPermission(channelId, clientDBId, permName));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteChannelGroup(int groupId) {
+        paceVoid(() -> super.deleteChannelGroup(groupId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteChannelGroup(int groupId, boolean force) {
+        paceVoid(() -> super.deleteChannelGroup(groupId, force));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteChannelGroupPermission(int groupId, String permName) {
+        paceVoid(() -> super.deleteChannelGroupPermission(groupId, permName));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteChannelPermission(int channelId, String permName) {
+        paceVoid(() -> super.deleteChannelPermission(channelId, permName));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteClientPermission(int clientDBId, String permName) {
+        paceVoid(() -> super.deleteClientPermission(clientDBId, permName));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteComplaint(int targetClientDBId, int fromClientDBId) {
+        paceVoid(() -> super.deleteComplaint(targetClientDBId, fromClientDBId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteCustomClientProperty(int clientDBId, String key) {
+        paceVoid(() -> super.deleteCustomClientProperty(clientDBId, key));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteDatabaseClientProperties(int clientDBId) {
+        paceVoid(() -> super.deleteDatabaseClientProperties(clientDBId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteFile(String filePath, int channelId) {
+        paceVoid(() -> super.deleteFile(filePath, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteFile(String filePath, int channelId, String channelPassword) {
+        paceVoid(() -> super.deleteFile(filePath, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteFiles(String[] filePaths, int channelId) {
+        paceVoid(() -> super.deleteFiles(filePaths, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteFiles(String[] filePaths, int channelId, String channelPassword) {
+        paceVoid(() -> super.deleteFiles(filePaths, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteIcon(long iconId) {
+        paceVoid(() -> super.deleteIcon(iconId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteIcons(long... iconIds) {
+        paceVoid(() -> super.deleteIcons(iconIds));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteOfflineMessage(int messageId) {
+        paceVoid(() -> super.deleteOfflineMessage(messageId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deletePermissionFromAllServerGroups(ServerGroupType type, String permName) {
+        paceVoid(() -> super.deletePermissionFromAllServerGroups(type, permName));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deletePrivilegeKey(String token) {
+        paceVoid(() -> super.deletePrivilegeKey(token));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteServer(int serverId) {
+        paceVoid(() -> super.deleteServer(serverId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteServerGroup(int groupId) {
+        paceVoid(() -> super.deleteServerGroup(groupId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteServerGroup(int groupId, boolean force) {
+        paceVoid(() -> super.deleteServerGroup(groupId, force));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteServerGroupPermission(int groupId, String permName) {
+        paceVoid(() -> super.deleteServerGroupPermission(groupId, permName));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deployServerSnapshot(Snapshot snapshot) {
+        paceVoid(() -> super.deployServerSnapshot(snapshot));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deployServerSnapshot(String snapshot) {
+        paceVoid(() -> super.deployServerSnapshot(snapshot));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long downloadFile(OutputStream dataOut, String filePath, int channelId) {
+        return transfer(() -> super.downloadFile(dataOut, filePath, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long downloadFile(OutputStream dataOut, String filePath, int channelId, String channelPassword) {
+        return transfer(() -> super.downloadFile(dataOut, filePath, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] downloadFileDirect(String filePath, int channelId) {
+        return transfer(() -> super.downloadFileDirect(filePath, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] downloadFileDirect(String filePath, int channelId, String channelPassword) {
+        return transfer(() -> super.downloadFileDirect(filePath, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long downloadIcon(OutputStream dataOut, long iconId) {
+        return transfer(() -> super.downloadIcon(dataOut, iconId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] downloadIconDirect(long iconId) {
+        return transfer(() -> super.downloadIconDirect(iconId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void editChannel(int channelId, Map<ChannelProperty, String> options) {
+        paceVoid(() -> super.editChannel(channelId, options));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void editChannel(int channelId, ChannelProperty property, String value) {
+        paceVoid(() -> super.editChannel(channelId, property, value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void editClient(int clientId, Map<ClientProperty, String> options) {
+        paceVoid(() -> super.editClient(clientId, options));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void editClient(int clientId, ClientProperty property, String value) {
+        paceVoid(() -> super.editClient(clientId, property, value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void editDatabaseClient(int clientDBId, Map<ClientProperty, String> options) {
+        paceVoid(() -> super.editDatabaseClient(clientDBId, options));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void editInstance(ServerInstanceProperty property, String value) {
+        paceVoid(() -> super.editInstance(property, value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void editServer(Map<VirtualServerProperty, String> options) {
+        paceVoid(() -> super.editServer(options));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Ban> getBans() {
+        return pace(() -> super.getBans());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Binding> getBindings() {
+        return pace(() -> super.getBindings());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Channel getChannelByNameExact(String name, boolean ignoreCase) {
+        return pace(() -> super.getChannelByNameExact(name, ignoreCase));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Channel> getChannelsByName(String name) {
+        return pace(() -> super.getChannelsByName(name));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Permission> getChannelClientPermissions(int channelId, int clientDBId) {
+        return pace(() -> super.getChannelClientPermissions(channelId, clientDBId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ChannelGroupClient> getChannelGroupClients(int channelId, int clientDBId, int groupId) {
+        return pace(() -> super.getChannelGroupClients(channelId, clientDBId, groupId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ChannelGroupClient> getChannelGroupClientsByChannelGroupId(int groupId) {
+        return pace(() -> super.getChannelGroupClientsByChannelGroupId(groupId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ChannelGroupClient> getChannelGroupClientsByChannelId(int channelId) {
+        return pace(() -> super.getChannelGroupClientsByChannelId(channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ChannelGroupClient> getChannelGroupClientsByClientDBId(int clientDBId) {
+        return pace(() -> super.getChannelGroupClientsByClientDBId(clientDBId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Permission> getChannelGroupPermissions(int groupId) {
+        return pace(() -> super.getChannelGroupPermissions(groupId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ChannelGroup> getChannelGroups() {
+        return pace(() -> super.getChannelGroups());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ChannelInfo getChannelInfo(int channelId) {
+        return pace(() -> super.getChannelInfo(channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Permission> getChannelPermissions(int channelId) {
+        return pace(() -> super.getChannelPermissions(channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Channel> getChannels() {
+        return pace(() -> super.getChannels());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Client getClientByNameExact(String name, boolean ignoreCase) {
+        return pace(() -> super.getClientByNameExact(name, ignoreCase));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Client> getClientsByName(String name) {
+        return pace(() -> super.getClientsByName(name));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ClientInfo getClientByUId(String clientUId) {
+        return pace(() -> super.getClientByUId(clientUId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ClientInfo getClientInfo(int clientId) {
+        return pace(() -> super.getClientInfo(clientId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Permission> getClientPermissions(int clientDBId) {
+        return pace(() -> super.getClientPermissions(clientDBId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Client> getClients() {
+        return pace(() -> super.getClients());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Complaint> getComplaints() {
+        return pace(() -> super.getComplaints());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Complaint> getComplaints(int clientDBId) {
+        return pace(() -> super.getComplaints(clientDBId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ConnectionInfo getConnectionInfo() {
+        return pace(() -> super.getConnectionInfo());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, String> getCustomClientProperties(int clientDBId) {
+        return pace(() -> super.getCustomClientProperties(clientDBId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<DatabaseClientInfo> getDatabaseClientsByName(String name) {
+        return pace(() -> super.getDatabaseClientsByName(name));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DatabaseClientInfo getDatabaseClientByUId(String clientUId) {
+        return pace(() -> super.getDatabaseClientByUId(clientUId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DatabaseClientInfo getDatabaseClientInfo(int clientDBId) {
+        return pace(() -> super.getDatabaseClientInfo(clientDBId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<DatabaseClient> getDatabaseClients() {
+        return pace(() -> super.getDatabaseClients());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<DatabaseClient> getDatabaseClients(int offset, int count) {
+        return pace(() -> super.getDatabaseClients(offset, count));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public FileInfo getFileInfo(String filePath, int channelId) {
+        return pace(() -> super.getFileInfo(filePath, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public FileInfo getFileInfo(String filePath, int channelId, String channelPassword) {
+        return pace(() -> super.getFileInfo(filePath, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<FileInfo> getFileInfos(String[] filePaths, int channelId) {
+        return pace(() -> super.getFileInfos(filePaths, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<FileInfo> getFileInfos(String[] filePaths, int channelId, String channelPassword) {
+        return pace(() -> super.getFileInfos(filePaths, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<FileInfo> getFileInfos(String[] filePaths, int[] channelIds, String[] channelPasswords) {
+        return pace(() -> super.getFileInfos(filePaths, channelIds, channelPasswords));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<FileListEntry> getFileList(String directoryPath, int channelId) {
+        return pace(() -> super.getFileList(directoryPath, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<FileListEntry> getFileList(String directoryPath, int channelId, String channelPassword) {
+        return pace(() -> super.getFileList(directoryPath, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<FileTransfer> getFileTransfers() {
+        return pace(() -> super.getFileTransfers());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HostInfo getHostInfo() {
+        return pace(() -> super.getHostInfo());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<IconFile> getIconList() {
+        return pace(() -> super.getIconList());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InstanceInfo getInstanceInfo() {
+        return pace(() -> super.getInstanceInfo());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<String> getInstanceLogEntries(int lines) {
+        return pace(() -> super.getInstanceLogEntries(lines));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<String> getInstanceLogEntries() {
+        return pace(() -> super.getInstanceLogEntries());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getOfflineMessage(int messageId) {
+        return pace(() -> super.getOfflineMessage(messageId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getOfflineMessage(Message message) {
+        return pace(() -> super.getOfflineMessage(message));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Message> getOfflineMessages() {
+        return pace(() -> super.getOfflineMessages());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<PermissionAssignment> getPermissionAssignments(String permName) {
+        return pace(() -> super.getPermissionAssignments(permName));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getPermissionIdByName(String permName) {
+        return pace(() -> super.getPermissionIdByName(permName));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int[] getPermissionIdsByName(String... permNames) {
+        return pace(() -> super.getPermissionIdsByName(permNames));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<PermissionAssignment> getPermissionOverview(int channelId, int clientDBId) {
+        return pace(() -> super.getPermissionOverview(channelId, clientDBId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<PermissionInfo> getPermissions() {
+        return pace(() -> super.getPermissions());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getPermissionValue(String permName) {
+        return pace(() -> super.getPermissionValue(permName));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int[] getPermissionValues(String... permNames) {
+        return pace(() -> super.getPermissionValues(permNames));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<PrivilegeKey> getPrivilegeKeys() {
+        return pace(() -> super.getPrivilegeKeys());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ServerGroupClient> getServerGroupClients(int serverGroupId) {
+        return pace(() -> super.getServerGroupClients(serverGroupId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ServerGroupClient> getServerGroupClients(ServerGroup serverGroup) {
+        return pace(() -> super.getServerGroupClients(serverGroup));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Permission> getServerGroupPermissions(int serverGroupId) {
+        return pace(() -> super.getServerGroupPermissions(serverGroupId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Permission> getServerGroupPermissions(ServerGroup serverGroup) {
+        return pace(() -> super.getServerGroupPermissions(serverGroup));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ServerGroup> getServerGroups() {
+        return pace(() -> super.getServerGroups());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ServerGroup> getServerGroupsByClientId(int clientDatabaseId) {
+        return pace(() -> super.getServerGroupsByClientId(clientDatabaseId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ServerGroup> getServerGroupsByClient(Client client) {
+        return pace(() -> super.getServerGroupsByClient(client));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getServerIdByPort(int port) {
+        return pace(() -> super.getServerIdByPort(port));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public VirtualServerInfo getServerInfo() {
+        return pace(() -> super.getServerInfo());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Version getVersion() {
+        return pace(() -> super.getVersion());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<VirtualServer> getVirtualServers() {
+        return pace(() -> super.getVirtualServers());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<String> getVirtualServerLogEntries(int lines) {
+        return pace(() -> super.getVirtualServerLogEntries(lines));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<String> getVirtualServerLogEntries() {
+        return pace(() -> super.getVirtualServerLogEntries());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isClientOnline(int clientId) {
+        return pace(() -> super.isClientOnline(clientId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isClientOnline(String clientUId) {
+        return pace(() -> super.isClientOnline(clientUId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void kickClientFromChannel(int... clientIds) {
+        paceVoid(() -> super.kickClientFromChannel(clientIds));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void kickClientFromChannel(Client... clients) {
+        paceVoid(() -> super.kickClientFromChannel(clients));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void kickClientFromChannel(String message, int... clientIds) {
+        paceVoid(() -> super.kickClientFromChannel(message, clientIds));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void kickClientFromChannel(String message, Client... clients) {
+        paceVoid(() -> super.kickClientFromChannel(message, clients));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void kickClientFromServer(int... clientIds) {
+        paceVoid(() -> super.kickClientFromServer(clientIds));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void kickClientFromServer(Client... clients) {
+        paceVoid(() -> super.kickClientFromServer(clients));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void kickClientFromServer(String message, int... clientIds) {
+        paceVoid(() -> super.kickClientFromServer(message, clientIds));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void kickClientFromServer(String message, Client... clients) {
+        paceVoid(() -> super.kickClientFromServer(message, clients));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void login(String username, String password) {
+        paceVoid(() -> super.login(username, password));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void logout() {
+        paceVoid(() -> super.logout());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveChannel(int channelId, int channelTargetId) {
+        paceVoid(() -> super.moveChannel(channelId, channelTargetId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveChannel(int channelId, int channelTargetId, int order) {
+        paceVoid(() -> super.moveChannel(channelId, channelTargetId, order));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveClient(int clientId, int channelId) {
+        paceVoid(() -> super.moveClient(clientId, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveClients(int[] clientIds, int channelId) {
+        paceVoid(() -> super.moveClients(clientIds, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveClient(Client client, ChannelBase channel) {
+        paceVoid(() -> super.moveClient(client, channel));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveClients(Client[] clients, ChannelBase channel) {
+        paceVoid(() -> super.moveClients(clients, channel));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveClient(int clientId, int channelId, String channelPassword) {
+        paceVoid(() -> super.moveClient(clientId, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveClients(int[] clientIds, int channelId, String channelPassword) {
+        paceVoid(() -> super.moveClients(clientIds, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveClient(Client client, ChannelBase channel, String channelPassword) {
+        paceVoid(() -> super.moveClient(client, channel, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveClients(Client[] clients, ChannelBase channel, String channelPassword) {
+        paceVoid(() -> super.moveClients(clients, channel, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveFile(String oldPath, String newPath, int channelId) {
+        paceVoid(() -> super.moveFile(oldPath, newPath, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveFile(String oldPath, String newPath, int oldChannelId, int newChannelId) {
+        paceVoid(() -> super.moveFile(oldPath, newPath, oldChannelId, newChannelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveFile(String oldPath, String newPath, int channelId, String channelPassword) {
+        paceVoid(() -> super.moveFile(oldPath, newPath, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveFile(String oldPath, String newPath, int oldChannelId, String oldPassword, int newChannelId, String newPassword) {
+        paceVoid(() -> super.moveFile(oldPath, newPath, oldChannelId, oldPassword, newChannelId, newPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveQuery(int channelId) {
+        paceVoid(() -> super.moveQuery(channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveQuery(ChannelBase channel) {
+        paceVoid(() -> super.moveQuery(channel));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveQuery(int channelId, String channelPassword) {
+        paceVoid(() -> super.moveQuery(channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void moveQuery(ChannelBase channel, String channelPassword) {
+        paceVoid(() -> super.moveQuery(channel, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void pokeClient(int clientId, String message) {
+        paceVoid(() -> super.pokeClient(clientId, message));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void registerAllEvents() {
+        paceVoid(() -> super.registerAllEvents());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void registerEvent(TS3EventType eventType) {
+        paceVoid(() -> super.registerEvent(eventType));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void registerEvent(TS3EventType eventType, int channelId) {
+        paceVoid(() -> super.registerEvent(eventType, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void registerEvents(TS3EventType... eventTypes) {
+        paceVoid(() -> super.registerEvents(eventTypes));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void removeClientFromServerGroup(int serverGroupId, int clientDatabaseId) {
+        paceVoid(() -> super.removeClientFromServerGroup(serverGroupId, clientDatabaseId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void removeClientFromServerGroup(ServerGroup serverGroup, Client client) {
+        paceVoid(() -> super.removeClientFromServerGroup(serverGroup, client));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void renameChannelGroup(int channelGroupId, String name) {
+        paceVoid(() -> super.renameChannelGroup(channelGroupId, name));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void renameChannelGroup(ChannelGroup channelGroup, String name) {
+        paceVoid(() -> super.renameChannelGroup(channelGroup, name));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void renameServerGroup(int serverGroupId, String name) {
+        paceVoid(() -> super.renameServerGroup(serverGroupId, name));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void renameServerGroup(ServerGroup serverGroup, String name) {
+        paceVoid(() -> super.renameServerGroup(serverGroup, name));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String resetPermissions() {
+        return pace(() -> super.resetPermissions());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<CustomPropertyAssignment> searchCustomClientProperty(String key) {
+        return pace(() -> super.searchCustomClientProperty(key));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<CustomPropertyAssignment> searchCustomClientProperty(String key, String valuePattern) {
+        return pace(() -> super.searchCustomClientProperty(key, valuePattern));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void selectVirtualServerById(int id) {
+        paceVoid(() -> super.selectVirtualServerById(id));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void selectVirtualServerById(int id, String nickname) {
+        paceVoid(() -> super.selectVirtualServerById(id, nickname));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void selectVirtualServerByPort(int port) {
+        paceVoid(() -> super.selectVirtualServerByPort(port));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void selectVirtualServerByPort(int port, String nickname) {
+        paceVoid(() -> super.selectVirtualServerByPort(port, nickname));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void selectVirtualServer(VirtualServer server) {
+        paceVoid(() -> super.selectVirtualServer(server));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void selectVirtualServer(VirtualServer server, String nickname) {
+        paceVoid(() -> super.selectVirtualServer(server, nickname));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void sendOfflineMessage(String clientUId, String subject, String message) {
+        paceVoid(() -> super.sendOfflineMessage(clientUId, subject, message));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void sendTextMessage(TextMessageTargetMode targetMode, int targetId, String message) {
+        paceVoid(() -> super.sendTextMessage(targetMode, targetId, message));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void sendChannelMessage(int channelId, String message) {
+        paceVoid(() -> super.sendChannelMessage(channelId, message));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void sendChannelMessage(String message) {
+        paceVoid(() -> super.sendChannelMessage(message));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void sendServerMessage(int serverId, String message) {
+        paceVoid(() -> super.sendServerMessage(serverId, message));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void sendServerMessage(String message) {
+        paceVoid(() -> super.sendServerMessage(message));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void sendPrivateMessage(int clientId, String message) {
+        paceVoid(() -> super.sendPrivateMessage(clientId, message));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setClientChannelGroup(int groupId, int channelId, int clientDBId) {
+        paceVoid(() -> super.setClientChannelGroup(groupId, channelId, clientDBId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setCustomClientProperties(int clientDBId, Map<String, String> properties) {
+        paceVoid(() -> super.setCustomClientProperties(clientDBId, properties));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setCustomClientProperty(int clientDBId, String key, String value) {
+        paceVoid(() -> super.setCustomClientProperty(clientDBId, key, value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setMessageRead(int messageId) {
+        paceVoid(() -> super.setMessageRead(messageId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setMessageRead(Message message) {
+        paceVoid(() -> super.setMessageRead(message));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setMessageReadFlag(int messageId, boolean read) {
+        paceVoid(() -> super.setMessageReadFlag(messageId, read));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setMessageReadFlag(Message message, boolean read) {
+        paceVoid(() -> super.setMessageReadFlag(message, read));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setNickname(String nickname) {
+        paceVoid(() -> super.setNickname(nickname));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startServer(int serverId) {
+        paceVoid(() -> super.startServer(serverId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startServer(VirtualServer virtualServer) {
+        paceVoid(() -> super.startServer(virtualServer));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void stopServer(int serverId) {
+        paceVoid(() -> super.stopServer(serverId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void stopServer(int serverId, String reason) {
+        paceVoid(() -> super.stopServer(serverId, reason));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void stopServer(VirtualServer virtualServer) {
+        paceVoid(() -> super.stopServer(virtualServer));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void stopServer(VirtualServer virtualServer, String reason) {
+        paceVoid(() -> super.stopServer(virtualServer, reason));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void stopServerProcess() {
+        paceVoid(() -> super.stopServerProcess());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void stopServerProcess(String reason) {
+        paceVoid(() -> super.stopServerProcess(reason));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void unregisterAllEvents() {
+        paceVoid(() -> super.unregisterAllEvents());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updateClient(Map<ClientProperty, String> options) {
+        paceVoid(() -> super.updateClient(options));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updateClient(ClientProperty property, String value) {
+        paceVoid(() -> super.updateClient(property, value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String updateServerQueryLogin(String loginName) {
+        return pace(() -> super.updateServerQueryLogin(loginName));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void uploadFile(InputStream dataIn, long dataLength, String filePath, boolean overwrite, int channelId) {
+        transferVoid(() -> super.uploadFile(dataIn, dataLength, filePath, overwrite, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void uploadFile(InputStream dataIn, long dataLength, String filePath, boolean overwrite, int channelId, String channelPassword) {
+        transferVoid(() -> super.uploadFile(dataIn, dataLength, filePath, overwrite, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void uploadFileDirect(byte[] data, String filePath, boolean overwrite, int channelId) {
+        transferVoid(() -> super.uploadFileDirect(data, filePath, overwrite, channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void uploadFileDirect(byte[] data, String filePath, boolean overwrite, int channelId, String channelPassword) {
+        transferVoid(() -> super.uploadFileDirect(data, filePath, overwrite, channelId, channelPassword));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long uploadIcon(InputStream dataIn, long dataLength) {
+        return transfer(() -> super.uploadIcon(dataIn, dataLength));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long uploadIconDirect(byte[] data) {
+        return transfer(() -> super.uploadIconDirect(data));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void usePrivilegeKey(String token) {
+        paceVoid(() -> super.usePrivilegeKey(token));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void usePrivilegeKey(PrivilegeKey privilegeKey) {
+        paceVoid(() -> super.usePrivilegeKey(privilegeKey));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ServerQueryInfo whoAmI() {
+        return pace(() -> super.whoAmI());
+    }
+
+}
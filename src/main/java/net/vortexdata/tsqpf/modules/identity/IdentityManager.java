@@ -0,0 +1,164 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.identity;
+
+import com.github.theholywaffle.teamspeak3.TS3Api;
+import com.github.theholywaffle.teamspeak3.api.wrapper.ServerQueryInfo;
+import net.vortexdata.tsqpf.framework.FrameworkContainer;
+
+/**
+ * Caches the identity of the frameworks own query client for the lifetime of a connection.
+ *
+ * Self-invoked events can be filtered with a plain id comparison instead of
+ * issuing a whoami round-trip per event.
+ *
+ * @author Sandro Kierner
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class IdentityManager {
+
+    /** Constant <code>UNKNOWN_ID</code>, never matches a real client id. */
+    public static final int UNKNOWN_ID = Integer.MIN_VALUE;
+
+    private FrameworkContainer frameworkContainer;
+    private volatile int clientId;
+    private volatile int databaseId;
+    private volatile int channelId;
+    private volatile String nickname;
+    private volatile String uniqueIdentifier;
+
+    /**
+     * <p>Constructor for IdentityManager.</p>
+     *
+     * @param frameworkContainer a {@link net.vortexdata.tsqpf.framework.FrameworkContainer} object.
+     */
+    public IdentityManager(FrameworkContainer frameworkContainer) {
+        this.frameworkContainer = frameworkContainer;
+        invalidate();
+    }
+
+    /**
+     * Queries the current identity once and caches it.
+     *
+     * @param ts3Api Api of the active connection.
+     * @return true if the identity could be fetched.
+     */
+    public boolean refresh(TS3Api ts3Api) {
+        try {
+            ServerQueryInfo info = ts3Api.whoAmI();
+            clientId = info.getId();
+            databaseId = info.getDatabaseId();
+            channelId = info.getChannelId();
+            nickname = info.getNickname();
+            uniqueIdentifier = info.getUniqueIdentifier();
+            frameworkContainer.getFrameworkLogger().printDebug("Query identity cached (client id " + clientId + ").");
+            return true;
+        } catch (Exception e) {
+            frameworkContainer.getFrameworkLogger().printWarn("Failed to fetch query identity, self-invoked events can not be filtered: " + e.getMessage());
+            invalidate();
+            return false;
+        }
+    }
+
+    /**
+     * Changes the nickname of the query client and refreshes the cached identity.
+     *
+     * @param ts3Api   Api of the active connection.
+     * @param nickname The new nickname.
+     */
+    public void setNickname(TS3Api ts3Api, String nickname) {
+        ts3Api.setNickname(nickname);
+        refresh(ts3Api);
+    }
+
+    /**
+     * Drops the cached identity, usually when the connection is lost.
+     */
+    public void invalidate() {
+        clientId = UNKNOWN_ID;
+        databaseId = UNKNOWN_ID;
+        channelId = UNKNOWN_ID;
+        nickname = null;
+        uniqueIdentifier = null;
+    }
+
+    /**
+     * Checks if an event was invoked by the framework itself.
+     *
+     * @param invokerId Invoker id of the event.
+     * @return true if the invoker is the frameworks query client.
+     */
+    public boolean isSelf(int invokerId) {
+        return invokerId == clientId;
+    }
+
+    /**
+     * <p>Getter for the field <code>clientId</code>.</p>
+     *
+     * @return Client id of the query client or {@link #UNKNOWN_ID}.
+     */
+    public int getClientId() {
+        return clientId;
+    }
+
+    /**
+     * <p>Getter for the field <code>databaseId</code>.</p>
+     *
+     * @return a int.
+     */
+    public int getDatabaseId() {
+        return databaseId;
+    }
+
+    /**
+     * <p>Getter for the field <code>channelId</code>.</p>
+     *
+     * @return a int.
+     */
+    public int getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * <p>Getter for the field <code>nickname</code>.</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String getNickname() {
+        return nickname;
+    }
+
+    /**
+     * <p>Getter for the field <code>uniqueIdentifier</code>.</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String getUniqueIdentifier() {
+        return uniqueIdentifier;
+    }
+
+}
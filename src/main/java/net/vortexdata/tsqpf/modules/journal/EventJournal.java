@@ -0,0 +1,341 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.journal;
+
+import com.github.theholywaffle.teamspeak3.api.event.TS3Event;
+import com.github.theholywaffle.teamspeak3.api.event.TS3Listener;
+import com.github.theholywaffle.teamspeak3.api.wrapper.Wrapper;
+import net.vortexdata.tsqpf.framework.FrameworkContainer;
+import net.vortexdata.tsqpf.modules.eventhandler.EventType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only journal of all received events, stored in memory-mapped rolling segment files.
+ *
+ * Events are handed to a writer thread through a bounded queue, so recording never blocks dispatch. If the
+ * queue is full the event is dropped from the journal and counted. Every framework start opens a new segment,
+ * only the configured amount of segments is kept.
+ *
+ * Record layout: <code>int length, long timestamp, byte event type, short property count</code> followed by
+ * the properties as length prefixed UTF-8 key and value pairs. A length of 0 marks the end of a segment.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class EventJournal implements Runnable {
+
+    private static final String DIRECTORY = "sys//journal";
+    private static final String SUFFIX = ".journal";
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private final FrameworkContainer frameworkContainer;
+    private final int segmentSize;
+    private final int segmentLimit;
+    private final ArrayBlockingQueue<PendingRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_SIZE);
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    /**
+     * <p>Constructor for EventJournal.</p>
+     *
+     * @param frameworkContainer a {@link net.vortexdata.tsqpf.framework.FrameworkContainer} object.
+     * @param segmentSize        Size of a segment file in bytes.
+     * @param segmentLimit       Amount of segment files to keep.
+     */
+    public EventJournal(FrameworkContainer frameworkContainer, int segmentSize, int segmentLimit) {
+        this.frameworkContainer = frameworkContainer;
+        this.segmentSize = Math.max(MAX_RECORD_SIZE + 4, segmentSize);
+        this.segmentLimit = Math.max(1, segmentLimit);
+    }
+
+    /**
+     * Opens a new segment and starts the writer thread.
+     *
+     * @throws IOException if the segment could not be created.
+     */
+    public void start() throws IOException {
+        if (running) return;
+        File directory = new File(DIRECTORY);
+        if (!directory.isDirectory())
+            directory.mkdirs();
+        File[] segments = listSegments();
+        segmentNumber = segments.length == 0 ? 0 : parseSegmentNumber(segments[segments.length - 1]);
+        openNextSegment();
+
+        running = true;
+        thread = new Thread(this, "EventJournal");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Writes all pending events and stops the writer thread.
+     */
+    public void stop() {
+        running = false;
+        if (thread == null)
+            return;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues an event to be written to the journal without blocking. The record is timestamped now, not when the
+     * writer gets to it.
+     *
+     * @param event Received event.
+     */
+    public void record(TS3Event event) {
+        if (!running || !queue.offer(new PendingRecord(event, System.currentTimeMillis())))
+            dropped.incrementAndGet();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                PendingRecord record = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (record != null)
+                    write(record.event, record.timestamp);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                frameworkContainer.getFrameworkLogger().printError("Failed to write event to journal: " + e.getMessage());
+            }
+        }
+        try {
+            PendingRecord record;
+            while ((record = queue.poll()) != null)
+                write(record.event, record.timestamp);
+        } catch (Exception e) {
+            frameworkContainer.getFrameworkLogger().printError("Failed to write event to journal: " + e.getMessage());
+        }
+        segment.force();
+    }
+
+    private void write(TS3Event event, long timestamp) throws IOException {
+        EventType type = EventType.of(event);
+        if (type == null || !(event instanceof Wrapper))
+            return;
+
+        scratch.clear();
+        try {
+            Map<String, String> properties = ((Wrapper) event).getMap();
+            scratch.putLong(timestamp);
+            scratch.put((byte) type.ordinal());
+            scratch.putShort((short) properties.size());
+            for (Map.Entry<String, String> property : properties.entrySet()) {
+                putUtf8(property.getKey());
+                putUtf8(property.getValue() == null ? "" : property.getValue());
+            }
+        } catch (BufferOverflowException e) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        int length = scratch.position();
+        if (segment.remaining() < length + 8)
+            openNextSegment();
+        int start = segment.position();
+        segment.position(start + 4);
+        segment.put(scratch.array(), 0, length);
+        // The length is written last, so readers never see a partially written record.
+        segment.putInt(start, length);
+        written.incrementAndGet();
+    }
+
+    private void putUtf8(String value) {
+        int lengthPosition = scratch.position();
+        scratch.putShort((short) 0);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                scratch.put((byte) c);
+            } else if (c < 0x800) {
+                scratch.put((byte) (0xC0 | c >> 6));
+                scratch.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                scratch.put((byte) (0xF0 | codePoint >> 18));
+                scratch.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                scratch.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                scratch.put((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                scratch.put((byte) (0xE0 | c >> 12));
+                scratch.put((byte) (0x80 | c >> 6 & 0x3F));
+                scratch.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        int length = scratch.position() - lengthPosition - 2;
+        if (length > 0xFFFF)
+            throw new BufferOverflowException();
+        scratch.putShort(lengthPosition, (short) length);
+    }
+
+    private void openNextSegment() throws IOException {
+        if (segment != null)
+            segment.force();
+        segmentNumber++;
+        File file = new File(DIRECTORY, String.format("%016d", segmentNumber) + SUFFIX);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            segment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+
+        File[] segments = listSegments();
+        for (int i = 0; i < segments.length - segmentLimit; i++) {
+            if (!segments[i].delete())
+                frameworkContainer.getFrameworkLogger().printWarn("Failed to delete old journal segment " + segments[i].getName() + ".");
+        }
+    }
+
+    /**
+     * Fires all journaled events received within a time range at a listener, in the order they were received.
+     *
+     * @param from     Start of the range in milliseconds since epoch, inclusive.
+     * @param to       End of the range in milliseconds since epoch, inclusive.
+     * @param listener Listener the events are fired at.
+     * @return Amount of replayed events.
+     * @throws IOException if a segment could not be read.
+     */
+    public long replay(long from, long to, TS3Listener listener) throws IOException {
+        long replayed = 0;
+        EventType[] types = EventType.values();
+        for (File file : listSegments()) {
+            MappedByteBuffer buffer;
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+                buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+            }
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining())
+                    break;
+                int end = buffer.position() + length;
+                long timestamp = buffer.getLong();
+                int typeIndex = buffer.get();
+                if (timestamp < from || timestamp > to || typeIndex < 0 || typeIndex >= types.length) {
+                    buffer.position(end);
+                    continue;
+                }
+                int count = buffer.getShort() & 0xFFFF;
+                HashMap<String, String> properties = new HashMap<>();
+                for (int i = 0; i < count; i++)
+                    properties.put(getUtf8(buffer), getUtf8(buffer));
+                buffer.position(end);
+
+                try {
+                    TS3Event event = types[typeIndex].getEventClass().getConstructor(Map.class).newInstance(properties);
+                    event.fire(listener);
+                    replayed++;
+                } catch (ReflectiveOperationException e) {
+                    frameworkContainer.getFrameworkLogger().printWarn("Failed to replay journaled " + types[typeIndex].getEventClass().getSimpleName() + ": " + e.getMessage());
+                }
+            }
+        }
+        return replayed;
+    }
+
+    private static String getUtf8(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static File[] listSegments() {
+        File[] segments = new File(DIRECTORY).listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (segments == null)
+            return new File[0];
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private static long parseSegmentNumber(File file) {
+        try {
+            return Long.parseLong(file.getName().substring(0, file.getName().length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * <p>getWritten.</p>
+     *
+     * @return Amount of events written to the journal.
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * <p>getDropped.</p>
+     *
+     * @return Amount of events not written because the queue was full or the record too large.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Event waiting to be written, together with the time it was received at.
+     */
+    private static final class PendingRecord {
+
+        private final TS3Event event;
+        private final long timestamp;
+
+        private PendingRecord(TS3Event event, long timestamp) {
+            this.event = event;
+            this.timestamp = timestamp;
+        }
+
+    }
+
+}
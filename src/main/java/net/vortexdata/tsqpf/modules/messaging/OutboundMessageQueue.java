@@ -0,0 +1,310 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.messaging;
+
+import com.github.theholywaffle.teamspeak3.api.TextMessageTargetMode;
+import net.vortexdata.tsqpf.framework.FrameworkContainer;
+import net.vortexdata.tsqpf.modules.flood.AdaptiveFloodController;
+import net.vortexdata.tsqpf.modules.metrics.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Framework owned queue for all outgoing text messages.
+ *
+ * Messages are sent by a single worker with at most one message in flight. Pacing is left to the flood rate of
+ * the query connection, so a message is not delayed a second time here, and while the server is busy messages
+ * wait in this queue, where a message queued for the same target as the last queued one is appended to it as
+ * long as the result fits into one Teamspeak message.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class OutboundMessageQueue implements Runnable {
+
+    /** Maximum length of a single Teamspeak text message. */
+    public static final int MAX_MESSAGE_LENGTH = 1024;
+    private static final long SEND_TIMEOUT_SECONDS = 10;
+
+    private final FrameworkContainer frameworkContainer;
+    private final int capacity;
+    private final Semaphore inFlight = new Semaphore(1);
+    private final AtomicReference<OutboundMessage> inFlightMessage = new AtomicReference<>();
+    private final AdaptiveFloodController floodController;
+    private final ArrayDeque<OutboundMessage> queue = new ArrayDeque<>();
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private Thread thread;
+    private volatile boolean running = false;
+
+    /**
+     * <p>Constructor for OutboundMessageQueue.</p>
+     *
+     * @param frameworkContainer a {@link net.vortexdata.tsqpf.framework.FrameworkContainer} object.
+     * @param capacity           Maximum amount of pending messages.
+     */
+    public OutboundMessageQueue(FrameworkContainer frameworkContainer, int capacity) {
+        this.frameworkContainer = frameworkContainer;
+        this.capacity = Math.max(1, capacity);
+        this.floodController = frameworkContainer.getFrameworkFloodController();
+    }
+
+    /**
+     * Starts the sending worker.
+     */
+    public void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this, "OutboundMessageQueue");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Sends all pending messages and stops the sending worker. Messages still pending after five seconds are
+     * discarded.
+     */
+    public void stop() {
+        synchronized (queue) {
+            running = false;
+            queue.notifyAll();
+        }
+        if (thread == null)
+            return;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread.interrupt();
+    }
+
+    /**
+     * Queues a private message.
+     *
+     * @param clientId Id of the receiving client.
+     * @param message  The message.
+     */
+    public void sendPrivateMessage(int clientId, String message) {
+        enqueue(TextMessageTargetMode.CLIENT, clientId, message);
+    }
+
+    /**
+     * Queues a message to the channel the framework is in.
+     *
+     * @param message The message.
+     */
+    public void sendChannelMessage(String message) {
+        enqueue(TextMessageTargetMode.CHANNEL, 0, message);
+    }
+
+    /**
+     * Queues a message to the server chat.
+     *
+     * @param message The message.
+     */
+    public void sendServerMessage(String message) {
+        enqueue(TextMessageTargetMode.SERVER, 0, message);
+    }
+
+    private void enqueue(TextMessageTargetMode targetMode, int targetId, String message) {
+        if (message == null || message.isEmpty())
+            return;
+        long now = System.nanoTime();
+        synchronized (queue) {
+            for (int start = 0, end; start < message.length(); start = end) {
+                end = Math.min(message.length(), start + MAX_MESSAGE_LENGTH);
+                // Do not split a surrogate pair across two messages.
+                if (end < message.length() && Character.isHighSurrogate(message.charAt(end - 1)))
+                    end--;
+                String part = message.substring(start, end);
+                queued.incrementAndGet();
+                OutboundMessage last = queue.peekLast();
+                if (last != null && last.targetMode == targetMode && last.targetId == targetId
+                        && last.text.length() + 1 + part.length() <= MAX_MESSAGE_LENGTH) {
+                    last.text.append('\n').append(part);
+                    merged.incrementAndGet();
+                    continue;
+                }
+                if (queue.size() >= capacity) {
+                    dropped.incrementAndGet();
+                    continue;
+                }
+                queue.addLast(new OutboundMessage(targetMode, targetId, part, now));
+            }
+            queue.notify();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                // Wait for the previous message, but do not stall forever if its response got lost.
+                if (!inFlight.tryAcquire(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                    frameworkContainer.getFrameworkLogger().printDebug("No response to the previous queued message, sending the next one.");
+                OutboundMessage message;
+                synchronized (queue) {
+                    while (queue.isEmpty() && running)
+                        queue.wait();
+                    message = queue.pollFirst();
+                }
+                // Stopped and drained, the reply to the last message has already arrived.
+                if (message == null)
+                    break;
+                if (floodController != null)
+                    floodController.acquire();
+                inFlightMessage.set(message);
+                send(message);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                if (inFlightMessage.getAndSet(null) != null)
+                    inFlight.release();
+                failed.incrementAndGet();
+                frameworkContainer.getFrameworkLogger().printWarn("Failed to send queued message: " + e.getMessage());
+            }
+        }
+    }
+
+    private void send(OutboundMessage message) {
+        long start = System.nanoTime();
+        frameworkContainer.getTs3Query().getAsyncApi()
+                .sendTextMessage(message.targetMode, message.targetId, message.text.toString())
+                .onSuccess(result -> {
+                    if (floodController != null)
+                        floodController.onSuccess(System.nanoTime() - start);
+                    sent.incrementAndGet();
+                    sendLatency.record(System.nanoTime() - message.queuedAt);
+                    complete(message);
+                })
+                .onFailure(error -> {
+                    if (floodController != null)
+                        floodController.onFailure(error);
+                    failed.incrementAndGet();
+                    frameworkContainer.getFrameworkLogger().printDebug("Server rejected queued message: " + error.getMessage());
+                    complete(message);
+                });
+    }
+
+    private void complete(OutboundMessage message) {
+        // A message given up on after the send timeout must not release the permit of the one sent after it.
+        if (inFlightMessage.compareAndSet(message, null))
+            inFlight.release();
+    }
+
+    /**
+     * <p>getDepth.</p>
+     *
+     * @return Amount of messages waiting to be sent.
+     */
+    public int getDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Returns the time between queueing and the server acknowledging a message in nanoseconds.
+     *
+     * @return Send latency histogram.
+     */
+    public LatencyHistogram getSendLatency() {
+        return sendLatency;
+    }
+
+    /**
+     * <p>getQueued.</p>
+     *
+     * @return Amount of messages queued, after splitting long messages.
+     */
+    public long getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * <p>getMerged.</p>
+     *
+     * @return Amount of messages appended to an already queued message.
+     */
+    public long getMerged() {
+        return merged.get();
+    }
+
+    /**
+     * <p>getSent.</p>
+     *
+     * @return Amount of messages acknowledged by the server.
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * <p>getFailed.</p>
+     *
+     * @return Amount of messages that could not be sent.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * <p>getDropped.</p>
+     *
+     * @return Amount of messages dropped because the queue was full.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private static class OutboundMessage {
+
+        private final TextMessageTargetMode targetMode;
+        private final int targetId;
+        private final StringBuilder text;
+        private final long queuedAt;
+
+        private OutboundMessage(TextMessageTargetMode targetMode, int targetId, String text, long queuedAt) {
+            this.targetMode = targetMode;
+            this.targetId = targetId;
+            this.text = new StringBuilder(text);
+            this.queuedAt = queuedAt;
+        }
+
+    }
+
+}
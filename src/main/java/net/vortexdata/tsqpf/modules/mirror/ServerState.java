@@ -0,0 +1,159 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.mirror;
+
+import com.github.theholywaffle.teamspeak3.api.wrapper.Channel;
+import com.github.theholywaffle.teamspeak3.api.wrapper.Client;
+import com.github.theholywaffle.teamspeak3.api.wrapper.ServerGroup;
+import com.github.theholywaffle.teamspeak3.api.wrapper.VirtualServerInfo;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the servers clients, channels, server groups and server info.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class ServerState {
+
+    /** Snapshot of a mirror that has not been seeded yet. */
+    public static final ServerState EMPTY = new ServerState(SnapshotMap.empty(), SnapshotMap.empty(), Collections.emptyList(), null, 0);
+
+    private final SnapshotMap<Client> clients;
+    private final SnapshotMap<Channel> channels;
+    private final List<ServerGroup> serverGroups;
+    private final VirtualServerInfo serverInfo;
+    private final long timestamp;
+
+    ServerState(SnapshotMap<Client> clients, SnapshotMap<Channel> channels, List<ServerGroup> serverGroups, VirtualServerInfo serverInfo, long timestamp) {
+        this.clients = clients;
+        this.channels = channels;
+        this.serverGroups = Collections.unmodifiableList(serverGroups);
+        this.serverInfo = serverInfo;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * <p>getClients.</p>
+     *
+     * @return All online clients, including query clients.
+     */
+    public Collection<Client> getClients() {
+        return clients.values();
+    }
+
+    /**
+     * <p>getClient.</p>
+     *
+     * @param clientId Id of the client.
+     * @return The client or null if it is not online.
+     */
+    public Client getClient(int clientId) {
+        return clients.get(clientId);
+    }
+
+    /**
+     * <p>getClientByUId.</p>
+     *
+     * @param uniqueIdentifier Unique identifier of the client.
+     * @return The first online client with this unique identifier or null if there is none.
+     */
+    public Client getClientByUId(String uniqueIdentifier) {
+        for (Client client : clients.values()) {
+            if (client.getUniqueIdentifier().equals(uniqueIdentifier))
+                return client;
+        }
+        return null;
+    }
+
+    /**
+     * <p>getChannels.</p>
+     *
+     * @return All channels.
+     */
+    public Collection<Channel> getChannels() {
+        return channels.values();
+    }
+
+    /**
+     * <p>getChannel.</p>
+     *
+     * @param channelId Id of the channel.
+     * @return The channel or null if it does not exist.
+     */
+    public Channel getChannel(int channelId) {
+        return channels.get(channelId);
+    }
+
+    /**
+     * <p>Getter for the field <code>serverGroups</code>.</p>
+     *
+     * @return All server groups as of the last seed or reconciliation.
+     */
+    public List<ServerGroup> getServerGroups() {
+        return serverGroups;
+    }
+
+    /**
+     * <p>Getter for the field <code>serverInfo</code>.</p>
+     *
+     * @return The virtual server info or null if the mirror has not been seeded.
+     */
+    public VirtualServerInfo getServerInfo() {
+        return serverInfo;
+    }
+
+    /**
+     * <p>Getter for the field <code>timestamp</code>.</p>
+     *
+     * @return Time of the last change in milliseconds since epoch, 0 if the mirror has not been seeded.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * <p>isSeeded.</p>
+     *
+     * @return True if the snapshot contains data from the server.
+     */
+    public boolean isSeeded() {
+        return serverInfo != null;
+    }
+
+    SnapshotMap<Client> clientMap() {
+        return clients;
+    }
+
+    SnapshotMap<Channel> channelMap() {
+        return channels;
+    }
+
+}
@@ -0,0 +1,401 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.mirror;
+
+import com.github.theholywaffle.teamspeak3.TS3Api;
+import com.github.theholywaffle.teamspeak3.api.event.*;
+import com.github.theholywaffle.teamspeak3.api.wrapper.Channel;
+import com.github.theholywaffle.teamspeak3.api.wrapper.Client;
+import com.github.theholywaffle.teamspeak3.api.wrapper.ServerGroup;
+import com.github.theholywaffle.teamspeak3.api.wrapper.VirtualServerInfo;
+import net.vortexdata.tsqpf.framework.FrameworkContainer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory mirror of the selected virtual servers clients, channels, server groups and server info.
+ *
+ * The mirror is seeded once on wakeup and afterwards kept up to date from the events the framework receives
+ * anyways, so reading it never costs a query. Every change publishes a new immutable {@link ServerState},
+ * readers simply take the current one without any locking. A new state shares all clients and channels the
+ * change did not touch with the previous one, see {@link SnapshotMap}. As not every change is announced by an
+ * event (e.g. server group assignments or talk power), the mirror is periodically reconciled against the server.
+ *
+ * The mirror is registered at the Teamspeak api as a listener of its own, so it receives events in the order the
+ * server sent them, independent of the keyed event dispatch. Events and reconciliations are applied one after the
+ * other on a single mirror thread. Events arriving while a reconciliation waits for the server are applied on top
+ * of the fetched state afterwards, so they are never lost; applying an event the fetched state already reflects
+ * leaves the state unchanged.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class ServerStateMirror extends TS3EventAdapter {
+
+    private final FrameworkContainer frameworkContainer;
+    private final long reconcileIntervalSeconds;
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong reconciled = new AtomicLong();
+    private final AtomicLong drift = new AtomicLong();
+    private final ScheduledExecutorService lane;
+    private volatile ServerState state = ServerState.EMPTY;
+    private long generation;
+    private ScheduledFuture<?> reconcileTask;
+
+    /**
+     * <p>Constructor for ServerStateMirror.</p>
+     *
+     * @param frameworkContainer       a {@link net.vortexdata.tsqpf.framework.FrameworkContainer} object.
+     * @param reconcileIntervalSeconds Seconds between two reconciliations, 0 disables reconciliation.
+     */
+    public ServerStateMirror(FrameworkContainer frameworkContainer, long reconcileIntervalSeconds) {
+        this.frameworkContainer = frameworkContainer;
+        this.reconcileIntervalSeconds = reconcileIntervalSeconds;
+        this.lane = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ServerStateMirror");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Fetches the full server state and starts periodic reconciliation.
+     *
+     * @param api Api used to query the server.
+     */
+    public void seed(TS3Api api) {
+        ServerState seeded = fetch(api);
+        synchronized (this) {
+            generation++;
+            state = seeded;
+            if (reconcileTask != null)
+                reconcileTask.cancel(false);
+            if (reconcileIntervalSeconds > 0)
+                reconcileTask = lane.scheduleWithFixedDelay(this::reconcile, reconcileIntervalSeconds, reconcileIntervalSeconds, TimeUnit.SECONDS);
+        }
+        frameworkContainer.getFrameworkLogger().printDebug("Server state mirror seeded with " + seeded.clientMap().size() + " clients and " + seeded.channelMap().size() + " channels.");
+    }
+
+    /**
+     * Stops reconciliation and clears the mirror, used when the framework loses its connection.
+     */
+    public synchronized void clear() {
+        if (reconcileTask != null) {
+            reconcileTask.cancel(false);
+            reconcileTask = null;
+        }
+        generation++;
+        state = ServerState.EMPTY;
+    }
+
+    /**
+     * Stops the mirror thread, used when the framework shuts down.
+     */
+    public void shutdown() {
+        clear();
+        lane.shutdownNow();
+    }
+
+    /**
+     * Replaces the mirror with a freshly queried state. Runs on the mirror thread, so events received in the meantime
+     * are applied on top of the fresh state afterwards.
+     */
+    private void reconcile() {
+        TS3Api api = frameworkContainer.getTs3Api();
+        long fetchedGeneration;
+        synchronized (this) {
+            fetchedGeneration = generation;
+        }
+        if (api == null || !state.isSeeded())
+            return;
+        try {
+            ServerState fresh = fetch(api);
+            long differences;
+            synchronized (this) {
+                ServerState current = state;
+                // The mirror was cleared or seeded again while fetching.
+                if (!current.isSeeded() || generation != fetchedGeneration)
+                    return;
+                differences = countDifferences(current.clientMap(), fresh.clientMap()) + countDifferences(current.channelMap(), fresh.channelMap());
+                state = fresh;
+            }
+            drift.addAndGet(differences);
+            reconciled.incrementAndGet();
+            if (differences > 0)
+                frameworkContainer.getFrameworkLogger().printDebug("Server state mirror reconciled, " + differences + " clients or channels had drifted.");
+        } catch (Exception e) {
+            frameworkContainer.getFrameworkLogger().printWarn("Failed to reconcile server state mirror: " + e.getMessage());
+        }
+    }
+
+    private ServerState fetch(TS3Api api) {
+        HashMap<Integer, Client> clients = new HashMap<>();
+        for (Client client : api.getClients())
+            clients.put(client.getId(), client);
+        HashMap<Integer, Channel> channels = new HashMap<>();
+        for (Channel channel : api.getChannels())
+            channels.put(channel.getId(), channel);
+        List<ServerGroup> serverGroups = api.getServerGroups();
+        VirtualServerInfo serverInfo = api.getServerInfo();
+        return new ServerState(SnapshotMap.of(clients), SnapshotMap.of(channels), serverGroups, serverInfo, System.currentTimeMillis());
+    }
+
+    private static long countDifferences(Map<Integer, ?> current, Map<Integer, ?> fresh) {
+        long differences = 0;
+        for (Integer id : current.keySet()) {
+            if (!fresh.containsKey(id))
+                differences++;
+        }
+        for (Integer id : fresh.keySet()) {
+            if (!current.containsKey(id))
+                differences++;
+        }
+        return differences;
+    }
+
+    /**
+     * <p>Getter for the field <code>state</code>.</p>
+     *
+     * @return The current snapshot, never null.
+     */
+    public ServerState getState() {
+        return state;
+    }
+
+    /**
+     * <p>getApplied.</p>
+     *
+     * @return Amount of events applied to the mirror.
+     */
+    public long getApplied() {
+        return applied.get();
+    }
+
+    /**
+     * <p>getReconciled.</p>
+     *
+     * @return Amount of completed reconciliations.
+     */
+    public long getReconciled() {
+        return reconciled.get();
+    }
+
+    /**
+     * <p>getDrift.</p>
+     *
+     * @return Total amount of clients or channels found missing or superfluous during reconciliations.
+     */
+    public long getDrift() {
+        return drift.get();
+    }
+
+    private void publish(SnapshotMap<Client> clients, SnapshotMap<Channel> channels, VirtualServerInfo serverInfo) {
+        ServerState current = state;
+        state = new ServerState(
+                clients != null ? clients : current.clientMap(),
+                channels != null ? channels : current.channelMap(),
+                current.getServerGroups(),
+                serverInfo != null ? serverInfo : current.getServerInfo(),
+                System.currentTimeMillis()
+        );
+        applied.incrementAndGet();
+    }
+
+    private void submit(Runnable update) {
+        try {
+            lane.execute(() -> {
+                try {
+                    update.run();
+                } catch (Exception e) {
+                    frameworkContainer.getFrameworkLogger().printWarn("Failed to apply event to server state mirror: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The mirror was shut down.
+        }
+    }
+
+    private static SnapshotMap<Channel> adjustClientCount(SnapshotMap<Channel> channels, int channelId, int delta) {
+        Channel channel = channels.get(channelId);
+        if (channel == null)
+            return channels;
+        HashMap<String, String> map = new HashMap<>(channel.getMap());
+        map.put("total_clients", String.valueOf(Math.max(0, channel.getTotalClients() + delta)));
+        return channels.with(channelId, new Channel(map));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onClientJoin(ClientJoinEvent e) {
+        submit(() -> apply(e));
+    }
+
+    private synchronized void apply(ClientJoinEvent e) {
+        if (!state.isSeeded()) return;
+        HashMap<String, String> map = new HashMap<>(e.getMap());
+        map.put("cid", String.valueOf(e.getClientTargetId()));
+        Client previous = state.getClient(e.getClientId());
+        SnapshotMap<Channel> channels = state.channelMap();
+        if (previous != null)
+            channels = adjustClientCount(channels, previous.getChannelId(), -1);
+        channels = adjustClientCount(channels, e.getClientTargetId(), 1);
+        publish(state.clientMap().with(e.getClientId(), new Client(map)), channels, null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onClientLeave(ClientLeaveEvent e) {
+        submit(() -> apply(e));
+    }
+
+    private synchronized void apply(ClientLeaveEvent e) {
+        if (!state.isSeeded()) return;
+        Client previous = state.getClient(e.getClientId());
+        if (previous == null)
+            return;
+        publish(state.clientMap().without(e.getClientId()), adjustClientCount(state.channelMap(), previous.getChannelId(), -1), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onClientMoved(ClientMovedEvent e) {
+        submit(() -> apply(e));
+    }
+
+    private synchronized void apply(ClientMovedEvent e) {
+        if (!state.isSeeded()) return;
+        Client previous = state.getClient(e.getClientId());
+        if (previous == null || previous.getChannelId() == e.getTargetChannelId())
+            return;
+        HashMap<String, String> map = new HashMap<>(previous.getMap());
+        map.put("cid", String.valueOf(e.getTargetChannelId()));
+        SnapshotMap<Channel> channels = adjustClientCount(state.channelMap(), previous.getChannelId(), -1);
+        channels = adjustClientCount(channels, e.getTargetChannelId(), 1);
+        publish(state.clientMap().with(e.getClientId(), new Client(map)), channels, null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelCreate(ChannelCreateEvent e) {
+        submit(() -> apply(e));
+    }
+
+    private synchronized void apply(ChannelCreateEvent e) {
+        if (!state.isSeeded()) return;
+        HashMap<String, String> map = new HashMap<>(e.getMap());
+        map.put("pid", map.getOrDefault("cpid", "0"));
+        Channel previous = state.getChannel(e.getChannelId());
+        map.put("total_clients", previous != null ? String.valueOf(previous.getTotalClients()) : "0");
+        publish(null, state.channelMap().with(e.getChannelId(), new Channel(map)), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelEdit(ChannelEditedEvent e) {
+        submit(() -> apply(e));
+    }
+
+    private synchronized void apply(ChannelEditedEvent e) {
+        mergeChannel(e.getChannelId(), e.getMap());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelDescriptionChanged(ChannelDescriptionEditedEvent e) {
+        submit(() -> apply(e));
+    }
+
+    private synchronized void apply(ChannelDescriptionEditedEvent e) {
+        mergeChannel(e.getChannelId(), e.getMap());
+    }
+
+    private void mergeChannel(int channelId, Map<String, String> changes) {
+        if (!state.isSeeded()) return;
+        Channel previous = state.getChannel(channelId);
+        if (previous == null)
+            return;
+        HashMap<String, String> map = new HashMap<>(previous.getMap());
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            if (change.getKey().startsWith("channel_"))
+                map.put(change.getKey(), change.getValue());
+        }
+        publish(null, state.channelMap().with(channelId, new Channel(map)), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelDeleted(ChannelDeletedEvent e) {
+        submit(() -> apply(e));
+    }
+
+    private synchronized void apply(ChannelDeletedEvent e) {
+        if (!state.isSeeded() || state.getChannel(e.getChannelId()) == null) return;
+        publish(null, state.channelMap().without(e.getChannelId()), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onChannelMoved(ChannelMovedEvent e) {
+        submit(() -> apply(e));
+    }
+
+    private synchronized void apply(ChannelMovedEvent e) {
+        if (!state.isSeeded()) return;
+        Channel previous = state.getChannel(e.getChannelId());
+        if (previous == null)
+            return;
+        HashMap<String, String> map = new HashMap<>(previous.getMap());
+        map.put("pid", String.valueOf(e.getChannelParentId()));
+        map.put("channel_order", String.valueOf(e.getChannelOrder()));
+        publish(null, state.channelMap().with(e.getChannelId(), new Channel(map)), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onServerEdit(ServerEditedEvent e) {
+        submit(() -> apply(e));
+    }
+
+    private synchronized void apply(ServerEditedEvent e) {
+        if (!state.isSeeded()) return;
+        HashMap<String, String> map = new HashMap<>(state.getServerInfo().getMap());
+        for (Map.Entry<String, String> change : e.getMap().entrySet()) {
+            if (change.getKey().startsWith("virtualserver_"))
+                map.put(change.getKey(), change.getValue());
+        }
+        publish(null, null, new VirtualServerInfo(map));
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package net.vortexdata.tsqpf.modules.mirror;
+
+import java.util.*;
+
+/**
+ * Immutable map of ids that shares all unchanged entries with the map it was derived from.
+ *
+ * Entries are spread over a fixed amount of buckets by their id, and a change only copies the one bucket it
+ * touches. Updating a single client of a server with thousands of them therefore copies a few dozen entries
+ * instead of all of them.
+ *
+ * @param <V> Type of the values.
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+final class SnapshotMap<V> extends AbstractMap<Integer, V> {
+
+    private static final int BUCKETS = 64;
+    private static final SnapshotMap<?> EMPTY = new SnapshotMap<>(emptyBuckets(), 0);
+
+    private final Map<Integer, V>[] buckets;
+    private final int size;
+    private Set<Entry<Integer, V>> entrySet;
+
+    private SnapshotMap(Map<Integer, V>[] buckets, int size) {
+        this.buckets = buckets;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Map<Integer, V>[] emptyBuckets() {
+        Map<Integer, V>[] buckets = new Map[BUCKETS];
+        Arrays.fill(buckets, Collections.emptyMap());
+        return buckets;
+    }
+
+    /**
+     * <p>empty.</p>
+     *
+     * @param <V> Type of the values.
+     * @return The empty map.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> SnapshotMap<V> empty() {
+        return (SnapshotMap<V>) EMPTY;
+    }
+
+    /**
+     * Copies a map.
+     *
+     * @param entries The entries.
+     * @param <V>     Type of the values.
+     * @return A map holding the same entries.
+     */
+    static <V> SnapshotMap<V> of(Map<Integer, V> entries) {
+        Map<Integer, V>[] buckets = emptyBuckets();
+        for (Entry<Integer, V> entry : entries.entrySet()) {
+            int index = bucket(entry.getKey());
+            if (buckets[index].isEmpty())
+                buckets[index] = new HashMap<>();
+            buckets[index].put(entry.getKey(), entry.getValue());
+        }
+        return new SnapshotMap<>(buckets, entries.size());
+    }
+
+    private static int bucket(int id) {
+        return id & (BUCKETS - 1);
+    }
+
+    /**
+     * Returns a map with one entry added or replaced, this map stays unchanged.
+     *
+     * @param id    The id.
+     * @param value The value.
+     * @return The changed map.
+     */
+    SnapshotMap<V> with(int id, V value) {
+        int index = bucket(id);
+        HashMap<Integer, V> bucket = new HashMap<>(buckets[index]);
+        boolean added = bucket.put(id, value) == null;
+        Map<Integer, V>[] changed = buckets.clone();
+        changed[index] = bucket;
+        return new SnapshotMap<>(changed, added ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map with one entry removed, this map stays unchanged.
+     *
+     * @param id The id.
+     * @return The changed map, or this map if it does not contain the id.
+     */
+    SnapshotMap<V> without(int id) {
+        int index = bucket(id);
+        if (!buckets[index].containsKey(id))
+            return this;
+        HashMap<Integer, V> bucket = new HashMap<>(buckets[index]);
+        bucket.remove(id);
+        Map<Integer, V>[] changed = buckets.clone();
+        changed[index] = bucket;
+        return new SnapshotMap<>(changed, size - 1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer ? buckets[bucket((Integer) key)].get(key) : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer && buckets[bucket((Integer) key)].containsKey(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        Set<Entry<Integer, V>> entries = entrySet;
+        if (entries == null) {
+            entries = new AbstractSet<Entry<Integer, V>>() {
+                @Override
+                public Iterator<Entry<Integer, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+            entrySet = entries;
+        }
+        return entries;
+    }
+
+    private final class EntryIterator implements Iterator<Entry<Integer, V>> {
+
+        private int index = 0;
+        private Iterator<Entry<Integer, V>> current = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (index == BUCKETS)
+                    return false;
+                current = Collections.unmodifiableMap(buckets[index++]).entrySet().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<Integer, V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return current.next();
+        }
+
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.querypool;
+
+import com.github.theholywaffle.teamspeak3.TS3Api;
+import com.github.theholywaffle.teamspeak3.TS3ApiAsync;
+import com.github.theholywaffle.teamspeak3.TS3Query;
+import net.vortexdata.tsqpf.modules.flood.AdaptiveFloodController;
+import net.vortexdata.tsqpf.modules.flood.PacedApi;
+import net.vortexdata.tsqpf.modules.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One additional query connection of the {@link QueryConnectionPool}.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class PooledQueryConnection {
+
+    private final int index;
+    private final TS3Query query;
+    private final AdaptiveFloodController floodController;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile PacedApi pacedApi;
+    private volatile boolean ready = false;
+
+    PooledQueryConnection(int index, TS3Query query, AdaptiveFloodController floodController) {
+        this.index = index;
+        this.query = query;
+        this.floodController = floodController;
+    }
+
+    TS3Query getQuery() {
+        return query;
+    }
+
+    TS3Api getApi() {
+        if (floodController == null)
+            return query.getApi();
+        TS3ApiAsync asyncApi = query.getAsyncApi();
+        PacedApi api = pacedApi;
+        if (api == null || !api.isBoundTo(asyncApi))
+            pacedApi = api = new PacedApi(asyncApi, floodController);
+        return api;
+    }
+
+    void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    void begin() {
+        inFlight.incrementAndGet();
+    }
+
+    void end(long startNanos, boolean success) {
+        inFlight.decrementAndGet();
+        if (success)
+            latency.record(System.nanoTime() - startNanos);
+        else
+            failed.incrementAndGet();
+    }
+
+    /**
+     * <p>Getter for the field <code>index</code>.</p>
+     *
+     * @return Number of this connection within the pool, starting at 1.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * <p>isReady.</p>
+     *
+     * @return True if the connection is logged in and has selected the virtual server.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * <p>getInFlight.</p>
+     *
+     * @return Amount of queries currently waiting for a response on this connection.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * <p>Getter for the field <code>latency</code>.</p>
+     *
+     * @return Round trip times of successful queries in nanoseconds.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * <p>getFailed.</p>
+     *
+     * @return Amount of queries that threw an exception.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+}
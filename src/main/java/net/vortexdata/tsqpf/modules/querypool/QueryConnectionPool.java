@@ -0,0 +1,248 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.querypool;
+
+import com.github.theholywaffle.teamspeak3.TS3Api;
+import com.github.theholywaffle.teamspeak3.TS3Config;
+import com.github.theholywaffle.teamspeak3.TS3Query;
+import com.github.theholywaffle.teamspeak3.api.reconnect.ConnectionHandler;
+import com.github.theholywaffle.teamspeak3.api.reconnect.ReconnectStrategy;
+import net.vortexdata.tsqpf.configs.Config;
+import net.vortexdata.tsqpf.configs.ConfigMain;
+import net.vortexdata.tsqpf.framework.FrameworkContainer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Pool of additional query connections used to run plugin queries in parallel.
+ *
+ * Every connection signs in with the configured query credentials and selects the same virtual server as the
+ * primary connection, but never registers for events, so all events keep arriving on the primary connection.
+ * Queries are spread over the ready connections either round robin or to the one with the fewest queries in
+ * flight. If no pooled connection is ready, queries fall back to the primary connection.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class QueryConnectionPool {
+
+    /**
+     * Strategies used to pick the connection for the next query.
+     */
+    public enum Balancing {
+        ROUND_ROBIN, LEAST_LOADED;
+
+        /**
+         * Parses a config value like <code>roundRobin</code> or <code>leastLoaded</code>.
+         *
+         * @param value Config value
+         * @return The matching strategy or null if it could not be parsed.
+         */
+        public static Balancing parse(String value) {
+            if (value == null)
+                return null;
+            String normalized = value.replace("_", "").replace("-", "");
+            for (Balancing balancing : values()) {
+                if (balancing.name().replace("_", "").equalsIgnoreCase(normalized))
+                    return balancing;
+            }
+            return null;
+        }
+    }
+
+    private final FrameworkContainer frameworkContainer;
+    private final int size;
+    private final Balancing balancing;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<PooledQueryConnection> connections = Collections.emptyList();
+
+    /**
+     * <p>Constructor for QueryConnectionPool.</p>
+     *
+     * @param frameworkContainer a {@link net.vortexdata.tsqpf.framework.FrameworkContainer} object.
+     * @param size               Amount of additional connections.
+     * @param balancing          Strategy used to pick connections.
+     */
+    public QueryConnectionPool(FrameworkContainer frameworkContainer, int size, Balancing balancing) {
+        this.frameworkContainer = frameworkContainer;
+        this.size = size;
+        this.balancing = balancing;
+    }
+
+    /**
+     * Opens all pooled connections. Connections that can not be established are skipped.
+     *
+     * @param host Address of the Teamspeak server.
+     * @param port Query port of the Teamspeak server.
+     * @param floodRate Flood rate used on every pooled connection.
+     */
+    public synchronized void start(String host, int port, TS3Query.FloodRate floodRate) {
+        if (!connections.isEmpty())
+            return;
+        ArrayList<PooledQueryConnection> opened = new ArrayList<>();
+        for (int index = 1; index <= size; index++) {
+            PooledQueryConnection connection = open(index, host, port, floodRate);
+            if (connection != null)
+                opened.add(connection);
+        }
+        connections = Collections.unmodifiableList(opened);
+        frameworkContainer.getFrameworkLogger().printInfo("Opened " + opened.size() + " of " + size + " pooled query connections.");
+    }
+
+    private PooledQueryConnection open(int index, String host, int port, TS3Query.FloodRate floodRate) {
+        PooledQueryConnection[] holder = new PooledQueryConnection[1];
+        TS3Config config = new TS3Config();
+        config.setHost(host);
+        config.setQueryPort(port);
+        config.setFloodRate(floodRate);
+        config.setReconnectStrategy(ReconnectStrategy.exponentialBackoff());
+        config.setConnectionHandler(new ConnectionHandler() {
+            @Override
+            public void onConnect(TS3Query ts3Query) {
+                prepare(holder[0], ts3Query, index);
+            }
+
+            @Override
+            public void onDisconnect(TS3Query ts3Query) {
+                if (holder[0] != null)
+                    holder[0].setReady(false);
+                frameworkContainer.getFrameworkLogger().printWarn("Pooled query connection #" + index + " lost, reconnecting...");
+            }
+        });
+
+        TS3Query query = new TS3Query(config);
+        holder[0] = new PooledQueryConnection(index, query, frameworkContainer.getFrameworkFloodController());
+        try {
+            query.connect();
+        } catch (Exception e) {
+            frameworkContainer.getFrameworkLogger().printWarn("Failed to open pooled query connection #" + index + ": " + e.getMessage());
+            query.exit();
+            return null;
+        }
+        return holder[0];
+    }
+
+    /**
+     * Signs in and selects the virtual server, called for the initial connect and every reconnect.
+     */
+    private void prepare(PooledQueryConnection connection, TS3Query query, int index) {
+        Config mainConfig = frameworkContainer.getConfig(new ConfigMain(frameworkContainer.getFrameworkLogger()).getPath());
+        try {
+            TS3Api api = connection != null ? connection.getApi() : query.getApi();
+            api.login(mainConfig.getProperty("queryUser"), mainConfig.getProperty("queryPassword"));
+            api.selectVirtualServerById(frameworkContainer.getVirtualServerId());
+            if (connection != null)
+                connection.setReady(true);
+            frameworkContainer.getFrameworkLogger().printDebug("Pooled query connection #" + index + " ready.");
+        } catch (Exception e) {
+            frameworkContainer.getFrameworkLogger().printWarn("Failed to prepare pooled query connection #" + index + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes all pooled connections.
+     */
+    public synchronized void stop() {
+        for (PooledQueryConnection connection : connections) {
+            connection.setReady(false);
+            connection.getQuery().exit();
+        }
+        connections = Collections.emptyList();
+    }
+
+    /**
+     * Runs a query on the next pooled connection and records its latency.
+     *
+     * The query must not change the state of the connection itself (e.g. select another virtual server or
+     * register for events), as following queries may run on the same connection. With an adaptive flood rate
+     * every command the query sends is paced by the flood controller on its own.
+     *
+     * @param query Function issuing the query.
+     * @param <T>   Type of the result.
+     * @return The result of the query.
+     */
+    public <T> T execute(Function<TS3Api, T> query) {
+        PooledQueryConnection connection = pick();
+        if (connection == null)
+            return query.apply(frameworkContainer.getPluginApi());
+        long start = System.nanoTime();
+        connection.begin();
+        boolean success = false;
+        try {
+            T result = query.apply(connection.getApi());
+            success = true;
+            return result;
+        } finally {
+            connection.end(start, success);
+        }
+    }
+
+    private PooledQueryConnection pick() {
+        List<PooledQueryConnection> current = connections;
+        int count = current.size();
+        if (count == 0)
+            return null;
+        if (balancing == Balancing.LEAST_LOADED) {
+            PooledQueryConnection best = null;
+            for (PooledQueryConnection connection : current) {
+                if (connection.isReady() && (best == null || connection.getInFlight() < best.getInFlight()))
+                    best = connection;
+            }
+            return best;
+        }
+        int start = next.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            PooledQueryConnection connection = current.get((start + i) % count);
+            if (connection.isReady())
+                return connection;
+        }
+        return null;
+    }
+
+    /**
+     * <p>Getter for the field <code>connections</code>.</p>
+     *
+     * @return All opened pooled connections.
+     */
+    public List<PooledQueryConnection> getConnections() {
+        return connections;
+    }
+
+    /**
+     * <p>Getter for the field <code>balancing</code>.</p>
+     *
+     * @return The strategy used to pick connections.
+     */
+    public Balancing getBalancing() {
+        return balancing;
+    }
+
+}
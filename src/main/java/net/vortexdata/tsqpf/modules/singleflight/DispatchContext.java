@@ -0,0 +1,123 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.singleflight;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Memo of read query results shared by all plugins handling the same event.
+ *
+ * A context is opened when an event enters the framework and every plugin the event is handed to holds a
+ * reference until its handler returned. While a handler runs, the context is bound to its thread and the
+ * {@link SingleFlightApi} answers repeated read queries from it. Once the last reference is released the memo
+ * is dropped, so results never outlive the dispatch of their event.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class DispatchContext {
+
+    private static final ThreadLocal<DispatchContext> CURRENT = new ThreadLocal<>();
+
+    private final ConcurrentHashMap<String, Object> memo = new ConcurrentHashMap<>();
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile boolean closed = false;
+
+    /**
+     * Opens a new context, held by the caller until it calls {@link #release()}.
+     *
+     * @return The new context.
+     */
+    public static DispatchContext open() {
+        return new DispatchContext();
+    }
+
+    /**
+     * <p>current.</p>
+     *
+     * @return The context bound to the calling thread or null if it does not handle an event.
+     */
+    public static DispatchContext current() {
+        DispatchContext context = CURRENT.get();
+        return context != null && !context.closed ? context : null;
+    }
+
+    /**
+     * Binds a context to the calling thread.
+     *
+     * @param context Context to bind, may be null.
+     * @return The previously bound context, to be passed to {@link #unbind(DispatchContext)}.
+     */
+    public static DispatchContext bind(DispatchContext context) {
+        DispatchContext previous = CURRENT.get();
+        CURRENT.set(context);
+        return previous;
+    }
+
+    /**
+     * Restores the context bound before {@link #bind(DispatchContext)}.
+     *
+     * @param previous The previously bound context.
+     */
+    public static void unbind(DispatchContext previous) {
+        if (previous == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(previous);
+    }
+
+    /**
+     * Adds a reference, e.g. for a plugin the event is handed to.
+     *
+     * @return This context.
+     */
+    public DispatchContext retain() {
+        references.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * Removes a reference, the memo is dropped once no reference is left.
+     */
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            closed = true;
+            memo.clear();
+        }
+    }
+
+    Object get(String key) {
+        return memo.get(key);
+    }
+
+    void put(String key, Object result) {
+        if (!closed && result != null)
+            memo.put(key, result);
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.singleflight;
+
+import com.github.theholywaffle.teamspeak3.TS3ApiAsync;
+import com.github.theholywaffle.teamspeak3.api.wrapper.*;
+import net.vortexdata.tsqpf.modules.flood.AdaptiveFloodController;
+import net.vortexdata.tsqpf.modules.flood.PacedApi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Api handed to plugins that merges identical read queries running at the same time.
+ *
+ * The first caller of a read query sends it, every caller asking for the same data while it is in flight waits
+ * for that request and receives its result instead of sending its own. Beyond that, results are only kept in
+ * the {@link DispatchContext} of the event being handled, so every other caller arriving after the response
+ * sends a new query. Lists are copied for every caller, all other methods behave exactly like {@link PacedApi}.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class SingleFlightApi extends PacedApi {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+    private final AtomicLong memoHits = new AtomicLong();
+    private final boolean memoization;
+
+    /**
+     * <p>Constructor for SingleFlightApi.</p>
+     *
+     * @param asyncApi    The async api of the connection queries are sent on.
+     * @param memoization Whether results are reused for the rest of the current events dispatch.
+     * @param floodController Controller pacing the queries actually sent, may be null.
+     */
+    public SingleFlightApi(TS3ApiAsync asyncApi, boolean memoization, AdaptiveFloodController floodController) {
+        super(asyncApi, floodController);
+        this.memoization = memoization;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T flight(String key, Supplier<T> query) {
+        DispatchContext context = memoization ? DispatchContext.current() : null;
+        if (context == null)
+            return share(key, query);
+        Object memoized = context.get(key);
+        if (memoized != null) {
+            memoHits.incrementAndGet();
+            return (T) memoized;
+        }
+        T result = share(key, query);
+        context.put(key, result);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T share(String key, Supplier<T> query) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            shared.incrementAndGet();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                throw e;
+            }
+        }
+
+        sent.incrementAndGet();
+        try {
+            T result = query.get();
+            flight.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Joiners wait on the flight, so it has to complete whatever the query throws.
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private <T> List<T> flightList(String key, Supplier<List<T>> query) {
+        return new ArrayList<>(flight(key, query));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ClientInfo getClientInfo(int clientId) {
+        return flight("clientinfo " + clientId, () -> super.getClientInfo(clientId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ClientInfo getClientByUId(String clientUId) {
+        return flight("clientgetidsbyuid " + clientUId, () -> super.getClientByUId(clientUId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DatabaseClientInfo getDatabaseClientInfo(int clientDBId) {
+        return flight("clientdbinfo " + clientDBId, () -> super.getDatabaseClientInfo(clientDBId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DatabaseClientInfo getDatabaseClientByUId(String clientUId) {
+        return flight("clientgetdbidfromuid " + clientUId, () -> super.getDatabaseClientByUId(clientUId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Client> getClients() {
+        return flightList("clientlist", super::getClients);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Channel> getChannels() {
+        return flightList("channellist", super::getChannels);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ChannelInfo getChannelInfo(int channelId) {
+        return flight("channelinfo " + channelId, () -> super.getChannelInfo(channelId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public VirtualServerInfo getServerInfo() {
+        return flight("serverinfo", super::getServerInfo);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ServerGroup> getServerGroups() {
+        return flightList("servergrouplist", super::getServerGroups);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ServerGroup> getServerGroupsByClientId(int clientDatabaseId) {
+        return flightList("servergroupsbyclientid " + clientDatabaseId, () -> super.getServerGroupsByClientId(clientDatabaseId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<ChannelGroup> getChannelGroups() {
+        return flightList("channelgrouplist", super::getChannelGroups);
+    }
+
+    /**
+     * <p>getSent.</p>
+     *
+     * @return Amount of read queries actually sent.
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * <p>getShared.</p>
+     *
+     * @return Amount of read queries answered by a query already in flight.
+     */
+    public long getShared() {
+        return shared.get();
+    }
+
+    /**
+     * <p>getMemoHits.</p>
+     *
+     * @return Amount of read queries answered from the memo of the event being handled.
+     */
+    public long getMemoHits() {
+        return memoHits.get();
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.watchdog;
+
+import net.vortexdata.tsqpf.framework.FrameworkContainer;
+import net.vortexdata.tsqpf.framework.VirtualServer;
+import net.vortexdata.tsqpf.plugins.HandlerInvocation;
+import net.vortexdata.tsqpf.plugins.PluginContainer;
+import net.vortexdata.tsqpf.plugins.PluginManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches running plugin event handlers and reports those exceeding the configured deadline.
+ *
+ * Handlers still running are sampled on every poll, handlers that exceeded the deadline but returned between two
+ * polls are reported by the plugin container. A plugin exceeding the deadline repeatedly is handled according to
+ * the {@link WatchdogPolicy}: it is either only logged, moved to its own event queue that drops events once full
+ * so it no longer blocks dispatch, or disabled. Handlers that are already stuck can not be interrupted safely and
+ * keep running, a plugin being disabled stops receiving events at once but <code>onDisable()</code> is only called
+ * once its last handler returned.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class PluginWatchdog implements Runnable {
+
+    private static final int STACK_SAMPLE_DEPTH = 12;
+
+    private final FrameworkContainer frameworkContainer;
+    private final WatchdogPolicy policy;
+    private final long deadlineNanos;
+    private final int strikeLimit;
+    private final long pollMillis;
+    private final LinkedHashMap<PluginContainer, PluginManager> detached = new LinkedHashMap<>();
+    private Thread thread;
+    private volatile boolean running = false;
+
+    /**
+     * <p>Constructor for PluginWatchdog.</p>
+     *
+     * @param frameworkContainer a {@link net.vortexdata.tsqpf.framework.FrameworkContainer} object.
+     * @param policy             Action taken once a plugin reaches the strike limit.
+     * @param deadlineMillis     Maximum time in milliseconds a handler may run.
+     * @param strikeLimit        Amount of deadline violations before the policy is applied.
+     */
+    public PluginWatchdog(FrameworkContainer frameworkContainer, WatchdogPolicy policy, long deadlineMillis, int strikeLimit) {
+        this.frameworkContainer = frameworkContainer;
+        this.policy = policy;
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, deadlineMillis));
+        this.strikeLimit = Math.max(1, strikeLimit);
+        this.pollMillis = Math.max(10, deadlineMillis / 4);
+    }
+
+    /**
+     * Starts the watchdog thread.
+     */
+    public void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this, "PluginWatchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the watchdog thread.
+     */
+    public void stop() {
+        running = false;
+        if (thread != null)
+            thread.interrupt();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                break;
+            }
+            disableIdle();
+            inspect(frameworkContainer.getFrameworkPluginManager());
+            for (VirtualServer virtualServer : frameworkContainer.getVirtualServers())
+                inspect(virtualServer.getFrameworkContainer().getFrameworkPluginManager());
+        }
+    }
+
+    private void disableIdle() {
+        Iterator<Map.Entry<PluginContainer, PluginManager>> iterator = detached.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<PluginContainer, PluginManager> entry = iterator.next();
+            if (!entry.getKey().isIdle())
+                continue;
+            iterator.remove();
+            try {
+                entry.getValue().disableDetached(entry.getKey());
+                frameworkContainer.getFrameworkLogger().printInfo("Plugin " + entry.getKey().getPluginName() + " has been disabled.");
+            } catch (Exception e) {
+                frameworkContainer.getFrameworkLogger().printError("Plugin " + entry.getKey().getPluginName() + " failed to disable: " + e.getMessage());
+            }
+        }
+    }
+
+    private void inspect(PluginManager pluginManager) {
+        if (pluginManager == null)
+            return;
+        for (PluginContainer pc : pluginManager.getPlugins()) {
+            pc.setHandlerDeadline(deadlineNanos);
+            HandlerInvocation finished;
+            while ((finished = pc.pollOverrunInvocation()) != null)
+                report(pluginManager, pc, finished);
+            for (HandlerInvocation invocation : pc.pollRunningOverruns(deadlineNanos))
+                report(pluginManager, pc, invocation);
+        }
+    }
+
+    private void report(PluginManager pluginManager, PluginContainer pc, HandlerInvocation invocation) {
+        String handler = invocation.getEventType() == null ? "event handler" : invocation.getEventType().getHandlerName();
+        int strikes = pc.addWatchdogStrike();
+        if (invocation.isFinished()) {
+            frameworkContainer.getFrameworkLogger().printWarn("Plugin " + pc.getPluginName() + " ran " + handler + " for "
+                    + TimeUnit.NANOSECONDS.toMillis(invocation.getElapsedNanos()) + " milliseconds, exceeding its deadline of "
+                    + TimeUnit.NANOSECONDS.toMillis(deadlineNanos) + " milliseconds (strike " + strikes + "/" + strikeLimit + ").");
+        } else {
+            StringBuilder sample = new StringBuilder();
+            StackTraceElement[] stackTrace = invocation.getThread().getStackTrace();
+            for (int i = 0; i < Math.min(STACK_SAMPLE_DEPTH, stackTrace.length); i++)
+                sample.append(System.lineSeparator()).append("\tat ").append(stackTrace[i]);
+            frameworkContainer.getFrameworkLogger().printWarn("Plugin " + pc.getPluginName() + " is running " + handler
+                    + " for more than " + TimeUnit.NANOSECONDS.toMillis(deadlineNanos) + " milliseconds on thread "
+                    + invocation.getThread().getName() + " (strike " + strikes + "/" + strikeLimit + ")." + sample);
+        }
+
+        if (strikes < strikeLimit)
+            return;
+        pc.resetWatchdogStrikes();
+
+        if (policy == WatchdogPolicy.DEGRADE) {
+            if (pluginManager.degradePlugin(pc))
+                frameworkContainer.getFrameworkLogger().printWarn("Plugin " + pc.getPluginName() + " has been moved to its own event queue as it repeatedly exceeded its deadline.");
+        } else if (policy == WatchdogPolicy.DISABLE) {
+            PluginContainer removed = pluginManager.detachPlugin(pc.getPluginName());
+            if (removed == null)
+                return;
+            frameworkContainer.getFrameworkLogger().printWarn("Disabling plugin " + pc.getPluginName() + " as it repeatedly exceeded its deadline, it is disabled once its running handlers returned.");
+            detached.put(removed, pluginManager);
+            disableIdle();
+        }
+    }
+
+}
@@ -0,0 +1,234 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.plugins;
+
+import net.vortexdata.tsqpf.framework.FrameworkContainer;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Closes the class loaders of unloaded plugins and checks that they are garbage collected afterwards.
+ *
+ * A closed loader is only referenced weakly. If it is still reachable once the check delay passed, something
+ * still holds a class or instance of the old plugin, e.g. a thread it started, a static field of another
+ * plugin or a listener it registered somewhere, and a leak report is logged.
+ *
+ * A loader is only closed once the plugin it belonged to has no event handler running anymore, as closing it
+ * under a running handler would make every class the handler did not load yet fail to load.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class ClassLoaderLeakDetector {
+
+    private static final long IDLE_POLL_MILLIS = 500;
+
+    private final FrameworkContainer frameworkContainer;
+    private final long checkDelaySeconds;
+    private final CopyOnWriteArrayList<DisposedLoader> pending = new CopyOnWriteArrayList<>();
+    private final Set<ClassLoader> disposing = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private ScheduledExecutorService scheduler;
+    private boolean stopped = false;
+
+    /**
+     * <p>Constructor for ClassLoaderLeakDetector.</p>
+     *
+     * @param frameworkContainer a {@link net.vortexdata.tsqpf.framework.FrameworkContainer} object.
+     * @param checkDelaySeconds  Seconds after which a closed loader has to be collected.
+     */
+    public ClassLoaderLeakDetector(FrameworkContainer frameworkContainer, long checkDelaySeconds) {
+        this.frameworkContainer = frameworkContainer;
+        this.checkDelaySeconds = Math.max(1, checkDelaySeconds);
+    }
+
+    /**
+     * Closes the class loader of an unloaded plugin and schedules the check whether it was collected.
+     *
+     * @param pluginName Name of the plugin the loader belonged to.
+     * @param loader     The loader to close. It must no longer be used by any loaded plugin.
+     */
+    public void dispose(String pluginName, URLClassLoader loader) {
+        dispose(pluginName, loader, () -> true);
+    }
+
+    /**
+     * Closes the class loader of an unloaded plugin once its handlers returned, then schedules the check whether
+     * it was collected. Disposing a loader that is already being disposed does nothing.
+     *
+     * @param pluginName Name of the plugin the loader belonged to.
+     * @param loader     The loader to close. It must no longer be used by any loaded plugin.
+     * @param idle       Returns true once no handler of the unloaded plugin runs anymore.
+     */
+    public void dispose(String pluginName, URLClassLoader loader, BooleanSupplier idle) {
+        if (isDisposed(loader) || !disposing.add(loader))
+            return;
+        if (!idle.getAsBoolean())
+            frameworkContainer.getFrameworkLogger().printDebug("Handlers of unloaded plugin " + pluginName + " are still running, closing its class loader once they returned.");
+        closeWhenIdle(pluginName, loader, idle);
+    }
+
+    private void closeWhenIdle(String pluginName, URLClassLoader loader, BooleanSupplier idle) {
+        if (idle.getAsBoolean())
+            close(pluginName, loader);
+        else
+            schedule(() -> closeWhenIdle(pluginName, loader, idle), IDLE_POLL_MILLIS);
+    }
+
+    private boolean isDisposed(ClassLoader loader) {
+        for (DisposedLoader disposed : pending) {
+            if (disposed.loader.get() == loader)
+                return true;
+        }
+        return false;
+    }
+
+    private void close(String pluginName, URLClassLoader loader) {
+        try {
+            loader.close();
+        } catch (IOException e) {
+            frameworkContainer.getFrameworkLogger().printWarn("Failed to close class loader of plugin " + pluginName + ": " + e.getMessage());
+        }
+        pending.add(new DisposedLoader(pluginName, loader));
+        disposing.remove(loader);
+        schedule(this::check, TimeUnit.SECONDS.toMillis(checkDelaySeconds));
+    }
+
+    private synchronized void schedule(Runnable task, long delayMillis) {
+        if (stopped)
+            return;
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ClassLoaderLeakDetector");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        try {
+            scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shut down in the meantime
+        }
+    }
+
+    /**
+     * Requests a garbage collection and reports every closed loader that is overdue and still reachable.
+     * Collected loaders are forgotten.
+     *
+     * @return Leak reports of all overdue loaders that are still reachable.
+     */
+    public List<String> check() {
+        System.gc();
+        long now = System.currentTimeMillis();
+        ArrayList<String> leaks = new ArrayList<>();
+        Iterator<DisposedLoader> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            DisposedLoader disposed = iterator.next();
+            ClassLoader loader = disposed.loader.get();
+            if (loader == null) {
+                pending.remove(disposed);
+                frameworkContainer.getFrameworkLogger().printDebug("Class loader of unloaded plugin " + disposed.pluginName + " was garbage collected.");
+                continue;
+            }
+            if (now - disposed.disposedAt < TimeUnit.SECONDS.toMillis(checkDelaySeconds))
+                continue;
+
+            String report = describeLeak(disposed, loader, now);
+            leaks.add(report);
+            if (!disposed.reported) {
+                disposed.reported = true;
+                frameworkContainer.getFrameworkLogger().printWarn(report);
+            }
+        }
+        return leaks;
+    }
+
+    /**
+     * <p>getPendingCount.</p>
+     *
+     * @return Amount of closed loaders that were not collected yet.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Stops the scheduled checks.
+     */
+    public synchronized void shutdown() {
+        stopped = true;
+        if (scheduler != null)
+            scheduler.shutdownNow();
+    }
+
+    private String describeLeak(DisposedLoader disposed, ClassLoader loader, long now) {
+        StringBuilder report = new StringBuilder("Class loader of unloaded plugin ").append(disposed.pluginName)
+                .append(" is still reachable ").append(TimeUnit.MILLISECONDS.toSeconds(now - disposed.disposedAt))
+                .append(" seconds after it was closed, its classes can not be unloaded.");
+        ArrayList<String> threads = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getContextClassLoader() == loader || thread.getClass().getClassLoader() == loader)
+                threads.add(thread.getName());
+        }
+        if (!threads.isEmpty())
+            report.append(" Threads still using it: ").append(String.join(", ", threads)).append('.');
+        else
+            report.append(" Check for threads, timers or listeners it did not stop in onDisable() and for other plugins referencing its classes.");
+        return report.toString();
+    }
+
+    /**
+     * A closed class loader waiting to be collected.
+     */
+    private static final class DisposedLoader {
+
+        private final String pluginName;
+        private final WeakReference<ClassLoader> loader;
+        private final long disposedAt = System.currentTimeMillis();
+        private volatile boolean reported = false;
+
+        private DisposedLoader(String pluginName, ClassLoader loader) {
+            this.pluginName = pluginName;
+            this.loader = new WeakReference<>(loader);
+        }
+
+    }
+
+}
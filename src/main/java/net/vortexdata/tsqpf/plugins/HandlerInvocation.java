@@ -0,0 +1,104 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.plugins;
+
+import net.vortexdata.tsqpf.modules.eventhandler.EventType;
+
+/**
+ * A running or finished event handler call of a plugin.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class HandlerInvocation {
+
+    private final Thread thread;
+    private final EventType eventType;
+    private final long startNanos;
+    private volatile long endNanos = 0;
+    private volatile boolean finished = false;
+
+    /**
+     * <p>Constructor for HandlerInvocation.</p>
+     *
+     * @param thread     Thread running the handler.
+     * @param eventType  Type of the handled event, may be null.
+     * @param startNanos {@link System#nanoTime()} the handler was started at.
+     */
+    public HandlerInvocation(Thread thread, EventType eventType, long startNanos) {
+        this.thread = thread;
+        this.eventType = eventType;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * <p>Getter for the field <code>thread</code>.</p>
+     *
+     * @return Thread running the handler.
+     */
+    public Thread getThread() {
+        return thread;
+    }
+
+    /**
+     * <p>Getter for the field <code>eventType</code>.</p>
+     *
+     * @return Type of the handled event, may be null.
+     */
+    public EventType getEventType() {
+        return eventType;
+    }
+
+    /**
+     * <p>getElapsedNanos.</p>
+     *
+     * @return Nanoseconds the handler has been running for, or took if it finished.
+     */
+    public long getElapsedNanos() {
+        return (finished ? endNanos : System.nanoTime()) - startNanos;
+    }
+
+    /**
+     * Marks the handler as returned.
+     *
+     * @param endNanos {@link System#nanoTime()} the handler returned at.
+     */
+    public void finish(long endNanos) {
+        this.endNanos = endNanos;
+        finished = true;
+    }
+
+    /**
+     * <p>isFinished.</p>
+     *
+     * @return True if the handler returned.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+}
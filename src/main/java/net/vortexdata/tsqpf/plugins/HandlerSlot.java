@@ -0,0 +1,206 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package net.vortexdata.tsqpf.plugins;
+
+import net.vortexdata.tsqpf.modules.eventhandler.EventType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the plugin event handlers running on one thread, so they can be watched without allocating anything
+ * per call.
+ *
+ * Every thread calling plugin handlers gets one slot with a few preallocated frames, one per nesting level, as a
+ * handler may dispatch events to plugins itself. A frame is identified by an id that is zero while it is unused
+ * and changes on every call, readers on other threads drop what they read if the id changed in the meantime.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+final class HandlerSlot {
+
+    private static final int INITIAL_FRAMES = 4;
+    private static final Set<HandlerSlot> slots = ConcurrentHashMap.newKeySet();
+    private static final ThreadLocal<HandlerSlot> current = ThreadLocal.withInitial(HandlerSlot::register);
+
+    private final Thread thread;
+    private volatile Frame[] frames = newFrames(0, INITIAL_FRAMES, new Frame[0]);
+    private int depth = 0;
+    private long nextId = 0;
+
+    private HandlerSlot(Thread thread) {
+        this.thread = thread;
+    }
+
+    private static HandlerSlot register() {
+        HandlerSlot slot = new HandlerSlot(Thread.currentThread());
+        slots.add(slot);
+        return slot;
+    }
+
+    private static Frame[] newFrames(int from, int to, Frame[] existing) {
+        Frame[] frames = Arrays.copyOf(existing, to);
+        for (int i = from; i < to; i++)
+            frames[i] = new Frame();
+        return frames;
+    }
+
+    /**
+     * <p>current.</p>
+     *
+     * @return The slot of the calling thread.
+     */
+    static HandlerSlot current() {
+        return current.get();
+    }
+
+    /**
+     * Records a handler call starting on the owning thread.
+     *
+     * @param plugin Plugin whose handler is called.
+     * @param type   Type of the handled event, may be null.
+     * @param start  {@link System#nanoTime()} the call started at.
+     * @return Frame of the call, to be passed to {@link #pop()} once it returned.
+     */
+    Frame push(PluginContainer plugin, EventType type, long start) {
+        Frame[] current = frames;
+        if (depth == current.length)
+            frames = current = newFrames(depth, depth * 2, current);
+        Frame frame = current[depth++];
+        frame.plugin = plugin;
+        frame.type = type;
+        frame.start = start;
+        frame.id = ++nextId;
+        return frame;
+    }
+
+    /**
+     * Records the innermost handler call of the owning thread as returned.
+     */
+    void pop() {
+        Frame frame = frames[--depth];
+        frame.id = 0;
+        frame.plugin = null;
+    }
+
+    /**
+     * Checks whether a plugin has a handler running on any thread but the calling one.
+     *
+     * @param plugin The plugin.
+     * @return True if a handler of the plugin is running.
+     */
+    static boolean isRunningElsewhere(PluginContainer plugin) {
+        Thread self = Thread.currentThread();
+        for (Iterator<HandlerSlot> iterator = slots.iterator(); iterator.hasNext(); ) {
+            HandlerSlot slot = iterator.next();
+            if (!slot.thread.isAlive()) {
+                iterator.remove();
+                continue;
+            }
+            if (slot.thread == self)
+                continue;
+            for (Frame frame : slot.frames) {
+                if (frame.id != 0 && frame.plugin == plugin)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reports the handler calls of a plugin that are still running past a deadline, each of them only once.
+     *
+     * @param plugin        The plugin.
+     * @param deadlineNanos Deadline in nanoseconds.
+     * @return The calls exceeding the deadline that were not reported before.
+     */
+    static List<HandlerInvocation> collectOverruns(PluginContainer plugin, long deadlineNanos) {
+        List<HandlerInvocation> overruns = Collections.emptyList();
+        long now = System.nanoTime();
+        for (HandlerSlot slot : slots) {
+            for (Frame frame : slot.frames) {
+                long id = frame.id;
+                if (id == 0 || frame.plugin != plugin)
+                    continue;
+                EventType type = frame.type;
+                long start = frame.start;
+                // The call returned and the frame may have been reused while it was read.
+                if (frame.id != id || now - start <= deadlineNanos || !frame.markReported(id))
+                    continue;
+                if (overruns.isEmpty())
+                    overruns = new ArrayList<>();
+                overruns.add(new HandlerInvocation(slot.thread, type, start));
+            }
+        }
+        return overruns;
+    }
+
+    /**
+     * One nesting level of handler calls on a thread.
+     */
+    static final class Frame {
+
+        private final AtomicLong reported = new AtomicLong();
+        private volatile long id;
+        private volatile PluginContainer plugin;
+        private volatile EventType type;
+        private volatile long start;
+
+        /**
+         * <p>Getter for the field <code>id</code>.</p>
+         *
+         * @return Id of the running call, zero if the frame is unused.
+         */
+        long getId() {
+            return id;
+        }
+
+        /**
+         * Marks a call as reported, so it is only reported once whether it is found running or after it returned.
+         *
+         * @param id Id of the call.
+         * @return True if the call has not been reported before.
+         */
+        boolean markReported(long id) {
+            long seen;
+            do {
+                seen = reported.get();
+                if (seen == id)
+                    return false;
+            } while (!reported.compareAndSet(seen, id));
+            return true;
+        }
+
+    }
+
+}
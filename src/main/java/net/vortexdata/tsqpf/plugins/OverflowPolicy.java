@@ -0,0 +1,56 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.plugins;
+
+/**
+ * Policies applied when a plugins event queue is full.
+ *
+ * @author Sandro Kierner
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public enum OverflowPolicy {
+
+    BLOCK, DROP_OLDEST, DROP_NEWEST;
+
+    /**
+     * Parses a config value like <code>block</code>, <code>dropOldest</code> or <code>dropNewest</code>.
+     *
+     * @param value Config value
+     * @return The matching policy or null if it could not be parsed.
+     */
+    public static OverflowPolicy parse(String value) {
+        if (value == null)
+            return null;
+        String normalized = value.replace("_", "").replace("-", "");
+        for (OverflowPolicy policy : values()) {
+            if (policy.name().replace("_", "").equalsIgnoreCase(normalized))
+                return policy;
+        }
+        return null;
+    }
+
+}
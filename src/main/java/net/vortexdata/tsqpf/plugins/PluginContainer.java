@@ -26,7 +26,20 @@
 package net.vortexdata.tsqpf.plugins;
 
 import com.amihaiemil.eoyaml.YamlMapping;
+import com.github.theholywaffle.teamspeak3.api.event.TS3Event;
+import net.vortexdata.tsqpf.commands.CommandInterface;
 import net.vortexdata.tsqpf.framework.Framework;
+import net.vortexdata.tsqpf.listeners.ChatCommandInterface;
+import net.vortexdata.tsqpf.modules.eventhandler.EventType;
+import net.vortexdata.tsqpf.modules.metrics.LatencyHistogram;
+import net.vortexdata.tsqpf.modules.singleflight.DispatchContext;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Wrapper class combining all plugin essentials like config, logger, api and co.
@@ -42,6 +55,18 @@ public class PluginContainer {
     private PluginLogger pluginLogger;
     private PluginConfig pluginConfig;
     private YamlMapping pluginYamlConfig;
+    private volatile PluginEventQueue eventQueue;
+    private EnumSet<EventType> subscriptions = EnumSet.allOf(EventType.class);
+    private int priority = 0;
+    private volatile boolean enabled = false;
+    private final LatencyHistogram[] eventLatency = new LatencyHistogram[EventType.values().length];
+    private final long loadedAt = System.currentTimeMillis();
+    private final ConcurrentLinkedQueue<HandlerInvocation> overrunInvocations = new ConcurrentLinkedQueue<>();
+    private volatile long handlerDeadlineNanos = 0;
+    private final AtomicInteger watchdogStrikes = new AtomicInteger();
+    private PluginDescriptor descriptor;
+    private final CopyOnWriteArrayList<ChatCommandInterface> chatCommands = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<CommandInterface> consoleCommands = new CopyOnWriteArrayList<>();
 
     /**
      * <p>Constructor for PluginContainer.</p>
@@ -55,6 +80,8 @@ public class PluginContainer {
         this.pluginName = pluginName;
         this.pluginYamlConfig = yamlConfig;
         pluginConfig = new PluginConfig(this.pluginName);
+        for (int i = 0; i < eventLatency.length; i++)
+            eventLatency[i] = new LatencyHistogram();
     }
 
     /**
@@ -67,6 +94,341 @@ public class PluginContainer {
         pluginLogger = new PluginLogger(_Framework, this);
     }
 
+    /**
+     * Sets the dispatch priority, plugins with a higher priority receive events first.
+     *
+     * @param priority Dispatch priority.
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * <p>Getter for the field <code>priority</code>.</p>
+     *
+     * @return Dispatch priority.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the events this plugin should receive.
+     *
+     * @param subscriptions Subscribed event types.
+     */
+    public void setSubscriptions(EnumSet<EventType> subscriptions) {
+        this.subscriptions = EnumSet.copyOf(subscriptions);
+    }
+
+    /**
+     * <p>Getter for the field <code>subscriptions</code>.</p>
+     *
+     * @return a copy of all subscribed event types.
+     */
+    public EnumSet<EventType> getSubscriptions() {
+        return EnumSet.copyOf(subscriptions);
+    }
+
+    /**
+     * <p>isSubscribed.</p>
+     *
+     * @param type Event type to check.
+     * @return true if the plugin receives events of this type.
+     */
+    public boolean isSubscribed(EventType type) {
+        return subscriptions.contains(type);
+    }
+
+    /**
+     * Marks the plugin as enabled once its <code>onEnable()</code> returned, only enabled plugins receive events.
+     *
+     * @param enabled True if the plugin is enabled.
+     */
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * <p>isEnabled.</p>
+     *
+     * @return True if the plugin was enabled successfully and receives events.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Hands an event to the plugin, either directly or through its event queue.
+     *
+     * @param event Event to deliver.
+     */
+    public void deliver(TS3Event event) {
+        deliver(event, null);
+    }
+
+    /**
+     * Hands an event to the plugin, either directly or through its event queue.
+     *
+     * @param event   Event to deliver.
+     * @param context Dispatch context of the event or null. It must be retained for this plugin and is
+     *                released once the plugin handled the event or the event was dropped.
+     */
+    public void deliver(TS3Event event, DispatchContext context) {
+        PluginEventQueue queue = eventQueue;
+        if (queue != null)
+            queue.offer(event, context);
+        else
+            invoke(event, context);
+    }
+
+    /**
+     * Fires an event at the plugin on the calling thread.
+     *
+     * @param event Event to fire.
+     */
+    public void invoke(TS3Event event) {
+        invoke(event, null);
+    }
+
+    /**
+     * Fires an event at the plugin on the calling thread with its dispatch context bound, then releases
+     * the context.
+     *
+     * @param event   Event to fire.
+     * @param context Dispatch context of the event or null.
+     */
+    public void invoke(TS3Event event, DispatchContext context) {
+        EventType type = EventType.of(event);
+        long start = System.nanoTime();
+        HandlerSlot slot = HandlerSlot.current();
+        HandlerSlot.Frame frame = slot.push(this, type, start);
+        long id = frame.getId();
+        DispatchContext previous = DispatchContext.bind(context);
+        try {
+            event.fire(teamspeakPlugin);
+        } catch (Exception e) {
+            if (pluginLogger != null)
+                pluginLogger.printError("Unhandled exception in event handler (" + event.getClass().getSimpleName() + "): " + e.getMessage());
+        } finally {
+            DispatchContext.unbind(previous);
+            if (context != null)
+                context.release();
+            slot.pop();
+            long end = System.nanoTime();
+            if (type != null)
+                eventLatency[type.ordinal()].record(end - start);
+            long deadline = handlerDeadlineNanos;
+            // Handlers finishing between two watchdog polls were never seen running, report them now.
+            if (deadline > 0 && end - start > deadline && frame.markReported(id)) {
+                HandlerInvocation invocation = new HandlerInvocation(Thread.currentThread(), type, start);
+                invocation.finish(end);
+                overrunInvocations.add(invocation);
+            }
+        }
+    }
+
+    /**
+     * Returns the handler latency of an event type in nanoseconds.
+     *
+     * @param type Event type.
+     * @return Latency histogram of the event type.
+     */
+    public LatencyHistogram getEventLatency(EventType type) {
+        return eventLatency[type.ordinal()];
+    }
+
+    /**
+     * Takes the event handler calls still running past a deadline that were not reported before.
+     *
+     * @param deadlineNanos Deadline in nanoseconds.
+     * @return The running calls exceeding the deadline.
+     */
+    public List<HandlerInvocation> pollRunningOverruns(long deadlineNanos) {
+        return HandlerSlot.collectOverruns(this, deadlineNanos);
+    }
+
+    /**
+     * Sets the deadline handler calls are checked against once they returned.
+     *
+     * @param deadlineNanos Deadline in nanoseconds, zero to not check returned calls.
+     */
+    public void setHandlerDeadline(long deadlineNanos) {
+        this.handlerDeadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Takes the next handler call that returned after exceeding the deadline and was not reported while it ran.
+     *
+     * @return The finished call or null if there is none.
+     */
+    public HandlerInvocation pollOverrunInvocation() {
+        return overrunInvocations.poll();
+    }
+
+    /**
+     * Checks whether no event handler of the plugin is running on another thread.
+     *
+     * @return True if no handler call is running.
+     */
+    public boolean isIdle() {
+        return !HandlerSlot.isRunningElsewhere(this);
+    }
+
+    /**
+     * Waits until no event handler of the plugin is running on another thread.
+     *
+     * @param timeoutMillis Maximum time to wait in milliseconds.
+     * @return False if a handler is still running.
+     */
+    public boolean awaitIdle(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!isIdle()) {
+            if (System.nanoTime() - deadline >= 0)
+                return false;
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts a deadline violation detected by the watchdog.
+     *
+     * @return Amount of violations since the last reset.
+     */
+    public int addWatchdogStrike() {
+        return watchdogStrikes.incrementAndGet();
+    }
+
+    /**
+     * Resets the deadline violation count.
+     */
+    public void resetWatchdogStrikes() {
+        watchdogStrikes.set(0);
+    }
+
+    /**
+     * <p>Getter for the field <code>loadedAt</code>.</p>
+     *
+     * @return Time the plugin was loaded at in milliseconds since epoch.
+     */
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * Sets the descriptor the plugin was loaded from.
+     *
+     * @param descriptor Descriptor of the plugin jar.
+     */
+    public void setDescriptor(PluginDescriptor descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * <p>Getter for the field <code>descriptor</code>.</p>
+     *
+     * @return Descriptor the plugin was loaded from or null if it was not loaded from a jar.
+     */
+    public PluginDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Remembers a chat command registered by the plugin, so it can be removed once the plugin is unloaded.
+     *
+     * @param cmd The registered command.
+     */
+    public void addChatCommand(ChatCommandInterface cmd) {
+        chatCommands.add(cmd);
+    }
+
+    /**
+     * Forgets a chat command the plugin removed itself.
+     *
+     * @param cmd The removed command.
+     */
+    public void removeChatCommand(ChatCommandInterface cmd) {
+        chatCommands.removeIf(registered -> registered == cmd);
+    }
+
+    /**
+     * <p>Getter for the field <code>chatCommands</code>.</p>
+     *
+     * @return Chat commands registered by the plugin.
+     */
+    public List<ChatCommandInterface> getChatCommands() {
+        return chatCommands;
+    }
+
+    /**
+     * Remembers a console command registered by the plugin, so it can be removed once the plugin is unloaded.
+     *
+     * @param cmd The registered command.
+     */
+    public void addConsoleCommand(CommandInterface cmd) {
+        consoleCommands.add(cmd);
+    }
+
+    /**
+     * <p>Getter for the field <code>consoleCommands</code>.</p>
+     *
+     * @return Console commands registered by the plugin.
+     */
+    public List<CommandInterface> getConsoleCommands() {
+        return consoleCommands;
+    }
+
+    /**
+     * Starts delivering events through a bounded queue with its own worker.
+     *
+     * @param capacity       Maximum amount of pending events.
+     * @param overflowPolicy Policy applied if the queue is full.
+     */
+    public void startEventQueue(int capacity, OverflowPolicy overflowPolicy) {
+        if (eventQueue != null) return;
+        PluginEventQueue queue = new PluginEventQueue(this, capacity, overflowPolicy);
+        queue.start();
+        eventQueue = queue;
+    }
+
+    /**
+     * Stops the event queue and waits for a running handler to return, further events are delivered directly.
+     *
+     * @return false if the queue worker is still running a handler.
+     */
+    public boolean stopEventQueue() {
+        return stopEventQueue(PluginEventQueue.STOP_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Stops the event queue, further events are delivered directly.
+     *
+     * @param timeoutMillis Time in milliseconds to wait for a running handler, zero to return at once.
+     * @return false if the queue worker is still running a handler.
+     */
+    public boolean stopEventQueue(long timeoutMillis) {
+        PluginEventQueue queue = eventQueue;
+        eventQueue = null;
+        if (queue != null)
+            return queue.stop(timeoutMillis);
+        return true;
+    }
+
+    /**
+     * <p>Getter for the field <code>eventQueue</code>.</p>
+     *
+     * @return The plugins event queue or null if events are delivered directly.
+     */
+    public PluginEventQueue getEventQueue() {
+        return eventQueue;
+    }
+
     /**
      * Returns the plugin interface
      *
@@ -77,11 +439,14 @@ public class PluginContainer {
     }
 
     /**
-     * <p>Getter for the field <code>pluginYamlConfig</code>.</p>
+     * Returns the plugins plugin.yml. If the plugin was loaded from cached metadata, the plugin.yml is parsed
+     * on the first call.
      *
      * @return a {@link com.amihaiemil.eoyaml.YamlMapping} object.
      */
     public YamlMapping getPluginYamlConfig() {
+        if (pluginYamlConfig == null && descriptor != null)
+            return descriptor.getYamlMapping();
         return this.pluginYamlConfig;
     }
     /**
@@ -0,0 +1,341 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.plugins;
+
+import com.amihaiemil.eoyaml.Yaml;
+import com.amihaiemil.eoyaml.YamlMapping;
+import com.amihaiemil.eoyaml.YamlSequence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Metadata read from a plugin jar before the plugin is registered, together with the time each load stage took.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class PluginDescriptor {
+
+    private final File file;
+    private final URLClassLoader classLoader;
+    private final String name;
+    private final String main;
+    private final String version;
+    private final String apiVersion;
+    private final List<String> dependencies;
+    private final List<String> events;
+    private final String priority;
+    private final boolean cached;
+    private final long readNanos;
+    private volatile YamlMapping yamlMapping;
+    private Class<?> mainClass;
+    private TeamspeakPlugin plugin;
+    private long classLoadNanos;
+    private volatile long enableNanos;
+    private volatile int wave = -1;
+
+    /**
+     * Creates a descriptor from a parsed plugin.yml.
+     *
+     * @param file        The plugin jar.
+     * @param classLoader Class loader of the jar.
+     * @param yamlMapping The plugins plugin.yml.
+     * @param readNanos   Nanoseconds it took to open the jar and parse its plugin.yml.
+     */
+    public PluginDescriptor(File file, URLClassLoader classLoader, YamlMapping yamlMapping, long readNanos) {
+        this(file, classLoader, yamlMapping.string("name"), yamlMapping.string("main"), yamlMapping.string("version"),
+                yamlMapping.string("api-version"), readDependencies(yamlMapping), readEvents(yamlMapping),
+                yamlMapping.string("priority"), false, readNanos);
+        this.yamlMapping = yamlMapping;
+    }
+
+    /**
+     * Creates a descriptor from previously parsed metadata, the plugin.yml is only parsed once it is requested.
+     *
+     * @param file         The plugin jar.
+     * @param classLoader  Class loader of the jar.
+     * @param name         The plugins name.
+     * @param main         Fully qualified name of the main class.
+     * @param version      The plugins version.
+     * @param apiVersion   The framework api version the plugin was built for, may be null.
+     * @param dependencies Names of the plugins that have to be enabled first, may be null.
+     * @param events       Declared event subscriptions or null if none are declared.
+     * @param priority     Declared dispatch priority, may be null.
+     * @param cached       True if the metadata was read from the {@link PluginMetadataCache}.
+     * @param readNanos    Nanoseconds it took to read the metadata.
+     */
+    PluginDescriptor(File file, URLClassLoader classLoader, String name, String main, String version, String apiVersion,
+                     List<String> dependencies, List<String> events, String priority, boolean cached, long readNanos) {
+        this.file = file;
+        this.classLoader = classLoader;
+        this.name = name;
+        this.main = main;
+        this.version = version;
+        this.apiVersion = apiVersion;
+        this.dependencies = dependencies == null ? Collections.<String>emptyList() : Collections.unmodifiableList(new ArrayList<>(dependencies));
+        this.events = events == null ? null : Collections.unmodifiableList(new ArrayList<>(events));
+        this.priority = priority;
+        this.cached = cached;
+        this.readNanos = readNanos;
+    }
+
+    /**
+     * Reads the optional <code>depends</code> of a plugin.yml, either a list of plugin names or a single name.
+     *
+     * @param yamlMapping The plugins plugin.yml.
+     * @return Names of the plugins that have to be enabled first.
+     */
+    private static List<String> readDependencies(YamlMapping yamlMapping) {
+        ArrayList<String> dependencies = new ArrayList<>();
+        YamlSequence declared = yamlMapping.yamlSequence("depends");
+        if (declared != null) {
+            for (int i = 0; i < declared.size(); i++)
+                dependencies.add(declared.string(i).trim());
+        }
+        String single = yamlMapping.string("depends");
+        if (dependencies.isEmpty() && single != null && !single.trim().isEmpty())
+            dependencies.add(single.trim());
+        return dependencies;
+    }
+
+    private static List<String> readEvents(YamlMapping yamlMapping) {
+        YamlSequence declared = yamlMapping.yamlSequence("events");
+        if (declared == null)
+            return null;
+        ArrayList<String> events = new ArrayList<>();
+        for (int i = 0; i < declared.size(); i++)
+            events.add(declared.string(i));
+        return events;
+    }
+
+    /**
+     * Sets the instantiated main class of the plugin.
+     *
+     * @param mainClass      The plugins main class.
+     * @param plugin         Instance of the main class.
+     * @param classLoadNanos Nanoseconds it took to load and instantiate the main class.
+     */
+    void setPlugin(Class<?> mainClass, TeamspeakPlugin plugin, long classLoadNanos) {
+        this.mainClass = mainClass;
+        this.plugin = plugin;
+        this.classLoadNanos = classLoadNanos;
+    }
+
+    /**
+     * Records when the plugin was enabled.
+     *
+     * @param wave        Dependency wave the plugin was enabled in, starting at 0.
+     * @param enableNanos Nanoseconds its <code>onEnable()</code> took.
+     */
+    void setEnabled(int wave, long enableNanos) {
+        this.wave = wave;
+        this.enableNanos = enableNanos;
+    }
+
+    /**
+     * <p>Getter for the field <code>file</code>.</p>
+     *
+     * @return The plugin jar.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * <p>Getter for the field <code>classLoader</code>.</p>
+     *
+     * @return Class loader of the jar.
+     */
+    public URLClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    /**
+     * Returns the plugins plugin.yml, parsing it from the jar first if the descriptor was created from cached
+     * metadata.
+     *
+     * @return The plugins plugin.yml or null if it can not be read.
+     */
+    public YamlMapping getYamlMapping() {
+        YamlMapping mapping = yamlMapping;
+        if (mapping != null)
+            return mapping;
+        synchronized (this) {
+            if (yamlMapping == null) {
+                try (InputStream stream = classLoader.getResourceAsStream("plugin.yml")) {
+                    if (stream != null)
+                        yamlMapping = Yaml.createYamlInput(stream).readYamlMapping();
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+            return yamlMapping;
+        }
+    }
+
+    /**
+     * <p>Getter for the field <code>name</code>.</p>
+     *
+     * @return The plugins name or null if the plugin.yml does not declare one.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * <p>Getter for the field <code>main</code>.</p>
+     *
+     * @return Fully qualified name of the main class.
+     */
+    public String getMain() {
+        return main;
+    }
+
+    /**
+     * <p>Getter for the field <code>version</code>.</p>
+     *
+     * @return The plugins version.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * <p>Getter for the field <code>apiVersion</code>.</p>
+     *
+     * @return The framework api version the plugin was built for, may be null.
+     */
+    public String getApiVersion() {
+        return apiVersion;
+    }
+
+    /**
+     * <p>Getter for the field <code>dependencies</code>.</p>
+     *
+     * @return Names of the plugins that have to be enabled first.
+     */
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * <p>Getter for the field <code>events</code>.</p>
+     *
+     * @return Declared event subscriptions or null if the plugin.yml does not declare any.
+     */
+    public List<String> getEvents() {
+        return events;
+    }
+
+    /**
+     * <p>Getter for the field <code>priority</code>.</p>
+     *
+     * @return Declared dispatch priority or null if none is declared.
+     */
+    public String getPriority() {
+        return priority;
+    }
+
+    /**
+     * <p>isCached.</p>
+     *
+     * @return True if the metadata was read from the {@link PluginMetadataCache} instead of the plugin.yml.
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * <p>Getter for the field <code>mainClass</code>.</p>
+     *
+     * @return The plugins main class or null if it was not loaded yet.
+     */
+    public Class<?> getMainClass() {
+        return mainClass;
+    }
+
+    /**
+     * <p>Getter for the field <code>plugin</code>.</p>
+     *
+     * @return Instance of the main class or null if it was not loaded yet.
+     */
+    public TeamspeakPlugin getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * <p>Getter for the field <code>readNanos</code>.</p>
+     *
+     * @return Nanoseconds it took to read the plugins metadata.
+     */
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    /**
+     * <p>Getter for the field <code>classLoadNanos</code>.</p>
+     *
+     * @return Nanoseconds it took to load and instantiate the main class.
+     */
+    public long getClassLoadNanos() {
+        return classLoadNanos;
+    }
+
+    /**
+     * <p>Getter for the field <code>enableNanos</code>.</p>
+     *
+     * @return Nanoseconds <code>onEnable()</code> took, 0 if the plugin was not enabled yet.
+     */
+    public long getEnableNanos() {
+        return enableNanos;
+    }
+
+    /**
+     * <p>Getter for the field <code>wave</code>.</p>
+     *
+     * @return Dependency wave the plugin was enabled in or -1 if it was not enabled yet.
+     */
+    public int getWave() {
+        return wave;
+    }
+
+    /**
+     * <p>getTotalNanos.</p>
+     *
+     * @return Nanoseconds all load stages of the plugin took together.
+     */
+    public long getTotalNanos() {
+        return readNanos + classLoadNanos + enableNanos;
+    }
+
+}
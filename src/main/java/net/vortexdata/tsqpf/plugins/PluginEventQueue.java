@@ -0,0 +1,287 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.plugins;
+
+import com.github.theholywaffle.teamspeak3.api.event.TS3Event;
+import net.vortexdata.tsqpf.modules.singleflight.DispatchContext;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded event queue with its own worker, so a slow plugin only delays itself.
+ *
+ * @author Sandro Kierner
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class PluginEventQueue implements Runnable {
+
+    /** Time in milliseconds {@link #stop()} waits for a running handler to return. */
+    public static final long STOP_TIMEOUT_MILLIS = 5000;
+    private static final long BLOCK_RECHECK_MILLIS = 100;
+
+    private final PluginContainer pluginContainer;
+    private final ArrayBlockingQueue<QueuedEvent> queue;
+    private volatile OverflowPolicy overflowPolicy;
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile int highWaterMark = 0;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    /**
+     * <p>Constructor for PluginEventQueue.</p>
+     *
+     * @param pluginContainer Plugin the events are delivered to.
+     * @param capacity        Maximum amount of pending events.
+     * @param overflowPolicy  Policy applied if the queue is full.
+     */
+    public PluginEventQueue(PluginContainer pluginContainer, int capacity, OverflowPolicy overflowPolicy) {
+        this.pluginContainer = pluginContainer;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Starts the worker thread.
+     */
+    public void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this, "PluginEventQueue-" + pluginContainer.getPluginName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the worker thread, waits up to {@link #STOP_TIMEOUT_MILLIS} for a running handler to return and
+     * discards all pending events.
+     *
+     * @return false if the worker is still running a handler.
+     */
+    public boolean stop() {
+        return stop(STOP_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Stops the worker thread, waits for a running handler to return and discards all pending events.
+     *
+     * @param timeoutMillis Time in milliseconds to wait for the worker, zero to return at once.
+     * @return false if the worker is still running a handler.
+     */
+    public boolean stop(long timeoutMillis) {
+        running = false;
+        boolean terminated = true;
+        Thread worker = thread;
+        if (worker != null) {
+            worker.interrupt();
+            if (worker != Thread.currentThread()) {
+                if (timeoutMillis > 0) {
+                    try {
+                        worker.join(timeoutMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                terminated = !worker.isAlive();
+            }
+        }
+        QueuedEvent discarded;
+        while ((discarded = queue.poll()) != null)
+            discarded.discard();
+        return terminated;
+    }
+
+    /**
+     * Queues an event, applying the overflow policy if the queue is full.
+     *
+     * @param event Event to deliver.
+     * @return false if the event was dropped.
+     */
+    public boolean offer(TS3Event event) {
+        return offer(event, null);
+    }
+
+    /**
+     * Queues an event together with its dispatch context, applying the overflow policy if the queue is full.
+     *
+     * @param event   Event to deliver.
+     * @param context Dispatch context of the event or null, it is released if the event is dropped.
+     * @return false if the event was dropped.
+     */
+    public boolean offer(TS3Event event, DispatchContext context) {
+        QueuedEvent queued = new QueuedEvent(event, context);
+        OverflowPolicy policy = overflowPolicy;
+        boolean accepted = queue.offer(queued);
+        if (!accepted && policy == OverflowPolicy.BLOCK) {
+            // Wait for space, but give up waiting once the policy was switched to dropping events.
+            try {
+                while (!(accepted = queue.offer(queued, BLOCK_RECHECK_MILLIS, TimeUnit.MILLISECONDS))
+                        && (policy = overflowPolicy) == OverflowPolicy.BLOCK && running);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!accepted && policy == OverflowPolicy.DROP_OLDEST) {
+            while (!accepted) {
+                QueuedEvent oldest = queue.poll();
+                if (oldest != null) {
+                    oldest.discard();
+                    dropped.incrementAndGet();
+                }
+                accepted = queue.offer(queued);
+            }
+        }
+
+        if (!accepted) {
+            queued.discard();
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        enqueued.incrementAndGet();
+        int depth = queue.size();
+        if (depth > highWaterMark)
+            highWaterMark = depth;
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                QueuedEvent queued = queue.poll(1, TimeUnit.SECONDS);
+                if (queued == null) continue;
+                pluginContainer.invoke(queued.event, queued.context);
+                delivered.incrementAndGet();
+            } catch (InterruptedException e) {
+                break;
+            } catch (Throwable e) {
+                // Keep delivering, a handler failing with an error must not silently end the worker.
+                if (pluginContainer.getLogger() != null)
+                    pluginContainer.getLogger().printError("Event queue worker caught " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * <p>getDepth.</p>
+     *
+     * @return Amount of events currently waiting.
+     */
+    public int getDepth() {
+        return queue.size();
+    }
+
+    /**
+     * <p>getCapacity.</p>
+     *
+     * @return Maximum amount of pending events.
+     */
+    public int getCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    /**
+     * <p>Getter for the field <code>highWaterMark</code>.</p>
+     *
+     * @return Highest depth observed since the queue was started.
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * <p>getEnqueued.</p>
+     *
+     * @return a long.
+     */
+    public long getEnqueued() {
+        return enqueued.get();
+    }
+
+    /**
+     * <p>getDelivered.</p>
+     *
+     * @return a long.
+     */
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    /**
+     * <p>getDropped.</p>
+     *
+     * @return a long.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * <p>Getter for the field <code>overflowPolicy</code>.</p>
+     *
+     * @return a {@link net.vortexdata.tsqpf.plugins.OverflowPolicy} object.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Changes the policy applied if the queue is full. Callers blocked on a full queue apply the new policy
+     * within a tenth of a second.
+     *
+     * @param overflowPolicy Policy applied if the queue is full.
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Event waiting in the queue, together with the dispatch context it was delivered with.
+     */
+    private static final class QueuedEvent {
+
+        private final TS3Event event;
+        private final DispatchContext context;
+
+        private QueuedEvent(TS3Event event, DispatchContext context) {
+            this.event = event;
+            this.context = context;
+        }
+
+        private void discard() {
+            if (context != null)
+                context.release();
+        }
+
+    }
+
+}
@@ -27,15 +27,38 @@ package net.vortexdata.tsqpf.plugins;
 
 import com.amihaiemil.eoyaml.Yaml;
 import com.amihaiemil.eoyaml.YamlMapping;
+import net.vortexdata.tsqpf.commands.CommandInterface;
 import net.vortexdata.tsqpf.configs.*;
+import net.vortexdata.tsqpf.console.CommandContainer;
 import net.vortexdata.tsqpf.framework.*;
+import net.vortexdata.tsqpf.listeners.ChatCommandInterface;
+import net.vortexdata.tsqpf.modules.eventhandler.EventType;
 import net.vortexdata.tsqpf.modules.statusreporter.*;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Loads, unloads and manages all plugins in the plugin directory.
@@ -46,8 +69,15 @@ import java.util.HashSet;
  */
 public class PluginManager {
 
-    private static HashSet<PluginContainer> loadedPlugins;
+    private static volatile PluginManager primaryPluginManager;
+    /** Unregistered plugins whose handlers may still run, their class loader must not be closed yet. */
+    private static final Set<PluginContainer> unfinishedPlugins = ConcurrentHashMap.newKeySet();
+
+    private final PluginRegistry pluginRegistry = new PluginRegistry();
+    /** Names of plugins read but not registered yet, so two jars of the same plugin can not both be loaded. */
+    private final Set<String> readingPlugins = ConcurrentHashMap.newKeySet();
     private FrameworkContainer frameworkContainer;
+    private volatile boolean suspended = false;
 
     /**
      * <p>Constructor for PluginManager.</p>
@@ -56,7 +86,8 @@ public class PluginManager {
      */
     public PluginManager(FrameworkContainer frameworkContainer) {
         this.frameworkContainer = frameworkContainer;
-        loadedPlugins = new HashSet<>();
+        if (frameworkContainer.getParent() == null)
+            primaryPluginManager = this;
         File pluginsDir = new File("plugins");
         if (!pluginsDir.isDirectory())
             pluginsDir.mkdirs();
@@ -65,14 +96,54 @@ public class PluginManager {
     /**
      * Returns a list of all loaded plugins
      *
-     * @return List of all loaded plugins
+     * @return Immutable list of all loaded plugins in dispatch order
+     */
+    public List<PluginContainer> getPlugins() {
+        return pluginRegistry.getPlugins();
+    }
+
+    /**
+     * Returns a list of all plugins loaded on the primary virtual server
+     *
+     * @return Copy of all loaded plugins
+     * @deprecated Plugins are managed per virtual server, use {@link #getPlugins()} of the
+     * {@link FrameworkContainer#getFrameworkPluginManager() contexts plugin manager} instead.
      */
+    @Deprecated
     public static HashSet<PluginContainer> getLoadedPlugins() {
-        return loadedPlugins;
+        PluginManager pluginManager = primaryPluginManager;
+        if (pluginManager == null)
+            return new HashSet<>();
+        return new HashSet<>(pluginManager.getPlugins());
+    }
+
+    /**
+     * Returns all loaded plugins subscribed to an event type.
+     *
+     * The returned array is shared and must not be modified.
+     *
+     * @param type Type of the event that should be dispatched.
+     * @return Plugins handling the event type.
+     */
+    public PluginContainer[] getSubscribers(EventType type) {
+        return pluginRegistry.getSubscribers(type);
+    }
+
+    /**
+     * <p>Getter for the field <code>pluginRegistry</code>.</p>
+     *
+     * @return a {@link net.vortexdata.tsqpf.plugins.PluginRegistry} object.
+     */
+    public PluginRegistry getPluginRegistry() {
+        return pluginRegistry;
     }
 
     /**
      * Runs through the plugin directory and tries to load and enable all plugins.
+     *
+     * Reading the jars, parsing their plugin.yml and loading their main classes runs concurrently on up to
+     * <code>pluginLoadThreads</code> threads. Plugins are registered in directory order afterwards, then enabled in
+     * waves: every plugin whose <code>depends</code> are enabled is enabled in parallel with the others of its wave.
      */
     public void enableAll() {
 
@@ -83,140 +154,772 @@ public class PluginManager {
         File[] files = new File("plugins").listFiles();
 
         if (files == null) return;
-        for (File f : files)
-            loadPlugin(f);
-        for (PluginContainer pc : loadedPlugins) {
-            pc.getTeamspeakPlugin().onEnable();
+        long start = System.nanoTime();
+        int threads = resolveLoadThreads();
+        ExecutorService pool = threads > 1 ? createLoadPool(threads) : null;
+        Executor executor = pool != null ? pool : Runnable::run;
+        try {
+            ArrayList<CompletableFuture<PluginDescriptor>> reads = new ArrayList<>();
+            for (File f : files) {
+                if (!f.isDirectory())
+                    reads.add(CompletableFuture.supplyAsync(() -> readPlugin(f, null, false), executor));
+            }
+            ArrayList<PluginContainer> loaded = new ArrayList<>();
+            for (CompletableFuture<PluginDescriptor> read : reads) {
+                PluginContainer pc = registerPlugin(read.join());
+                if (pc != null)
+                    loaded.add(pc);
+            }
+            if (useMetadataCache()) {
+                PluginMetadataCache cache = frameworkContainer.getPluginMetadataCache();
+                cache.save();
+                frameworkContainer.getFrameworkLogger().printDebug("Plugin metadata cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses.");
+            }
+            int waves = enableInWaves(loaded, executor);
+            frameworkContainer.getFrameworkLogger().printInfo("Loaded " + pluginRegistry.getPlugins().size() + " plugins in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " milliseconds (" + threads + " threads, " + waves + " waves).");
+        } finally {
+            if (pool != null)
+                pool.shutdown();
         }
         frameworkContainer.getFrameworkStatusReporter().logEvent(StatusEvents.PLUGINLOAD);
 
     }
 
     /**
-     * <p>disablePlugin.</p>
+     * Enables plugins in dependency order. Plugins whose dependencies are enabled are enabled in parallel, the next
+     * wave starts once all of them returned from <code>onEnable()</code>. Plugins failing to enable and plugins with
+     * missing or circular dependencies, including everything depending on a failed plugin, are unloaded again.
      *
-     * @param name a {@link java.lang.String} object.
-     * @return a boolean.
+     * @param plugins  Registered plugins to enable.
+     * @param executor Executor running <code>onEnable()</code>.
+     * @return Amount of waves it took to enable all plugins.
      */
-    public boolean disablePlugin(String name) {
-        PluginContainer removed = null;
-        for (PluginContainer pc : loadedPlugins) {
-            if (pc.getPluginName().equalsIgnoreCase(name)) {
-                pc.getTeamspeakPlugin().onDisable();
-                removed = pc;
+    private int enableInWaves(List<PluginContainer> plugins, Executor executor) {
+        LinkedHashMap<String, PluginContainer> pending = new LinkedHashMap<>();
+        for (PluginContainer pc : plugins)
+            pending.put(pc.getPluginName(), pc);
+
+        int wave = 0;
+        while (!pending.isEmpty()) {
+            ArrayList<PluginContainer> ready = new ArrayList<>();
+            for (PluginContainer pc : pending.values()) {
+                if (isReady(pc, pending))
+                    ready.add(pc);
+            }
+            if (ready.isEmpty())
                 break;
+
+            int current = wave;
+            ArrayList<CompletableFuture<Boolean>> enabling = new ArrayList<>();
+            for (PluginContainer pc : ready)
+                enabling.add(CompletableFuture.supplyAsync(() -> enablePlugin(pc, current), executor));
+            for (int i = 0; i < ready.size(); i++) {
+                PluginContainer pc = ready.get(i);
+                pending.remove(pc.getPluginName());
+                // Removing a failed plugin keeps everything depending on it from becoming ready.
+                if (!enabling.get(i).join())
+                    discard(pc);
             }
+            wave++;
+        }
+
+        for (PluginContainer pc : pending.values()) {
+            frameworkContainer.getFrameworkLogger().printError("Plugin " + pc.getPluginName() + " could not be enabled, its dependencies "
+                    + pc.getDescriptor().getDependencies() + " are either missing, failed to enable or depend on it.");
+            discard(pc);
         }
-        if(removed != null) {
-            loadedPlugins.remove(removed);
+        return wave;
+    }
+
+    /**
+     * Unloads a plugin that was never enabled, removing the commands it registered before failing.
+     *
+     * @param pc The plugin.
+     */
+    private void discard(PluginContainer pc) {
+        pluginRegistry.remove(pc.getPluginName());
+        pc.stopEventQueue();
+        for (ChatCommandInterface cmd : pc.getChatCommands())
+            frameworkContainer.getFrameworkChatCommandListener().unregisterCommand(cmd);
+        for (CommandInterface cmd : pc.getConsoleCommands())
+            CommandContainer.unregisterCommand(cmd);
+    }
+
+    private boolean isReady(PluginContainer pc, Map<String, PluginContainer> pending) {
+        PluginDescriptor descriptor = pc.getDescriptor();
+        if (descriptor == null)
             return true;
+        for (String dependency : descriptor.getDependencies()) {
+            if (pending.containsKey(dependency) || pluginRegistry.get(dependency) == null)
+                return false;
         }
-        return false;
+        return true;
+    }
+
+    private boolean enablePlugin(PluginContainer pc, int wave) {
+        long start = System.nanoTime();
+        try {
+            pc.getTeamspeakPlugin().onEnable();
+        } catch (Exception | LinkageError e) {
+            frameworkContainer.getFrameworkLogger().printError("Plugin " + pc.getPluginName() + " failed to enable, unloading it: " + e.getMessage());
+            return false;
+        }
+        pluginRegistry.enable(pc);
+        PluginDescriptor descriptor = pc.getDescriptor();
+        if (descriptor == null)
+            return true;
+        descriptor.setEnabled(wave, System.nanoTime() - start);
+        frameworkContainer.getFrameworkLogger().printDebug("Plugin " + pc.getPluginName() + " enabled in wave " + wave
+                + " (read " + formatMillis(descriptor.getReadNanos())
+                + ", class load " + formatMillis(descriptor.getClassLoadNanos())
+                + ", enable " + formatMillis(descriptor.getEnableNanos()) + ").");
+        return true;
+    }
+
+    private String formatMillis(long nanos) {
+        return String.format("%.1fms", nanos / 1_000_000.0);
+    }
+
+    private int resolveLoadThreads() {
+        Config mainConfig = frameworkContainer.getConfig(new ConfigMain(frameworkContainer.getFrameworkLogger()).getPath());
+        try {
+            return Math.max(1, Integer.parseInt(mainConfig.getProperty("pluginLoadThreads").trim()));
+        } catch (NumberFormatException e) {
+            frameworkContainer.getFrameworkLogger().printWarn("Config value for key pluginLoadThreads could not be parsed, loading plugins one at a time.");
+            return 1;
+        }
+    }
+
+    private ExecutorService createLoadPool(int threads) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "PluginLoader-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Suspends all loaded plugins after the connection was lost. They stay loaded and registered, so
+     * {@link #resumeAll()} does not have to load them again.
+     */
+    public void suspendAll() {
+        suspended = true;
+        for (PluginContainer pc : pluginRegistry.getPlugins()) {
+            try {
+                pc.getTeamspeakPlugin().onSuspend();
+            } catch (Exception e) {
+                frameworkContainer.getFrameworkLogger().printError("Plugin " + pc.getPluginName() + " failed to suspend: " + e.getMessage());
+            }
+        }
+        frameworkContainer.getFrameworkLogger().printDebug("Suspended " + pluginRegistry.getPlugins().size() + " plugins.");
+    }
+
+    /**
+     * Resumes all suspended plugins in the order they were enabled in, or loads and enables all plugins if
+     * none are suspended.
+     */
+    public void resumeAll() {
+        if (!suspended) {
+            enableAll();
+            return;
+        }
+        suspended = false;
+        ArrayList<PluginContainer> plugins = new ArrayList<>(pluginRegistry.getPlugins());
+        plugins.sort(Comparator.comparingInt(pc -> pc.getDescriptor() != null ? pc.getDescriptor().getWave() : 0));
+        for (PluginContainer pc : plugins) {
+            try {
+                pc.getTeamspeakPlugin().onResume();
+            } catch (Exception e) {
+                frameworkContainer.getFrameworkLogger().printError("Plugin " + pc.getPluginName() + " failed to resume: " + e.getMessage());
+            }
+        }
+        frameworkContainer.getFrameworkLogger().printDebug("Resumed " + plugins.size() + " plugins.");
+    }
+
+    /**
+     * <p>isSuspended.</p>
+     *
+     * @return True if the plugins are suspended and wait for {@link #resumeAll()}.
+     */
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * <p>isSuspendOnHibernate.</p>
+     *
+     * @return True if plugins should be suspended instead of unloaded while the framework hibernates.
+     */
+    public boolean isSuspendOnHibernate() {
+        return Boolean.parseBoolean(frameworkContainer.getConfig(new ConfigMain(frameworkContainer.getFrameworkLogger()).getPath()).getProperty("pluginSuspendOnHibernate"));
+    }
+
+    /**
+     * <p>disablePlugin.</p>
+     *
+     * @param name a {@link java.lang.String} object.
+     * @return a boolean.
+     */
+    public boolean disablePlugin(String name) {
+        PluginContainer removed = pluginRegistry.remove(name);
+        if (removed == null)
+            return false;
+        release(removed);
+        return true;
+    }
+
+    /**
+     * Unregisters a plugin so it receives no further events, without waiting for its running handlers and
+     * without disabling it. Call {@link #disableDetached(PluginContainer)} once {@link PluginContainer#isIdle()}.
+     *
+     * @param name Name of the plugin.
+     * @return The detached plugin or null if no plugin with this name is loaded.
+     */
+    public PluginContainer detachPlugin(String name) {
+        PluginContainer removed = pluginRegistry.remove(name);
+        if (removed != null) {
+            unfinishedPlugins.add(removed);
+            removed.stopEventQueue(0);
+        }
+        return removed;
+    }
+
+    /**
+     * Disables a plugin detached by {@link #detachPlugin(String)} and removes the commands it registered.
+     *
+     * @param pc The detached plugin.
+     */
+    public void disableDetached(PluginContainer pc) {
+        release(pc);
     }
 
     /**
      * Unloads all loaded plugins and disables them, preparing for save shutdown.
      */
     public void disableAll() {
-        for (PluginContainer pc : loadedPlugins) {
-            pc.getTeamspeakPlugin().onDisable();
+        suspended = false;
+        for (PluginContainer pc : pluginRegistry.clear()) {
+            release(pc);
             frameworkContainer.getFrameworkLogger().printInfo("Unloading plugin " + pc.getPluginName() + ".");
-            pc = null;
         }
-        loadedPlugins.clear();
         frameworkContainer.getFrameworkStatusReporter().logEvent(StatusEvents.PLUGINDISABLE);
     }
 
     /**
-     * Loads a specific plugin and tries to enable it.
+     * Disables an unregistered plugin and removes the commands it registered.
+     *
+     * @param pc The plugin, already removed from the registry.
+     */
+    private void release(PluginContainer pc) {
+        if (!pc.stopEventQueue() || !pc.awaitIdle(PluginEventQueue.STOP_TIMEOUT_MILLIS)) {
+            unfinishedPlugins.add(pc);
+            frameworkContainer.getFrameworkLogger().printWarn("Event handler of plugin " + pc.getPluginName() + " did not return within "
+                    + PluginEventQueue.STOP_TIMEOUT_MILLIS + "ms, disabling it anyway.");
+        }
+        try {
+            pc.getTeamspeakPlugin().onDisable();
+        } catch (Exception | LinkageError e) {
+            // Keep going, so one failing plugin does not leave the ones after it enabled.
+            pc.getLogger().printError("Failed to disable, releasing it anyway: " + e.getMessage());
+        }
+        for (ChatCommandInterface cmd : pc.getChatCommands())
+            frameworkContainer.getFrameworkChatCommandListener().unregisterCommand(cmd);
+        for (CommandInterface cmd : pc.getConsoleCommands())
+            CommandContainer.unregisterCommand(cmd);
+        if (pc.getDescriptor() != null)
+            retireClassLoader(pc.getPluginName(), pc.getDescriptor().getClassLoader());
+    }
+
+    /**
+     * Closes a plugin class loader that was replaced by a newer one of its jar, once no plugin uses it anymore and
+     * all handlers of the plugins that used it returned.
+     *
+     * @param pluginName Name of the plugin the loader belongs to.
+     * @param loader     The class loader.
+     */
+    private void retireClassLoader(String pluginName, URLClassLoader loader) {
+        synchronized (PluginManager.class) {
+            if (loader == null || frameworkContainer.getPluginClassLoaders().containsValue(loader) || isClassLoaderInUse(loader))
+                return;
+            frameworkContainer.getPluginLeakDetector().dispose(pluginName, loader, () -> {
+                unfinishedPlugins.removeIf(PluginContainer::isIdle);
+                for (PluginContainer pc : unfinishedPlugins) {
+                    if (pc.getDescriptor() != null && pc.getDescriptor().getClassLoader() == loader)
+                        return false;
+                }
+                return true;
+            });
+        }
+    }
+
+    private boolean isClassLoaderInUse(URLClassLoader loader) {
+        PluginManager root = frameworkContainer.getParent() != null ? frameworkContainer.getParent().getFrameworkPluginManager() : this;
+        for (PluginManager manager : root.getAllManagers()) {
+            for (PluginContainer pc : manager.getPlugins()) {
+                if (pc.getDescriptor() != null && pc.getDescriptor().getClassLoader() == loader)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Loads a plugin jar into a new class loader and replaces the loaded instances of the plugin with it, on
+     * every virtual server the plugin runs on. The old class loader is closed once the handlers of the old
+     * instances returned and checked for leaks afterwards.
+     *
+     * If the new jar can not be read or declares another name, the old instances keep running.
+     *
+     * @param name Name of the loaded plugin.
+     * @return True if the plugin was reloaded.
+     */
+    public boolean reloadPlugin(String name) {
+        if (frameworkContainer.getParent() != null)
+            return frameworkContainer.getParent().getFrameworkPluginManager().reloadPlugin(name);
+
+        synchronized (PluginManager.class) {
+            PluginDescriptor previous = null;
+            ArrayList<PluginManager> managers = new ArrayList<>();
+            for (PluginManager manager : getAllManagers()) {
+                PluginContainer pc = manager.pluginRegistry.get(name);
+                if (pc == null)
+                    continue;
+                managers.add(manager);
+                if (previous == null)
+                    previous = pc.getDescriptor();
+            }
+            if (managers.isEmpty() || previous == null) {
+                frameworkContainer.getFrameworkLogger().printWarn("Plugin " + name + " can not be reloaded as it is not loaded from a jar.");
+                return false;
+            }
+            File file = previous.getFile();
+            if (!file.isFile()) {
+                frameworkContainer.getFrameworkLogger().printWarn("Plugin " + name + " can not be reloaded as its jar " + file.getPath() + " no longer exists.");
+                return false;
+            }
+
+            String path = file.getAbsolutePath();
+            HashMap<PluginManager, PluginDescriptor> descriptors = new HashMap<>();
+            for (PluginManager manager : managers) {
+                URLClassLoader fresh;
+                try {
+                    fresh = new URLClassLoader(new URL[]{file.toURI().toURL()});
+                } catch (MalformedURLException e) {
+                    frameworkContainer.getFrameworkLogger().printWarn("Plugin " + name + " can not be reloaded: " + e.getMessage());
+                    closeClassLoaders(descriptors.values());
+                    return false;
+                }
+                PluginDescriptor descriptor = manager.readPlugin(file, fresh, true);
+                if (descriptor == null || !name.equals(descriptor.getName())) {
+                    frameworkContainer.getFrameworkLogger().printError("Failed to reload plugin " + name + ", the current version keeps running.");
+                    try {
+                        fresh.close();
+                    } catch (IOException e) {
+                        // Nothing was loaded from it
+                    }
+                    closeClassLoaders(descriptors.values());
+                    return false;
+                }
+                descriptors.put(manager, descriptor);
+            }
+
+            for (PluginManager manager : managers) {
+                ConcurrentHashMap<String, URLClassLoader> classLoaders = manager.frameworkContainer.getPluginClassLoaders();
+                HashMap<String, URLClassLoader> replaced = new HashMap<>();
+                classLoaders.forEach((key, loader) -> {
+                    if (key.startsWith(path + "@"))
+                        replaced.put(key, loader);
+                });
+                classLoaders.keySet().removeAll(replaced.keySet());
+                classLoaders.put(path + "@" + file.lastModified(), descriptors.get(manager).getClassLoader());
+                PluginContainer old = manager.pluginRegistry.remove(name);
+                if (old != null)
+                    manager.release(old);
+                PluginContainer pc = manager.registerPlugin(descriptors.get(manager));
+                if (pc != null)
+                    manager.enableInWaves(Collections.singletonList(pc), Runnable::run);
+                // The loader of the released instance was retired by release() already.
+                for (URLClassLoader loader : replaced.values())
+                    manager.retireClassLoader(name, loader);
+            }
+            if (useMetadataCache())
+                frameworkContainer.getPluginMetadataCache().save();
+
+            frameworkContainer.getFrameworkLogger().printInfo("Reloaded plugin " + name + " on " + managers.size() + " virtual servers.");
+            return true;
+        }
+    }
+
+    private void closeClassLoaders(Collection<PluginDescriptor> descriptors) {
+        for (PluginDescriptor descriptor : descriptors) {
+            try {
+                descriptor.getClassLoader().close();
+            } catch (IOException e) {
+                // Only read during the failed reload
+            }
+        }
+    }
+
+    /**
+     * Loads a plugin jar and enables it on every virtual server it is enabled on.
+     *
+     * @param file The plugin jar.
+     * @return True if the plugin was loaded on at least one virtual server.
+     */
+    public boolean loadAndEnablePlugin(File file) {
+        if (frameworkContainer.getParent() != null)
+            return frameworkContainer.getParent().getFrameworkPluginManager().loadAndEnablePlugin(file);
+
+        synchronized (PluginManager.class) {
+            boolean loaded = false;
+            for (PluginManager manager : getAllManagers()) {
+                PluginContainer pc = manager.registerPlugin(manager.readPlugin(file, null, false));
+                if (pc == null)
+                    continue;
+                manager.enableInWaves(Collections.singletonList(pc), Runnable::run);
+                loaded |= manager.pluginRegistry.get(pc.getPluginName()) == pc;
+            }
+            if (useMetadataCache())
+                frameworkContainer.getPluginMetadataCache().save();
+            return loaded;
+        }
+    }
+
+    /**
+     * Returns the plugin managers of all virtual servers, starting with this one.
+     *
+     * @return Plugin managers of this process.
+     */
+    private List<PluginManager> getAllManagers() {
+        ArrayList<PluginManager> managers = new ArrayList<>();
+        managers.add(this);
+        for (VirtualServer virtualServer : frameworkContainer.getVirtualServers())
+            managers.add(virtualServer.getFrameworkContainer().getFrameworkPluginManager());
+        return managers;
+    }
+
+    /**
+     * Loads a specific plugin without enabling it.
      *
      * @param file a {@link java.io.File} object.
      */
     public void loadPlugin(File file) {
+        registerPlugin(readPlugin(file, null, false));
+    }
+
+    /**
+     * Opens a plugin jar, parses its plugin.yml and instantiates its main class. Safe to call concurrently.
+     *
+     * @param file   The plugin jar.
+     * @param loader    Class loader to load the plugin with or null to use the shared loader of the jar.
+     * @param replacing True if the plugin replaces a loaded plugin of the same name.
+     * @return Descriptor of the plugin or null if it can not or should not be loaded.
+     */
+    private PluginDescriptor readPlugin(File file, URLClassLoader loader, boolean replacing) {
         try {
-            if (file.isDirectory()) return;
+            if (file.isDirectory()) return null;
 
-            URL[] urls = {new URL("jar:file:" + file.getPath() +"!/")};
-            URLClassLoader loader = new URLClassLoader(urls);
+            long start = System.nanoTime();
+            if (loader == null)
+                loader = getClassLoader(file);
             if(loader == null) {
                 //Cannot load jar file
                 frameworkContainer.getFrameworkLogger().printWarn("Failed to load plugin " + file.getName() + ".");
-                return;
+                return null;
             }
-            InputStream stream = loader.getResourceAsStream("plugin.yml");
-            if (stream == null) {
-                //plugin.yml not found
-                frameworkContainer.getFrameworkLogger().printWarn("Failed to locate plugin.yml of " + file.getName() + ", therefore cancelled its initialization.");
-                return;
+            PluginDescriptor descriptor = useMetadataCache() ? frameworkContainer.getPluginMetadataCache().lookup(file, loader) : null;
+            if (descriptor == null) {
+                descriptor = parsePlugin(file, loader, start);
+                if (descriptor == null)
+                    return null;
+                if (useMetadataCache())
+                    frameworkContainer.getPluginMetadataCache().store(descriptor);
             }
-            YamlMapping yamlMapping = Yaml.createYamlInput(stream).readYamlMapping();
-            String main = yamlMapping.string("main");
-            String name = yamlMapping.string("name");
-            String version = yamlMapping.string("version");
-            String apiVersion = yamlMapping.string("api-version");
+            String name = descriptor.getName();
 
-            for (PluginContainer loadedPlugin : loadedPlugins) {
-                if (loadedPlugin.getPluginName().equalsIgnoreCase(name)) {
-                    frameworkContainer.getFrameworkLogger().printWarn("Failed to load a plugin ("+ loadedPlugin.getPluginName() +"): Plugin with same name already in use.");
-                    return;
+            if (!frameworkContainer.isPluginEnabled(name)) {
+                frameworkContainer.getFrameworkLogger().printDebug("Plugin " + name + " is not enabled on virtual server " + frameworkContainer.getVirtualServerId() + ", skipping it.");
+                return null;
+            }
+            // Reject duplicates before the main class runs any static initializers or constructors. Jars are read
+            // concurrently, so the name is reserved until the plugin is registered.
+            if (!replacing && (pluginRegistry.get(name) != null || !readingPlugins.add(name))) {
+                frameworkContainer.getFrameworkLogger().printWarn("Failed to load a plugin ("+ name +"): Plugin with same name already in use.");
+                return null;
+            }
+            boolean read = false;
+            try {
+                start = System.nanoTime();
+                Class cl = loader.loadClass(descriptor.getMain());
+                if (cl == null) {
+                    //Main class not found!
+                    frameworkContainer.getFrameworkLogger().printWarn("Could not locate main class of plugin " + name + ".");
+                    return null;
+                }
+                TeamspeakPlugin plugin = (TeamspeakPlugin) cl.newInstance();
+                if (plugin == null) {
+                    frameworkContainer.getFrameworkLogger().printWarn("Plugin instance of " + file.getName() + " could not be found.");
+                    throw new Error("Error no instance found");
                 }
+                descriptor.setPlugin(cl, plugin, System.nanoTime() - start);
+                read = true;
+                return descriptor;
+            } finally {
+                if (!replacing && !read)
+                    readingPlugins.remove(name);
             }
 
+        } catch (Exception e) {
+            frameworkContainer.getFrameworkLogger().printWarn("Plugin " + file.getName() + " failed to load. This is probably due to incorrect plugin setup. Dumping error details: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-            if(main == null || name == null || version == null) {
-                //Yaml not valid
-                frameworkContainer.getFrameworkLogger().printWarn("Failed to load a plugin due to incorrect plugin.yml setup.");
-                return;
-            }
-            Class cl = loader.loadClass(main);
-            if (cl == null) {
-                //Main class not found!
-                frameworkContainer.getFrameworkLogger().printWarn("Could not locate main class of plugin " + name + ".");
-                return;
-            }
-            TeamspeakPlugin plugin = (TeamspeakPlugin) cl.newInstance();
-            if (plugin == null) {
-                frameworkContainer.getFrameworkLogger().printWarn("Plugin instance of " + file.getName() + " could not be found.");
-                throw new Error("Error no instance found");
+    /**
+     * Checks a read plugin against the framework and the loaded plugins and registers it.
+     *
+     * @param descriptor Descriptor of the plugin, may be null.
+     * @return Container of the registered plugin or null if it was not registered.
+     */
+    private PluginContainer registerPlugin(PluginDescriptor descriptor) {
+        if (descriptor == null)
+            return null;
+        String name = descriptor.getName();
+        try {
+            if (pluginRegistry.get(name) != null) {
+                frameworkContainer.getFrameworkLogger().printWarn("Failed to load a plugin ("+ name +"): Plugin with same name already in use.");
+                return null;
             }
 
-            if (name == null || name.length() < 1) {
-                frameworkContainer.getFrameworkLogger().printWarn("Name of plugin " + file.getName() + " is invalid.");
+            if (name.length() < 1) {
+                frameworkContainer.getFrameworkLogger().printWarn("Name of plugin " + descriptor.getFile().getName() + " is invalid.");
                 throw new Error("Invalid Name");
             }
 
-            if (apiVersion == null || apiVersion.isEmpty()) {
-                frameworkContainer.getFrameworkLogger().printWarn("Plugin " + name + " does not provide an compatible API version description. If you are running into errors, please check for any compatibility issues.");
-            } else {
-                ConfigProject cp = new ConfigProject(frameworkContainer.getFrameworkLogger());
-                cp.load();
-                String[] frameworkversionParts = cp.getProperty("version").split("\\.");
-                String[] versionParts = apiVersion.split("\\.");
-                if (Integer.parseInt(versionParts[0]) != Integer.parseInt(frameworkversionParts[0])) {
-                    frameworkContainer.getFrameworkLogger().printError("Plugin " + name + " is using an unsupported mayor API version ("+apiVersion+") and therefore can not be loaded.");
-                    return;
-                } else if (Integer.parseInt(versionParts[1]) > Integer.parseInt(frameworkversionParts[1])) {
-                    frameworkContainer.getFrameworkLogger().printError("Plugin " + name + " is using an API version ("+apiVersion+") with features not supported by your framework version, therefore it can not be loaded.");
-                    return;
-                }
-            }
-
-            PluginContainer pc = new PluginContainer(plugin, name, yamlMapping);
+            TeamspeakPlugin plugin = descriptor.getPlugin();
+            PluginContainer pc = new PluginContainer(plugin, name, descriptor.isCached() ? null : descriptor.getYamlMapping());
+            pc.setDescriptor(descriptor);
             pc.initLogger(frameworkContainer.getFramework());
             plugin.setContainer(pc);
             plugin.setFrameworkContainer(frameworkContainer);
-            loadedPlugins.add(pc);
+            pc.setSubscriptions(resolveSubscriptions(descriptor, name));
+            pc.setPriority(resolvePriority(descriptor, name));
+            applyEventDispatchMode(pc);
+            if (!pluginRegistry.add(pc)) {
+                pc.stopEventQueue();
+                frameworkContainer.getFrameworkLogger().printWarn("Failed to load a plugin ("+ name +"): Plugin with same name already in use.");
+                return null;
+            }
 
             frameworkContainer.getFrameworkLogger().printInfo("Plugin " + pc.getPluginName() + " successfully loaded and initialized.");
+            return pc;
 
         } catch (Exception e) {
-            frameworkContainer.getFrameworkLogger().printWarn("Plugin " + file.getName() + " failed to load. This is probably due to incorrect plugin setup. Dumping error details: " + e.getMessage());
+            frameworkContainer.getFrameworkLogger().printWarn("Plugin " + descriptor.getFile().getName() + " failed to load. This is probably due to incorrect plugin setup. Dumping error details: " + e.getMessage());
             e.printStackTrace();
+            return null;
+        } finally {
+            readingPlugins.remove(name);
         }
     }
 
+    /**
+     * Parses and validates the plugin.yml of a jar.
+     *
+     * @param file   The plugin jar.
+     * @param loader Class loader of the jar.
+     * @param start  {@link System#nanoTime()} reading the jar started at.
+     * @return Descriptor of the plugin or null if its plugin.yml is missing or invalid.
+     * @throws IOException If the plugin.yml can not be read.
+     */
+    private PluginDescriptor parsePlugin(File file, URLClassLoader loader, long start) throws IOException {
+        YamlMapping yamlMapping;
+        try (InputStream stream = loader.getResourceAsStream("plugin.yml")) {
+            if (stream == null) {
+                //plugin.yml not found
+                frameworkContainer.getFrameworkLogger().printWarn("Failed to locate plugin.yml of " + file.getName() + ", therefore cancelled its initialization.");
+                return null;
+            }
+            yamlMapping = Yaml.createYamlInput(stream).readYamlMapping();
+        }
+        PluginDescriptor descriptor = new PluginDescriptor(file, loader, yamlMapping, System.nanoTime() - start);
+        String name = descriptor.getName();
+        String apiVersion = descriptor.getApiVersion();
+
+        if(descriptor.getMain() == null || name == null || descriptor.getVersion() == null) {
+            //Yaml not valid
+            frameworkContainer.getFrameworkLogger().printWarn("Failed to load a plugin due to incorrect plugin.yml setup.");
+            return null;
+        }
+
+        if (name.length() < 1) {
+            frameworkContainer.getFrameworkLogger().printWarn("Name of plugin " + file.getName() + " is invalid.");
+            throw new Error("Invalid Name");
+        }
 
+        if (apiVersion == null || apiVersion.isEmpty()) {
+            frameworkContainer.getFrameworkLogger().printWarn("Plugin " + name + " does not provide an compatible API version description. If you are running into errors, please check for any compatibility issues.");
+        } else {
+            String[] frameworkversionParts = frameworkContainer.getConfig(new ConfigProject(frameworkContainer.getFrameworkLogger()).getPath()).getProperty("version").split("\\.");
+            String[] versionParts = apiVersion.split("\\.");
+            if (Integer.parseInt(versionParts[0]) != Integer.parseInt(frameworkversionParts[0])) {
+                frameworkContainer.getFrameworkLogger().printError("Plugin " + name + " is using an unsupported mayor API version ("+apiVersion+") and therefore can not be loaded.");
+                return null;
+            } else if (Integer.parseInt(versionParts[1]) > Integer.parseInt(frameworkversionParts[1])) {
+                frameworkContainer.getFrameworkLogger().printError("Plugin " + name + " is using an API version ("+apiVersion+") with features not supported by your framework version, therefore it can not be loaded.");
+                return null;
+            }
+        }
+        return descriptor;
+    }
 
+    private boolean useMetadataCache() {
+        return Boolean.parseBoolean(frameworkContainer.getConfig(new ConfigMain(frameworkContainer.getFrameworkLogger()).getPath()).getProperty("pluginMetadataCache"));
+    }
+
+    /**
+     * Returns the class loader of a plugin jar on this virtual server. A new one is created if the jar
+     * changed since it was loaded last, the previous one is closed once no plugin uses it anymore.
+     *
+     * @param file The plugin jar.
+     * @return Class loader of the jar.
+     * @throws MalformedURLException If the jars path can not be converted to an url.
+     */
+    private URLClassLoader getClassLoader(File file) throws MalformedURLException {
+        ConcurrentHashMap<String, URLClassLoader> classLoaders = frameworkContainer.getPluginClassLoaders();
+        String path = file.getAbsolutePath();
+        String key = path + "@" + file.lastModified();
+        URLClassLoader loader = classLoaders.get(key);
+        if (loader != null)
+            return loader;
+
+        URL[] urls = {file.toURI().toURL()};
+        loader = new URLClassLoader(urls);
+        URLClassLoader existing = classLoaders.putIfAbsent(key, loader);
+        if (existing != null) {
+            try {
+                loader.close();
+            } catch (IOException e) {
+                // Nothing was loaded from it
+            }
+            return existing;
+        }
+        for (Map.Entry<String, URLClassLoader> cached : classLoaders.entrySet()) {
+            if (cached.getKey().startsWith(path + "@") && !cached.getKey().equals(key) && classLoaders.remove(cached.getKey(), cached.getValue()))
+                retireClassLoader(file.getName(), cached.getValue());
+        }
+        return loader;
+    }
+
+    /**
+     * Resolves the events a plugin wants to receive.
+     *
+     * An <code>events</code> list in the plugin.yml takes precedence, otherwise all
+     * {@link net.vortexdata.tsqpf.modules.eventhandler.EventHandler} methods overridden by the main class are used.
+     *
+     * @param descriptor The plugins descriptor.
+     * @param name       The plugins name.
+     * @return Subscribed event types.
+     */
+    private EnumSet<EventType> resolveSubscriptions(PluginDescriptor descriptor, String name) {
+        List<String> declaredEvents = descriptor.getEvents();
+        if (declaredEvents == null)
+            return EventType.overriddenBy(descriptor.getMainClass());
 
+        EnumSet<EventType> subscriptions = EnumSet.noneOf(EventType.class);
+        for (String declaredEvent : declaredEvents) {
+            EventType type = EventType.parse(declaredEvent);
+            if (type == null)
+                frameworkContainer.getFrameworkLogger().printWarn("Plugin " + name + " subscribes to unknown event " + declaredEvent + ", ignoring it.");
+            else
+                subscriptions.add(type);
+        }
+        return subscriptions;
+    }
+
+    /**
+     * Reads the optional dispatch <code>priority</code> from the plugin.yml.
+     *
+     * @param descriptor The plugins descriptor.
+     * @param name       The plugins name.
+     * @return The plugins priority, 0 if none is set.
+     */
+    private int resolvePriority(PluginDescriptor descriptor, String name) {
+        String priority = descriptor.getPriority();
+        if (priority == null || priority.isEmpty())
+            return 0;
+        try {
+            return Integer.parseInt(priority.trim());
+        } catch (NumberFormatException e) {
+            frameworkContainer.getFrameworkLogger().printWarn("Plugin " + name + " has an invalid priority (" + priority + "), using 0.");
+            return 0;
+        }
+    }
+
+    /**
+     * Starts a bounded event queue for the plugin if queued event dispatch is configured.
+     *
+     * @param pc Plugin to configure.
+     */
+    private void applyEventDispatchMode(PluginContainer pc) {
+        Config mainConfig = frameworkContainer.getConfig(new ConfigMain(frameworkContainer.getFrameworkLogger()).getPath());
+        String dispatchMode = mainConfig.getProperty("pluginEventDispatch");
+        if (dispatchMode.isEmpty() || dispatchMode.equalsIgnoreCase("sync"))
+            return;
+        if (!dispatchMode.equalsIgnoreCase("queued")) {
+            frameworkContainer.getFrameworkLogger().printWarn("Config value for key pluginEventDispatch could not be parsed, falling back to sync.");
+            return;
+        }
+        startEventQueue(pc);
+    }
+
+    /**
+     * Moves a plugin to its own bounded event queue, so its handlers no longer run on the dispatching thread.
+     *
+     * @param pc Plugin to move.
+     * @return False if the plugin already has an event queue.
+     */
+    public boolean startEventQueue(PluginContainer pc) {
+        if (pc.getEventQueue() != null)
+            return false;
+        Config mainConfig = frameworkContainer.getConfig(new ConfigMain(frameworkContainer.getFrameworkLogger()).getPath());
+        OverflowPolicy overflowPolicy = OverflowPolicy.parse(mainConfig.getProperty("pluginEventQueueOverflow"));
+        if (overflowPolicy == null) {
+            frameworkContainer.getFrameworkLogger().printWarn("Config value for key pluginEventQueueOverflow could not be parsed, falling back to block.");
+            overflowPolicy = OverflowPolicy.BLOCK;
+        }
+        startEventQueue(pc, overflowPolicy);
+        return true;
+    }
+
+    /**
+     * Moves a plugin that keeps exceeding its deadline to its own event queue dropping the oldest events once it
+     * is full, so the plugin can never block dispatch. A blocking queue the plugin already has is switched to
+     * dropping events.
+     *
+     * @param pc Plugin to degrade.
+     * @return False if the plugin already has a queue that drops events.
+     */
+    public boolean degradePlugin(PluginContainer pc) {
+        PluginEventQueue queue = pc.getEventQueue();
+        if (queue == null) {
+            startEventQueue(pc, OverflowPolicy.DROP_OLDEST);
+            return true;
+        }
+        if (queue.getOverflowPolicy() != OverflowPolicy.BLOCK)
+            return false;
+        queue.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+        return true;
+    }
+
+    private void startEventQueue(PluginContainer pc, OverflowPolicy overflowPolicy) {
+        Config mainConfig = frameworkContainer.getConfig(new ConfigMain(frameworkContainer.getFrameworkLogger()).getPath());
+        int capacity = Integer.parseInt(mainConfig.getProperty("pluginEventQueueCapacity"));
+        pc.startEventQueue(capacity, overflowPolicy);
+        frameworkContainer.getFrameworkLogger().printDebug("Started event queue for plugin " + pc.getPluginName() + " (capacity " + capacity + ", " + overflowPolicy + ").");
+    }
 
 }
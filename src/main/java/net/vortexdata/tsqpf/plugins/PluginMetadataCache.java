@@ -0,0 +1,277 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.plugins;
+
+import net.vortexdata.tsqpf.configs.ConfigProject;
+import net.vortexdata.tsqpf.framework.FrameworkContainer;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URLClassLoader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk index of the validated metadata of all plugin jars, so unchanged jars skip opening, parsing and
+ * validating their plugin.yml.
+ *
+ * Entries are keyed by the jars path and hold its size, modification time and SHA-256 hash. If size or
+ * modification time changed, the jar is hashed and the entry is still used if the content is unchanged. The
+ * whole index is discarded if it was written by another framework version.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class PluginMetadataCache {
+
+    private static final String PATH = "sys//plugincache.json";
+
+    private final FrameworkContainer frameworkContainer;
+    private final HashMap<String, JSONObject> entries = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private String frameworkVersion;
+    private boolean loaded = false;
+    private boolean dirty = false;
+
+    /**
+     * <p>Constructor for PluginMetadataCache.</p>
+     *
+     * @param frameworkContainer a {@link net.vortexdata.tsqpf.framework.FrameworkContainer} object.
+     */
+    public PluginMetadataCache(FrameworkContainer frameworkContainer) {
+        this.frameworkContainer = frameworkContainer;
+    }
+
+    /**
+     * Looks up the metadata of a plugin jar.
+     *
+     * @param file        The plugin jar.
+     * @param classLoader Class loader of the jar.
+     * @return Descriptor created from the cached metadata or null if the jar is unknown or changed.
+     */
+    public PluginDescriptor lookup(File file, URLClassLoader classLoader) {
+        long start = System.nanoTime();
+        String path = file.getAbsolutePath();
+        JSONObject entry;
+        synchronized (this) {
+            load();
+            entry = entries.get(path);
+        }
+        if (entry == null || !isUnchanged(path, entry, file)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new PluginDescriptor(file, classLoader, (String) entry.get("name"), (String) entry.get("main"),
+                (String) entry.get("version"), (String) entry.get("apiVersion"), toList((JSONArray) entry.get("depends")),
+                toList((JSONArray) entry.get("events")), (String) entry.get("priority"), true, System.nanoTime() - start);
+    }
+
+    /**
+     * Stores the metadata of a validated plugin.
+     *
+     * @param descriptor Descriptor read from the plugins plugin.yml.
+     */
+    @SuppressWarnings("unchecked")
+    public void store(PluginDescriptor descriptor) {
+        File file = descriptor.getFile();
+        String hash = hash(file);
+        if (hash == null)
+            return;
+
+        JSONObject entry = new JSONObject();
+        entry.put("size", file.length());
+        entry.put("modified", file.lastModified());
+        entry.put("sha256", hash);
+        entry.put("name", descriptor.getName());
+        entry.put("main", descriptor.getMain());
+        entry.put("version", descriptor.getVersion());
+        entry.put("apiVersion", descriptor.getApiVersion());
+        entry.put("priority", descriptor.getPriority());
+        entry.put("depends", toArray(descriptor.getDependencies()));
+        if (descriptor.getEvents() != null)
+            entry.put("events", toArray(descriptor.getEvents()));
+        synchronized (this) {
+            load();
+            entries.put(file.getAbsolutePath(), entry);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the index to disk if it changed, entries of jars that no longer exist are dropped.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void save() {
+        if (!loaded)
+            return;
+        if (entries.keySet().removeIf(path -> !new File(path).isFile()))
+            dirty = true;
+        if (!dirty)
+            return;
+
+        JSONObject plugins = new JSONObject();
+        plugins.putAll(entries);
+        JSONObject index = new JSONObject();
+        index.put("frameworkVersion", frameworkVersion);
+        index.put("plugins", plugins);
+
+        File file = new File(PATH);
+        file.getParentFile().mkdirs();
+        try (Writer writer = new FileWriter(file, false)) {
+            index.writeJSONString(writer);
+            dirty = false;
+        } catch (IOException e) {
+            frameworkContainer.getFrameworkLogger().printWarn("Failed to save plugin metadata cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes all entries, every plugin is read from its jar again on the next load.
+     */
+    public synchronized void invalidate() {
+        load();
+        if (!entries.isEmpty())
+            dirty = true;
+        entries.clear();
+    }
+
+    /**
+     * <p>getHits.</p>
+     *
+     * @return Amount of jars whose metadata was taken from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * <p>getMisses.</p>
+     *
+     * @return Amount of jars that had to be read because they were unknown or changed.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private void load() {
+        if (loaded)
+            return;
+        loaded = true;
+        frameworkVersion = frameworkContainer.getConfig(new ConfigProject(frameworkContainer.getFrameworkLogger()).getPath()).getProperty("version");
+
+        File file = new File(PATH);
+        if (!file.isFile())
+            return;
+        try (Reader reader = new FileReader(file)) {
+            JSONObject index = (JSONObject) new JSONParser().parse(reader);
+            if (frameworkVersion == null || !frameworkVersion.equals(index.get("frameworkVersion"))) {
+                frameworkContainer.getFrameworkLogger().printDebug("Plugin metadata cache was written by another framework version, discarding it.");
+                dirty = true;
+                return;
+            }
+            JSONObject plugins = (JSONObject) index.get("plugins");
+            for (Object path : plugins.keySet())
+                entries.put((String) path, (JSONObject) plugins.get(path));
+        } catch (IOException | ParseException | ClassCastException | NullPointerException e) {
+            frameworkContainer.getFrameworkLogger().printWarn("Failed to read plugin metadata cache, all plugins will be read from their jars.");
+            entries.clear();
+            dirty = true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean isUnchanged(String path, JSONObject entry, File file) {
+        if (Long.valueOf(file.length()).equals(entry.get("size")) && Long.valueOf(file.lastModified()).equals(entry.get("modified")))
+            return true;
+
+        String hash = hash(file);
+        if (hash == null || !hash.equals(entry.get("sha256")))
+            return false;
+        // Entries are read outside the lock, so the touched jar gets a new entry instead of changing the shared one.
+        JSONObject touched = new JSONObject();
+        touched.putAll(entry);
+        touched.put("size", file.length());
+        touched.put("modified", file.lastModified());
+        synchronized (this) {
+            if (entries.get(path) == entry) {
+                entries.put(path, touched);
+                dirty = true;
+            }
+        }
+        return true;
+    }
+
+    private String hash(File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                digest.update(buffer, 0, read);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest())
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            frameworkContainer.getFrameworkLogger().printDebug("Failed to hash plugin jar " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<String> toList(JSONArray array) {
+        if (array == null)
+            return null;
+        ArrayList<String> list = new ArrayList<>();
+        for (Object value : array)
+            list.add((String) value);
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONArray toArray(List<String> list) {
+        JSONArray array = new JSONArray();
+        array.addAll(list);
+        return array;
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.plugins;
+
+import net.vortexdata.tsqpf.modules.eventhandler.EventType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copy-on-write registry of all loaded plugins.
+ *
+ * Every modification builds a new immutable snapshot and swaps it in atomically, so readers such as event
+ * dispatch never lock and never observe a partially updated set. Plugins are ordered by their
+ * <code>priority</code> (highest first) and then by name. A registered plugin only becomes a subscriber of its
+ * events once it was enabled through {@link #enable(PluginContainer)}.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class PluginRegistry {
+
+    private static final Comparator<PluginContainer> ORDER = Comparator
+            .comparingInt(PluginContainer::getPriority).reversed()
+            .thenComparing(PluginContainer::getPluginName, String.CASE_INSENSITIVE_ORDER);
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(new PluginContainer[0]));
+
+    /**
+     * Adds a plugin unless a plugin with the same name is already registered.
+     *
+     * @param pluginContainer Plugin to add.
+     * @return True if the plugin was added.
+     */
+    public boolean add(PluginContainer pluginContainer) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            if (current.find(pluginContainer.getPluginName()) != null)
+                return false;
+            PluginContainer[] plugins = Arrays.copyOf(current.plugins, current.plugins.length + 1);
+            plugins[plugins.length - 1] = pluginContainer;
+            if (snapshot.compareAndSet(current, new Snapshot(plugins)))
+                return true;
+        }
+    }
+
+    /**
+     * Marks a registered plugin as enabled and adds it to the subscribers of its events.
+     *
+     * @param pluginContainer Plugin that returned from <code>onEnable()</code>.
+     * @return True if the plugin is still registered.
+     */
+    public boolean enable(PluginContainer pluginContainer) {
+        pluginContainer.setEnabled(true);
+        while (true) {
+            Snapshot current = snapshot.get();
+            if (current.find(pluginContainer.getPluginName()) != pluginContainer)
+                return false;
+            if (snapshot.compareAndSet(current, new Snapshot(current.plugins.clone())))
+                return true;
+        }
+    }
+
+    /**
+     * Removes the plugin with the given name.
+     *
+     * @param name Name of the plugin, case insensitive.
+     * @return The removed plugin or null if no plugin with that name is registered.
+     */
+    public PluginContainer remove(String name) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            PluginContainer removed = current.find(name);
+            if (removed == null)
+                return null;
+            ArrayList<PluginContainer> plugins = new ArrayList<>(Arrays.asList(current.plugins));
+            plugins.remove(removed);
+            if (snapshot.compareAndSet(current, new Snapshot(plugins.toArray(new PluginContainer[0]))))
+                return removed;
+        }
+    }
+
+    /**
+     * Removes all plugins.
+     *
+     * @return The plugins that were registered before clearing.
+     */
+    public List<PluginContainer> clear() {
+        Snapshot previous = snapshot.getAndSet(new Snapshot(new PluginContainer[0]));
+        return Collections.unmodifiableList(Arrays.asList(previous.plugins));
+    }
+
+    /**
+     * <p>get.</p>
+     *
+     * @param name Name of the plugin, case insensitive.
+     * @return The plugin or null if it is not registered.
+     */
+    public PluginContainer get(String name) {
+        return snapshot.get().find(name);
+    }
+
+    /**
+     * Returns an immutable view of all registered plugins in dispatch order.
+     *
+     * @return Registered plugins.
+     */
+    public List<PluginContainer> getPlugins() {
+        return Collections.unmodifiableList(Arrays.asList(snapshot.get().plugins));
+    }
+
+    /**
+     * Returns the plugins subscribed to an event type in dispatch order.
+     *
+     * The returned array is shared and must not be modified.
+     *
+     * @param type Type of the event that should be dispatched.
+     * @return Plugins handling the event type.
+     */
+    public PluginContainer[] getSubscribers(EventType type) {
+        return snapshot.get().subscribers[type.ordinal()];
+    }
+
+    /**
+     * <p>size.</p>
+     *
+     * @return Amount of registered plugins.
+     */
+    public int size() {
+        return snapshot.get().plugins.length;
+    }
+
+    private static class Snapshot {
+
+        private final PluginContainer[] plugins;
+        private final PluginContainer[][] subscribers;
+
+        private Snapshot(PluginContainer[] plugins) {
+            Arrays.sort(plugins, ORDER);
+            this.plugins = plugins;
+            this.subscribers = new PluginContainer[EventType.values().length][];
+            for (EventType type : EventType.values()) {
+                ArrayList<PluginContainer> typeSubscribers = new ArrayList<>();
+                for (PluginContainer pc : plugins) {
+                    if (pc.isEnabled() && pc.isSubscribed(type))
+                        typeSubscribers.add(pc);
+                }
+                subscribers[type.ordinal()] = typeSubscribers.toArray(new PluginContainer[0]);
+            }
+        }
+
+        private PluginContainer find(String name) {
+            for (PluginContainer pc : plugins) {
+                if (pc.getPluginName().equalsIgnoreCase(name))
+                    return pc;
+            }
+            return null;
+        }
+
+    }
+
+}
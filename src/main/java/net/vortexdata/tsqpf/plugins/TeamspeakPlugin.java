@@ -31,11 +31,25 @@ import net.vortexdata.tsqpf.commands.CommandInterface;
 import net.vortexdata.tsqpf.console.CommandContainer;
 import net.vortexdata.tsqpf.framework.*;
 import net.vortexdata.tsqpf.listeners.ChatCommandInterface;
+import net.vortexdata.tsqpf.modules.async.AsyncQueryApi;
 import net.vortexdata.tsqpf.modules.eventhandler.EventHandler;
+import net.vortexdata.tsqpf.modules.journal.EventJournal;
+import net.vortexdata.tsqpf.modules.mirror.ServerState;
+import net.vortexdata.tsqpf.modules.mirror.ServerStateMirror;
+import net.vortexdata.tsqpf.modules.querypool.QueryConnectionPool;
+import net.vortexdata.tsqpf.modules.messaging.OutboundMessageQueue;
+
+import java.io.IOException;
+import java.util.function.Function;
 
 /**
  * Parent class for framework plugins PluginMain
  *
+ * <p>With <code>eventDispatchMode=keyed</code> event handlers are called from several threads at the same time.
+ * Events of one client arrive in order, channel events are ordered against all other events, but handlers for
+ * different clients run concurrently. Plugins keeping state across events have to synchronize it themselves,
+ * or enable a plugin event queue to receive all events on a single thread.</p>
+ *
  * @author Michael Wiesinger
  * @since 1.0.0
  * @version $Id: $Id
@@ -86,12 +100,33 @@ public abstract class TeamspeakPlugin extends EventHandler {
     }
 
     /**
-     * Returns the Frameworks api, providing the plugin with all essential teamspeak functions
+     * Returns the Frameworks api, providing the plugin with all essential teamspeak functions.
+     * Identical read queries sent by several plugins at the same time share a single request.
      *
      * @return The Frameworks api
      */
     protected TS3Api getAPI() {
-        return frameworkContainer.getTs3Api();
+        return frameworkContainer.getPluginApi();
+    }
+
+    /**
+     * Returns the id of the virtual server this plugin instance serves. If the framework manages several
+     * virtual servers, every server gets its own instance of the plugin.
+     *
+     * @return Id of the virtual server
+     */
+    protected int getVirtualServerId() {
+        return frameworkContainer.getVirtualServerId();
+    }
+
+    /**
+     * Returns the Frameworks non-blocking api. Its futures complete on a framework thread, so plugins can
+     * chain further work onto them instead of blocking their event handlers.
+     *
+     * @return The Frameworks async api
+     */
+    protected AsyncQueryApi getAsyncAPI() {
+        return frameworkContainer.getFrameworkAsyncQueryApi();
     }
 
     /**
@@ -101,16 +136,18 @@ public abstract class TeamspeakPlugin extends EventHandler {
      */
     @Deprecated
     protected void registerCommand(CommandInterface cmd) {
-        CommandContainer.registerCommand(cmd);
+        registerConsoleCommand(cmd);
     }
 
     /**
-     * Registers a new console command
+     * Registers a new console command. The console is shared by all virtual servers, a name already registered
+     * by another plugin or by this plugin on another virtual server is not replaced.
      *
      * @param cmd The command class
      */
     protected void registerConsoleCommand(CommandInterface cmd) {
-        CommandContainer.registerCommand(cmd);
+        if (CommandContainer.registerCommand(cmd) && pluginContainer != null)
+            pluginContainer.addConsoleCommand(cmd);
     }
 
     /**
@@ -121,6 +158,48 @@ public abstract class TeamspeakPlugin extends EventHandler {
      */
     protected void registerChatCommand(ChatCommandInterface cmd, String prefix) {
         frameworkContainer.getFrameworkChatCommandListener().registerNewCommand(cmd, prefix);
+        if (pluginContainer != null)
+            pluginContainer.addChatCommand(cmd);
+    }
+
+    /**
+     * Removes a chat command registered by this plugin.
+     *
+     * @param cmd The command to remove.
+     * @return True if the command was registered.
+     */
+    protected boolean unregisterChatCommand(ChatCommandInterface cmd) {
+        if (pluginContainer != null)
+            pluginContainer.removeChatCommand(cmd);
+        return frameworkContainer.getFrameworkChatCommandListener().unregisterCommand(cmd);
+    }
+
+    /**
+     * Queues a private message, see {@link OutboundMessageQueue}.
+     *
+     * @param clientId Id of the receiving client.
+     * @param message  The message.
+     */
+    protected void sendPrivateMessage(int clientId, String message) {
+        frameworkContainer.getFrameworkOutboundMessageQueue().sendPrivateMessage(clientId, message);
+    }
+
+    /**
+     * Queues a message to the channel the framework is in, see {@link OutboundMessageQueue}.
+     *
+     * @param message The message.
+     */
+    protected void sendChannelMessage(String message) {
+        frameworkContainer.getFrameworkOutboundMessageQueue().sendChannelMessage(message);
+    }
+
+    /**
+     * Queues a message to the server chat, see {@link OutboundMessageQueue}.
+     *
+     * @param message The message.
+     */
+    protected void sendServerMessage(String message) {
+        frameworkContainer.getFrameworkOutboundMessageQueue().sendServerMessage(message);
     }
 
     /**
@@ -141,6 +220,55 @@ public abstract class TeamspeakPlugin extends EventHandler {
     protected PluginManager getPluginManager() {
         return frameworkContainer.getFrameworkPluginManager();
     }
+
+    /**
+     * Runs a read query on one of the pooled query connections, so it does not wait for queries of other
+     * plugins on the primary connection. Falls back to the primary connection if the pool is disabled.
+     *
+     * @param query Function issuing the query, it must not change the connections state.
+     * @param <T>   Type of the result.
+     * @return The result of the query.
+     */
+    protected <T> T query(Function<TS3Api, T> query) {
+        QueryConnectionPool pool = frameworkContainer.getFrameworkQueryConnectionPool();
+        if (pool == null)
+            return query.apply(frameworkContainer.getPluginApi());
+        return pool.execute(query);
+    }
+
+    /**
+     * Returns the current snapshot of the servers clients, channels and groups as kept by the framework.
+     * Reading it does not send any query; the snapshot is immutable, call this again for newer data.
+     *
+     * @return The current server state, empty if the server state mirror is disabled or not yet seeded.
+     */
+    protected ServerState getServerState() {
+        ServerStateMirror mirror = frameworkContainer.getFrameworkServerStateMirror();
+        return mirror != null ? mirror.getState() : ServerState.EMPTY;
+    }
+
+    /**
+     * Fires all journaled events received within a time range at this plugin, e.g. to rebuild
+     * in-memory state in {@link #onEnable()} without querying the server.
+     *
+     * @param from Start of the range in milliseconds since epoch, inclusive.
+     * @param to   End of the range in milliseconds since epoch, inclusive.
+     * @return Amount of replayed events, 0 if the event journal is disabled or could not be read.
+     */
+    protected long replayJournal(long from, long to) {
+        EventJournal eventJournal = frameworkContainer.getFrameworkEventJournal();
+        if (eventJournal == null) {
+            getLogger().printWarn("Can not replay events as the event journal is disabled.");
+            return 0;
+        }
+        try {
+            return eventJournal.replay(from, to, this);
+        } catch (IOException e) {
+            getLogger().printError("Failed to replay event journal: " + e.getMessage());
+            return 0;
+        }
+    }
+
     /**
      * This is run on plugins enable, initiated by PluginManager
      */
@@ -151,5 +279,19 @@ public abstract class TeamspeakPlugin extends EventHandler {
      */
     abstract public void onDisable();
 
+    /**
+     * Run when the connection to the Teamspeak server was lost. The plugin stays loaded, its instance, chat
+     * commands and caches are kept until {@link #onResume()}. Queries sent before then fail.
+     */
+    public void onSuspend() {
+    }
+
+    /**
+     * Run once the connection was re-established after {@link #onSuspend()}. {@link #getAPI()} now returns the
+     * api of the new connection, references to the previous one have to be replaced.
+     */
+    public void onResume() {
+    }
+
 
 }
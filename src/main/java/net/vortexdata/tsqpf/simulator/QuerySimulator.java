@@ -0,0 +1,268 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.simulator;
+
+import net.vortexdata.tsqpf.console.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal stand-in for a TeamSpeak ServerQuery interface, used to run and load test the framework and its
+ * plugins without a real server.
+ *
+ * The simulator accepts any login, answers <code>use</code>, <code>clientupdate</code>, <code>whoami</code>,
+ * <code>servernotifyregister</code> and a few list commands, and sends synthetic event notifications at a
+ * configurable rate to every connection that registered for events.
+ *
+ * It can be started standalone through {@link #main(String[])} or embedded with the <code>-simulator</code>
+ * start parameter of the framework.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+public class QuerySimulator implements Runnable {
+
+    private final int port;
+    private final int eventRate;
+    private final int clientCount;
+    private final int channelCount;
+    private final Logger logger;
+    private final ConcurrentHashMap<SimulatorSession, Boolean> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong eventsSent = new AtomicLong();
+    private final AtomicLong commandsHandled = new AtomicLong();
+    private final AtomicInteger sessionCounter = new AtomicInteger();
+    private ServerSocket serverSocket;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    /**
+     * <p>Constructor for QuerySimulator.</p>
+     *
+     * @param port         Port to listen on, 0 picks a free port.
+     * @param eventRate    Synthetic events per second sent to every registered connection.
+     * @param clientCount  Amount of simulated clients.
+     * @param channelCount Amount of simulated channels.
+     */
+    public QuerySimulator(int port, int eventRate, int clientCount, int channelCount) {
+        this(port, eventRate, clientCount, channelCount, null);
+    }
+
+    /**
+     * <p>Constructor for QuerySimulator embedded in the framework.</p>
+     *
+     * @param port         Port to listen on, 0 picks a free port.
+     * @param eventRate    Synthetic events per second sent to every registered connection.
+     * @param clientCount  Amount of simulated clients.
+     * @param channelCount Amount of simulated channels.
+     * @param logger       Framework logger, null when running standalone.
+     */
+    public QuerySimulator(int port, int eventRate, int clientCount, int channelCount, Logger logger) {
+        this.port = port;
+        this.eventRate = Math.max(0, eventRate);
+        this.clientCount = Math.max(1, clientCount);
+        this.channelCount = Math.max(1, channelCount);
+        this.logger = logger;
+    }
+
+    /**
+     * Binds the listening socket on the loopback interface and starts accepting connections.
+     *
+     * @throws IOException if the port could not be bound.
+     */
+    public void start() throws IOException {
+        if (running) return;
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        running = true;
+        thread = new Thread(this, "QuerySimulator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Closes the listening socket and all connections.
+     */
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null)
+                serverSocket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        for (SimulatorSession session : sessions.keySet())
+            session.close();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                SimulatorSession session = new SimulatorSession(this, socket);
+                sessions.put(session, Boolean.TRUE);
+                session.start();
+            } catch (SocketException e) {
+                break;
+            } catch (IOException e) {
+                printError("Query simulator failed to accept connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private void printError(String message) {
+        if (logger != null)
+            logger.printError(message);
+        else
+            System.err.println(message);
+    }
+
+    void removeSession(SimulatorSession session) {
+        sessions.remove(session);
+    }
+
+    int nextQueryClientId() {
+        return clientCount + sessionCounter.incrementAndGet();
+    }
+
+    void countEvent() {
+        eventsSent.incrementAndGet();
+    }
+
+    void countCommand() {
+        commandsHandled.incrementAndGet();
+    }
+
+    /**
+     * <p>getPort.</p>
+     *
+     * @return The port the simulator is listening on.
+     */
+    public int getPort() {
+        return serverSocket == null ? port : serverSocket.getLocalPort();
+    }
+
+    /**
+     * <p>Getter for the field <code>eventRate</code>.</p>
+     *
+     * @return Synthetic events per second per connection.
+     */
+    public int getEventRate() {
+        return eventRate;
+    }
+
+    /**
+     * <p>Getter for the field <code>clientCount</code>.</p>
+     *
+     * @return Amount of simulated clients.
+     */
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    /**
+     * <p>Getter for the field <code>channelCount</code>.</p>
+     *
+     * @return Amount of simulated channels.
+     */
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * <p>getSessionCount.</p>
+     *
+     * @return Amount of open connections.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * <p>getEventsSent.</p>
+     *
+     * @return Amount of event notifications sent over all connections.
+     */
+    public long getEventsSent() {
+        return eventsSent.get();
+    }
+
+    /**
+     * <p>getCommandsHandled.</p>
+     *
+     * @return Amount of commands answered over all connections.
+     */
+    public long getCommandsHandled() {
+        return commandsHandled.get();
+    }
+
+    /**
+     * Runs the simulator standalone.
+     *
+     * Accepted arguments are <code>-port &lt;port&gt;</code>, <code>-rate &lt;events per second&gt;</code>,
+     * <code>-clients &lt;amount&gt;</code> and <code>-channels &lt;amount&gt;</code>.
+     *
+     * @param args an array of {@link java.lang.String} objects.
+     * @throws java.lang.Exception if the simulator could not be started.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = 10011;
+        int rate = 100;
+        int clients = 50;
+        int channels = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equalsIgnoreCase("-port"))
+                port = Integer.parseInt(args[i + 1]);
+            else if (args[i].equalsIgnoreCase("-rate"))
+                rate = Integer.parseInt(args[i + 1]);
+            else if (args[i].equalsIgnoreCase("-clients"))
+                clients = Integer.parseInt(args[i + 1]);
+            else if (args[i].equalsIgnoreCase("-channels"))
+                channels = Integer.parseInt(args[i + 1]);
+        }
+
+        QuerySimulator simulator = new QuerySimulator(port, rate, clients, channels);
+        simulator.start();
+        System.out.println("Query simulator listening on 127.0.0.1:" + simulator.getPort() + " (" + rate + " events/s, " + clients + " clients, " + channels + " channels).");
+
+        long lastEvents = 0;
+        while (true) {
+            Thread.sleep(10000);
+            long events = simulator.getEventsSent();
+            System.out.println("Connections: " + simulator.getSessionCount() + ", events sent: " + events + " (" + (events - lastEvents) / 10 + "/s), commands handled: " + simulator.getCommandsHandled());
+            lastEvents = events;
+        }
+    }
+
+}
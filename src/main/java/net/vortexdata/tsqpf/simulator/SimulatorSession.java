@@ -0,0 +1,302 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.simulator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single ServerQuery connection of the {@link QuerySimulator}.
+ *
+ * @author Michael Wiesinger
+ * @since 2.1.0
+ * @version $Id: $Id
+ */
+class SimulatorSession {
+
+    private static final String LINE_END = "\n\r";
+    private static final String OK = "error id=0 msg=ok";
+    private static final String[] MESSAGES = {"!ping", "!info", "hello", "!help", "how is everyone doing?", "brb"};
+
+    private final QuerySimulator simulator;
+    private final Socket socket;
+    private final Writer out;
+    private final int queryClientId;
+    private final int[] clientChannels;
+    private String nickname = "serveradmin";
+    private Thread eventThread;
+    private volatile boolean open = true;
+
+    SimulatorSession(QuerySimulator simulator, Socket socket) throws IOException {
+        this.simulator = simulator;
+        this.socket = socket;
+        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        this.queryClientId = simulator.nextQueryClientId();
+        this.clientChannels = new int[simulator.getClientCount() + 1];
+        for (int clid = 1; clid < clientChannels.length; clid++)
+            clientChannels[clid] = 1 + (clid - 1) % simulator.getChannelCount();
+    }
+
+    void start() {
+        Thread thread = new Thread(this::readCommands, "QuerySimulator-" + queryClientId);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void close() {
+        open = false;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        simulator.removeSession(this);
+    }
+
+    private void readCommands() {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            send("TS3" + LINE_END + "Welcome to the TeamSpeak 3 ServerQuery interface, type \"help\" for a list of commands and \"help <command>\" for information on a specific command.");
+            String line;
+            while (open && (line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty())
+                    continue;
+                simulator.countCommand();
+                if (!handle(line))
+                    break;
+            }
+        } catch (IOException e) {
+            // Connection closed by the client
+        } finally {
+            close();
+        }
+    }
+
+    private boolean handle(String line) throws IOException {
+        int separator = line.indexOf(' ');
+        String command = (separator < 0 ? line : line.substring(0, separator)).toLowerCase(Locale.ROOT);
+        String parameters = separator < 0 ? "" : line.substring(separator + 1);
+
+        switch (command) {
+            case "quit":
+                send(OK);
+                return false;
+            case "login":
+            case "logout":
+            case "use":
+            case "servernotifyunregister":
+            case "sendtextmessage":
+            case "clientmove":
+            case "clientkick":
+            case "clientpoke":
+                send(OK);
+                break;
+            case "clientupdate":
+                String newNickname = parameter(parameters, "client_nickname");
+                if (newNickname != null)
+                    nickname = unescape(newNickname);
+                send(OK);
+                break;
+            case "servernotifyregister":
+                send(OK);
+                startEvents();
+                break;
+            case "whoami":
+                send("virtualserver_status=online virtualserver_id=1 virtualserver_unique_identifier=simulator virtualserver_port=9987"
+                        + " client_id=" + queryClientId + " client_channel_id=1 client_nickname=" + escape(nickname)
+                        + " client_database_id=" + queryClientId + " client_login_name=serveradmin client_unique_identifier=serveradmin"
+                        + " client_origin_server_id=0" + LINE_END + OK);
+                break;
+            case "version":
+                send("version=3.0.0 build=0 platform=Simulator" + LINE_END + OK);
+                break;
+            case "serverinfo":
+                send("virtualserver_id=1 virtualserver_name=Query\\sSimulator virtualserver_port=9987 virtualserver_maxclients=" + simulator.getClientCount()
+                        + " virtualserver_clientsonline=" + onlineClients() + " virtualserver_status=online" + LINE_END + OK);
+                break;
+            case "clientlist":
+                send(clientList() + LINE_END + OK);
+                break;
+            case "channellist":
+                send(channelList() + LINE_END + OK);
+                break;
+            case "servergrouplist":
+                send("sgid=1 name=Guest\\sServer\\sQuery type=2|sgid=6 name=Server\\sAdmin type=1|sgid=8 name=Guest type=1" + LINE_END + OK);
+                break;
+            case "clientinfo":
+                int clid = parseInt(parameter(parameters, "clid"));
+                if (clid < 1 || clid >= clientChannels.length || clientChannels[clid] == 0)
+                    send("error id=512 msg=invalid\\sclientID");
+                else
+                    send("cid=" + clientChannels[clid] + " client_nickname=User" + clid + " client_unique_identifier=simulated" + clid
+                            + "= client_database_id=" + clid + " client_type=0" + LINE_END + OK);
+                break;
+            default:
+                send("error id=256 msg=command\\snot\\sfound");
+        }
+        return true;
+    }
+
+    private synchronized void send(String response) throws IOException {
+        out.write(response);
+        out.write(LINE_END);
+        out.flush();
+    }
+
+    private synchronized void startEvents() {
+        if (eventThread != null || simulator.getEventRate() == 0)
+            return;
+        eventThread = new Thread(this::generateEvents, "QuerySimulator-" + queryClientId + "-events");
+        eventThread.setDaemon(true);
+        eventThread.start();
+    }
+
+    private void generateEvents() {
+        long interval = TimeUnit.SECONDS.toNanos(1) / simulator.getEventRate();
+        long next = System.nanoTime();
+        try {
+            while (open) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    synchronized (this) {
+                        out.flush();
+                    }
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+                synchronized (this) {
+                    out.write(nextEvent());
+                    out.write(LINE_END);
+                }
+                simulator.countEvent();
+                next += interval;
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private synchronized String nextEvent() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int clid = 1 + random.nextInt(clientChannels.length - 1);
+        int cid = 1 + random.nextInt(simulator.getChannelCount());
+        int roll = random.nextInt(100);
+
+        if (clientChannels[clid] == 0) {
+            clientChannels[clid] = cid;
+            return "notifycliententerview cfid=0 ctid=" + cid + " reasonid=0 clid=" + clid
+                    + " client_unique_identifier=simulated" + clid + "= client_nickname=User" + clid
+                    + " client_database_id=" + clid + " client_type=0";
+        }
+        if (roll < 40) {
+            return "notifytextmessage targetmode=3 msg=" + escape(MESSAGES[random.nextInt(MESSAGES.length)])
+                    + " invokerid=" + clid + " invokername=User" + clid + " invokeruid=simulated" + clid + "=";
+        }
+        if (roll < 70) {
+            clientChannels[clid] = cid;
+            return "notifyclientmoved ctid=" + cid + " reasonid=0 clid=" + clid;
+        }
+        if (roll < 80) {
+            int from = clientChannels[clid];
+            clientChannels[clid] = 0;
+            return "notifyclientleftview cfid=" + from + " ctid=0 reasonid=8 reasonmsg=leaving clid=" + clid;
+        }
+        return "notifychanneledited cid=" + cid + " reasonid=10 invokerid=" + clid + " invokername=User" + clid
+                + " invokeruid=simulated" + clid + "= channel_topic=" + escape("Topic " + random.nextInt(1000));
+    }
+
+    private synchronized int onlineClients() {
+        int online = 0;
+        for (int clid = 1; clid < clientChannels.length; clid++) {
+            if (clientChannels[clid] != 0)
+                online++;
+        }
+        return online;
+    }
+
+    private synchronized String clientList() {
+        StringBuilder list = new StringBuilder("clid=" + queryClientId + " cid=1 client_database_id=" + queryClientId
+                + " client_nickname=" + escape(nickname) + " client_type=1");
+        for (int clid = 1; clid < clientChannels.length; clid++) {
+            if (clientChannels[clid] == 0)
+                continue;
+            list.append("|clid=").append(clid).append(" cid=").append(clientChannels[clid])
+                    .append(" client_database_id=").append(clid).append(" client_nickname=User").append(clid)
+                    .append(" client_type=0");
+        }
+        return list.toString();
+    }
+
+    private synchronized String channelList() {
+        int[] occupancy = new int[simulator.getChannelCount() + 1];
+        for (int clid = 1; clid < clientChannels.length; clid++)
+            occupancy[clientChannels[clid]]++;
+        StringBuilder list = new StringBuilder();
+        for (int cid = 1; cid <= simulator.getChannelCount(); cid++) {
+            if (cid > 1)
+                list.append('|');
+            list.append("cid=").append(cid).append(" pid=0 channel_order=").append(cid - 1)
+                    .append(" channel_name=Channel\\s").append(cid).append(" total_clients=").append(occupancy[cid])
+                    .append(" channel_needed_subscribe_power=0");
+        }
+        return list.toString();
+    }
+
+    private static String parameter(String parameters, String key) {
+        for (String parameter : parameters.split(" ")) {
+            if (parameter.startsWith(key + "="))
+                return parameter.substring(key.length() + 1);
+        }
+        return null;
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value == null ? -1 : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("/", "\\/").replace(" ", "\\s").replace("|", "\\p");
+    }
+
+    private static String unescape(String value) {
+        return value.replace("\\s", " ").replace("\\/", "/").replace("\\p", "|").replace("\\\\", "\\");
+    }
+
+}
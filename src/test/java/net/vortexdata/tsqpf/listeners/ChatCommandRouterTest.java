@@ -0,0 +1,98 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.listeners;
+
+import com.github.theholywaffle.teamspeak3.api.event.TextMessageEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatCommandRouterTest {
+
+    private static ChatCommandInterface command() {
+        return new ChatCommandInterface() {
+            @Override
+            public void gotCalled(TextMessageEvent event) {
+            }
+        };
+    }
+
+    @Test
+    void routesToLongestMatchingPrefix() {
+        ChatCommandInterface help = command();
+        ChatCommandInterface helpAdmin = command();
+        HashMap<String, List<ChatCommandInterface>> commands = new HashMap<>();
+        commands.put("!help", Collections.singletonList(help));
+        commands.put("!help admin", Collections.singletonList(helpAdmin));
+        ChatCommandRouter router = new ChatCommandRouter(commands);
+
+        assertArrayEquals(new ChatCommandInterface[]{help}, router.route("!help"));
+        assertArrayEquals(new ChatCommandInterface[]{help}, router.route("!help me"));
+        assertArrayEquals(new ChatCommandInterface[]{helpAdmin}, router.route("!help admin now"));
+        assertEquals(2, router.getPrefixCount());
+    }
+
+    @Test
+    void unknownMessagesMatchNothing() {
+        HashMap<String, List<ChatCommandInterface>> commands = new HashMap<>();
+        commands.put("!ping", Collections.singletonList(command()));
+        ChatCommandRouter router = new ChatCommandRouter(commands);
+
+        assertEquals(0, router.route("hello").length);
+        assertEquals(0, router.route("!pin").length);
+        assertEquals(0, router.route("").length);
+    }
+
+    @Test
+    void returnsAllCommandsOfAPrefix() {
+        ChatCommandInterface first = command();
+        ChatCommandInterface second = command();
+        HashMap<String, List<ChatCommandInterface>> commands = new HashMap<>();
+        commands.put("!ping", Arrays.asList(first, second));
+        ChatCommandRouter router = new ChatCommandRouter(commands);
+
+        assertArrayEquals(new ChatCommandInterface[]{first, second}, router.route("!ping"));
+    }
+
+    @Test
+    void emptyPrefixMatchesEveryMessage() {
+        ChatCommandInterface all = command();
+        HashMap<String, List<ChatCommandInterface>> commands = new HashMap<>();
+        commands.put("", Collections.singletonList(all));
+        commands.put("!empty", Collections.emptyList());
+        ChatCommandRouter router = new ChatCommandRouter(commands);
+
+        assertArrayEquals(new ChatCommandInterface[]{all}, router.route("anything"));
+        assertArrayEquals(new ChatCommandInterface[]{all}, router.route("!empty"));
+        assertEquals(1, router.getPrefixCount());
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.modules.flood;
+
+import com.github.theholywaffle.teamspeak3.api.exception.TS3CommandFailedException;
+import com.github.theholywaffle.teamspeak3.api.wrapper.QueryError;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveFloodControllerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static TS3CommandFailedException error(int id) {
+        Map<String, String> map = new HashMap<>();
+        map.put("id", String.valueOf(id));
+        map.put("msg", "error");
+        return new TS3CommandFailedException(new QueryError(map), "test");
+    }
+
+    private static AdaptiveFloodController saturated() {
+        AdaptiveFloodController controller = new AdaptiveFloodController(2, 10);
+        for (int i = 0; i < 100; i++)
+            controller.onSuccess(FAST);
+        return controller;
+    }
+
+    @Test
+    void startsAtMinimumAndIncreasesOnSuccess() {
+        AdaptiveFloodController controller = new AdaptiveFloodController(2, 10);
+        assertEquals(2, controller.getRate());
+        controller.onSuccess(FAST);
+        assertEquals(3, controller.getRate(), 1e-9);
+    }
+
+    @Test
+    void increaseIsCappedAtMaximum() {
+        assertEquals(10, saturated().getRate());
+    }
+
+    @Test
+    void floodErrorHalvesRate() {
+        AdaptiveFloodController controller = saturated();
+        controller.onFailure(error(AdaptiveFloodController.ERROR_FLOODING));
+        assertEquals(5, controller.getRate(), 1e-9);
+        assertEquals(1, controller.getFloodSignals());
+    }
+
+    @Test
+    void repeatedFloodErrorsDecreaseOncePerInterval() {
+        AdaptiveFloodController controller = saturated();
+        controller.onFailure(error(AdaptiveFloodController.ERROR_FLOODING));
+        controller.onFailure(error(AdaptiveFloodController.ERROR_BANNED));
+        assertEquals(5, controller.getRate(), 1e-9);
+        assertEquals(2, controller.getFloodSignals());
+    }
+
+    @Test
+    void floodErrorIsNotHeldBackByLatencyDecrease() {
+        AdaptiveFloodController controller = saturated();
+        controller.onSuccess(SLOW);
+        assertEquals(1, controller.getLatencySignals());
+        assertEquals(8, controller.getRate(), 1e-9);
+        controller.onFailure(error(AdaptiveFloodController.ERROR_FLOODING));
+        assertEquals(4, controller.getRate(), 1e-9);
+    }
+
+    @Test
+    void latencyDecreaseIsHeldBackAfterFloodError() {
+        AdaptiveFloodController controller = saturated();
+        controller.onFailure(error(AdaptiveFloodController.ERROR_FLOODING));
+        controller.onSuccess(SLOW);
+        assertEquals(0, controller.getLatencySignals());
+        assertEquals(5, controller.getRate(), 1e-9);
+    }
+
+    @Test
+    void floodErrorPausesSending() {
+        AdaptiveFloodController controller = saturated();
+        assertTrue(controller.reserve() <= 0);
+        controller.onFailure(error(AdaptiveFloodController.ERROR_FLOODING));
+        assertTrue(controller.reserve() > TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    void reserveSpacesSlotsByRate() {
+        AdaptiveFloodController controller = new AdaptiveFloodController(2, 10);
+        controller.reserve();
+        long wait = controller.reserve();
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(400) && wait <= TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(2, controller.getCommands());
+    }
+
+    @Test
+    void otherErrorsAreIgnored() {
+        AdaptiveFloodController controller = saturated();
+        controller.onFailure(error(512));
+        controller.onFailure(new IllegalStateException());
+        assertEquals(10, controller.getRate());
+        assertEquals(0, controller.getFloodSignals());
+        assertFalse(AdaptiveFloodController.isFloodSignal(null));
+        assertTrue(AdaptiveFloodController.isFloodSignal(error(AdaptiveFloodController.ERROR_BANNED)));
+    }
+
+}
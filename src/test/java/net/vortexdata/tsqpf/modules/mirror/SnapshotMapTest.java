@@ -0,0 +1,80 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package net.vortexdata.tsqpf.modules.mirror;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotMapTest {
+
+    @Test
+    void copiesAllEntries() {
+        HashMap<Integer, String> entries = new HashMap<>();
+        for (int id = 0; id < 500; id++)
+            entries.put(id, "client " + id);
+        SnapshotMap<String> map = SnapshotMap.of(entries);
+        assertEquals(entries, map);
+        assertEquals(500, map.size());
+        assertEquals("client 42", map.get(42));
+        assertNull(map.get(500));
+    }
+
+    @Test
+    void changesLeaveTheOriginalUntouched() {
+        SnapshotMap<String> original = SnapshotMap.<String>empty().with(1, "a").with(65, "b");
+        SnapshotMap<String> changed = original.with(1, "c").without(65).with(2, "d");
+
+        assertEquals(2, original.size());
+        assertEquals("a", original.get(1));
+        assertEquals("b", original.get(65));
+        assertFalse(original.containsKey(2));
+
+        assertEquals(2, changed.size());
+        assertEquals("c", changed.get(1));
+        assertFalse(changed.containsKey(65));
+        assertEquals("d", changed.get(2));
+    }
+
+    @Test
+    void removingAMissingIdReturnsTheSameMap() {
+        SnapshotMap<String> map = SnapshotMap.<String>empty().with(3, "a");
+        assertSame(map, map.without(4));
+        assertSame(map, map.without(67));
+    }
+
+    @Test
+    void isReadOnly() {
+        SnapshotMap<String> map = SnapshotMap.<String>empty().with(1, "a");
+        assertThrows(UnsupportedOperationException.class, () -> map.put(2, "b"));
+        assertThrows(UnsupportedOperationException.class, () -> map.values().clear());
+        Map.Entry<Integer, String> entry = map.entrySet().iterator().next();
+        assertThrows(UnsupportedOperationException.class, () -> entry.setValue("b"));
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package net.vortexdata.tsqpf.plugins;
+
+import com.github.theholywaffle.teamspeak3.api.event.ClientMovedEvent;
+import com.github.theholywaffle.teamspeak3.api.event.TS3Event;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PluginContainerTest {
+
+    private static final String OUTER_NAME = "PluginContainerTestOuter";
+    private static final String INNER_NAME = "PluginContainerTestInner";
+
+    @AfterAll
+    static void removePluginConfigs() {
+        for (String name : new String[]{OUTER_NAME, INNER_NAME}) {
+            File directory = new File("plugins", name);
+            new File(directory, "plugin.conf").delete();
+            directory.delete();
+        }
+        new File("plugins").delete();
+    }
+
+    private static PluginContainer container(String name, Consumer<ClientMovedEvent> handler) {
+        return new PluginContainer(new TeamspeakPlugin() {
+            @Override
+            public void onEnable() {
+            }
+
+            @Override
+            public void onDisable() {
+            }
+
+            @Override
+            public void onClientMoved(ClientMovedEvent event) {
+                handler.accept(event);
+            }
+        }, name, null);
+    }
+
+    private static TS3Event event() {
+        HashMap<String, String> map = new HashMap<>();
+        map.put("clid", "1");
+        map.put("ctid", "1");
+        return new ClientMovedEvent(map);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void nestedDispatchKeepsOuterHandlerRunning() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PluginContainer inner = container(INNER_NAME, event -> {
+            running.countDown();
+            await(release);
+        });
+        PluginContainer outer = container(OUTER_NAME, event -> inner.invoke(event()));
+
+        CompletableFuture<Void> dispatch = CompletableFuture.runAsync(() -> outer.invoke(event()));
+        await(running);
+        assertFalse(outer.isIdle());
+        assertFalse(inner.isIdle());
+
+        release.countDown();
+        dispatch.get(5, TimeUnit.SECONDS);
+        assertTrue(outer.isIdle());
+        assertTrue(inner.isIdle());
+    }
+
+    @Test
+    void runningOverrunIsReportedOnce() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PluginContainer pc = container(OUTER_NAME, event -> {
+            running.countDown();
+            await(release);
+        });
+        pc.setHandlerDeadline(TimeUnit.MILLISECONDS.toNanos(1));
+
+        CompletableFuture<Void> dispatch = CompletableFuture.runAsync(() -> pc.invoke(event()));
+        await(running);
+        Thread.sleep(20);
+        List<HandlerInvocation> overruns = pc.pollRunningOverruns(TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(1, overruns.size());
+        assertFalse(overruns.get(0).isFinished());
+        assertTrue(pc.pollRunningOverruns(TimeUnit.MILLISECONDS.toNanos(1)).isEmpty());
+
+        release.countDown();
+        dispatch.get(5, TimeUnit.SECONDS);
+        assertNull(pc.pollOverrunInvocation());
+    }
+
+    @Test
+    void overrunFinishingBetweenPollsIsReportedByTheContainer() {
+        PluginContainer pc = container(OUTER_NAME, event -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        pc.setHandlerDeadline(TimeUnit.MILLISECONDS.toNanos(1));
+        pc.invoke(event());
+
+        HandlerInvocation overrun = pc.pollOverrunInvocation();
+        assertNotNull(overrun);
+        assertTrue(overrun.isFinished());
+        assertTrue(overrun.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertNull(pc.pollOverrunInvocation());
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ *
+ *  Teamspeak Query Plugin Framework
+ *
+ *  Copyright (C) 2019 - 2020 VortexdataNET
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.vortexdata.tsqpf.plugins;
+
+import com.github.theholywaffle.teamspeak3.api.event.ClientMovedEvent;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PluginEventQueueTest {
+
+    private static final String PLUGIN_NAME = "PluginEventQueueTest";
+
+    private final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch handling = new CountDownLatch(1);
+    private final PluginContainer pluginContainer = new PluginContainer(new TeamspeakPlugin() {
+        @Override
+        public void onEnable() {
+        }
+
+        @Override
+        public void onDisable() {
+        }
+
+        @Override
+        public void onClientMoved(ClientMovedEvent event) {
+            handling.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(event.getClientId());
+        }
+    }, PLUGIN_NAME, null);
+
+    @AfterAll
+    static void removePluginConfig() {
+        File directory = new File("plugins", PLUGIN_NAME);
+        new File(directory, "plugin.conf").delete();
+        directory.delete();
+        new File("plugins").delete();
+    }
+
+    private static ClientMovedEvent event(int clientId) {
+        HashMap<String, String> map = new HashMap<>();
+        map.put("clid", String.valueOf(clientId));
+        map.put("ctid", "1");
+        return new ClientMovedEvent(map);
+    }
+
+    @Test
+    void dropNewestRejectsEventsOnceFull() {
+        PluginEventQueue queue = new PluginEventQueue(pluginContainer, 2, OverflowPolicy.DROP_NEWEST);
+        assertTrue(queue.offer(event(1)));
+        assertTrue(queue.offer(event(2)));
+        assertFalse(queue.offer(event(3)));
+        assertEquals(2, queue.getDepth());
+        assertEquals(2, queue.getEnqueued());
+        assertEquals(1, queue.getDropped());
+        assertEquals(2, queue.getHighWaterMark());
+    }
+
+    @Test
+    void dropOldestMakesRoomForNewEvents() throws InterruptedException {
+        PluginEventQueue queue = new PluginEventQueue(pluginContainer, 2, OverflowPolicy.DROP_OLDEST);
+        assertTrue(queue.offer(event(1)));
+        assertTrue(queue.offer(event(2)));
+        assertTrue(queue.offer(event(3)));
+        assertEquals(1, queue.getDropped());
+
+        release.countDown();
+        queue.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.size() < 2 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertTrue(queue.stop());
+        assertEquals(Arrays.asList(2, 3), received);
+        assertEquals(2, queue.getDelivered());
+    }
+
+    @Test
+    void blockWaitsForSpace() throws Exception {
+        PluginEventQueue queue = new PluginEventQueue(pluginContainer, 1, OverflowPolicy.BLOCK);
+        queue.start();
+        assertTrue(queue.offer(event(1)));
+        assertTrue(handling.await(5, TimeUnit.SECONDS));
+        assertTrue(queue.offer(event(2)));
+
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> queue.offer(event(3)));
+        Thread.sleep(200);
+        assertFalse(blocked.isDone());
+
+        release.countDown();
+        assertTrue(blocked.get(5, TimeUnit.SECONDS));
+        assertEquals(0, queue.getDropped());
+        assertTrue(queue.stop());
+    }
+
+    @Test
+    void blockedProducerGivesUpOnceSwitchedToDropping() throws Exception {
+        PluginEventQueue queue = new PluginEventQueue(pluginContainer, 1, OverflowPolicy.BLOCK);
+        queue.start();
+        assertTrue(queue.offer(event(1)));
+        assertTrue(handling.await(5, TimeUnit.SECONDS));
+        assertTrue(queue.offer(event(2)));
+
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> queue.offer(event(3)));
+        Thread.sleep(200);
+        assertFalse(blocked.isDone());
+
+        queue.setOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+        assertFalse(blocked.get(5, TimeUnit.SECONDS));
+        assertEquals(1, queue.getDropped());
+
+        release.countDown();
+        assertTrue(queue.stop());
+    }
+
+    @Test
+    void stopDiscardsPendingEvents() {
+        PluginEventQueue queue = new PluginEventQueue(pluginContainer, 4, OverflowPolicy.DROP_NEWEST);
+        queue.offer(event(1));
+        queue.offer(event(2));
+        assertTrue(queue.stop());
+        assertEquals(0, queue.getDepth());
+        assertEquals(0, queue.getDelivered());
+    }
+
+}